@@ -4,13 +4,17 @@ import com.sendgrid.SendGrid;
 import lombok.extern.slf4j.Slf4j;
 import nl.martijndwars.webpush.PushService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.hackbrooklyn.plaza.util.RedisSubscriptionLostEvent;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -21,6 +25,7 @@ import java.security.GeneralSecurityException;
 
 @Slf4j
 @Configuration
+@EnableScheduling
 public class ApplicationContext {
 
     private final Environment environment;
@@ -39,6 +44,20 @@ public class ApplicationContext {
         return template;
     }
 
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory, ApplicationEventPublisher applicationEventPublisher) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer() {
+            @Override
+            protected void handleSubscriptionException(Throwable ex) {
+                // Let listeners know that they may miss messages until the container resubscribes
+                applicationEventPublisher.publishEvent(new RedisSubscriptionLostEvent(this, ex));
+                super.handleSubscriptionException(ex);
+            }
+        };
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
     @Bean
     S3Client s3Client() {
         return S3Client.builder().build();
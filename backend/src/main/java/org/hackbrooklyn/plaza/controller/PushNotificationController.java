@@ -1,12 +1,14 @@
 package org.hackbrooklyn.plaza.controller;
 
 import lombok.extern.slf4j.Slf4j;
+import org.hackbrooklyn.plaza.dto.PushSubscriptionHealthDTO;
 import org.hackbrooklyn.plaza.dto.SubscribeToPushNotificationDTO;
 import org.hackbrooklyn.plaza.model.User;
 import org.hackbrooklyn.plaza.service.PushNotificationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
@@ -40,4 +42,12 @@ public class PushNotificationController {
 
         return new ResponseEntity<>(HttpStatus.OK);
     }
+
+    @PreAuthorize("hasAuthority(@authorities.PUSH_NOTIFICATIONS_READ_HEALTH)")
+    @GetMapping(path = "health")
+    public ResponseEntity<PushSubscriptionHealthDTO> getSubscriptionHealth() {
+        PushSubscriptionHealthDTO subscriptionHealth = pushNotificationService.getSubscriptionHealth();
+
+        return new ResponseEntity<>(subscriptionHealth, HttpStatus.OK);
+    }
 }
@@ -2,6 +2,7 @@ package org.hackbrooklyn.plaza.controller;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import org.hackbrooklyn.plaza.exception.*;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -327,5 +328,20 @@ public class RestControllerExceptionHandler {
         return new ResponseEntity<>(body, HttpStatus.BAD_GATEWAY);
     }
 
+    /**
+     * Triggered when too many passwords are already waiting to be hashed, such as during a burst of logins.
+     */
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ExceptionHandler(PasswordHashingUnavailableException.class)
+    public ResponseEntity<Map<String, String>> handlePasswordHashingUnavailableException() {
+        Map<String, String> body = new HashMap<>();
+        body.put("message", "The server is handling too many requests right now. Please try again in a few moments.");
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+
+        return new ResponseEntity<>(body, headers, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
 
 }
@@ -8,15 +8,19 @@ import org.hackbrooklyn.plaza.dto.*;
 import org.hackbrooklyn.plaza.model.*;
 import org.hackbrooklyn.plaza.service.TeamFormationService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.validation.Valid;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.Positive;
+import java.time.LocalDateTime;
 
 @Slf4j
 @RestController
@@ -35,12 +39,14 @@ public class TeamFormationController {
     public ResponseEntity<TeamFormationParticipantSearchDTO> getParticipants(
             @RequestParam(defaultValue = "1") @Min(1) int page,
             @RequestParam(defaultValue = "8") @Min(1) int limit,
+            @RequestParam(required = false) Integer afterId,
             @RequestParam(defaultValue = "false") boolean personalized,
             @RequestParam(defaultValue = "false") boolean hideSentInvitations,
+            @RequestParam(defaultValue = "recent") String sort,
             @RequestParam(required = false) String searchQuery,
             @AuthenticationPrincipal User user
     ) {
-        TeamFormationParticipantSearchDTO participants = teamFormationService.getParticipants(page, limit, personalized, hideSentInvitations, searchQuery, user);
+        TeamFormationParticipantSearchDTO participants = teamFormationService.getParticipants(page, limit, afterId, personalized, hideSentInvitations, "relevance".equals(sort), searchQuery, user);
 
         return new ResponseEntity<>(participants, HttpStatus.OK);
     }
@@ -60,12 +66,14 @@ public class TeamFormationController {
     public ResponseEntity<TeamFormationTeamSearchDTO> getTeams(
             @RequestParam(defaultValue = "1") @Min(1) int page,
             @RequestParam(defaultValue = "8") @Min(1) int limit,
+            @RequestParam(required = false) Integer afterId,
             @RequestParam(defaultValue = "false") boolean personalized,
             @RequestParam(defaultValue = "false") boolean hideSentJoinRequests,
+            @RequestParam(defaultValue = "recent") String sort,
             @RequestParam(required = false) String searchQuery,
             @AuthenticationPrincipal User user
     ) {
-        TeamFormationTeamSearchDTO teams = teamFormationService.getTeams(page, limit, personalized, hideSentJoinRequests, searchQuery, user);
+        TeamFormationTeamSearchDTO teams = teamFormationService.getTeams(page, limit, afterId, personalized, hideSentJoinRequests, "relevance".equals(sort), searchQuery, user);
 
         return new ResponseEntity<>(teams, HttpStatus.OK);
     }
@@ -190,8 +198,10 @@ public class TeamFormationController {
     public ResponseEntity<TeamFormationTeamInboxDTO> getTeamInbox(
             @RequestParam(defaultValue = "1") @Min(1) int page,
             @RequestParam(defaultValue = "10") @Min(1) int limit,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterTimestamp,
+            @RequestParam(required = false) Integer afterId,
             @AuthenticationPrincipal User user) {
-        TeamFormationTeamInboxDTO resBody = teamFormationService.getTeamInbox(page, limit, user);
+        TeamFormationTeamInboxDTO resBody = teamFormationService.getTeamInbox(page, limit, afterTimestamp, afterId, user);
 
         return new ResponseEntity<>(resBody, HttpStatus.OK);
     }
@@ -242,8 +252,10 @@ public class TeamFormationController {
     public ResponseEntity<TeamFormationParticipantInboxDTO> getParticipantInbox(
             @RequestParam(defaultValue = "1") @Min(1) int page,
             @RequestParam(defaultValue = "10") @Min(1) int limit,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterTimestamp,
+            @RequestParam(required = false) Integer afterId,
             @AuthenticationPrincipal User user) {
-        TeamFormationParticipantInboxDTO resBody = teamFormationService.getParticipantInbox(page, limit, user);
+        TeamFormationParticipantInboxDTO resBody = teamFormationService.getParticipantInbox(page, limit, afterTimestamp, afterId, user);
 
         return new ResponseEntity<>(resBody, HttpStatus.OK);
     }
@@ -261,6 +273,43 @@ public class TeamFormationController {
         return new ResponseEntity<>(resBody, HttpStatus.OK);
     }
 
+    /**
+     * Streams changes to the participant's inbox and their team's inbox as server-sent events.
+     * Clients should reload the affected inbox when they receive an event instead of polling for changes.
+     */
+    @PreAuthorize("hasAuthority(@authorities.TEAM_FORMATION_READ_PARTICIPANT)")
+    @GetMapping(value = "/inbox/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeToInboxEvents(
+            @AuthenticationPrincipal User user) {
+        return teamFormationService.subscribeToInboxEvents(user);
+    }
+
+    /**
+     * Suggests existing topics and skills starting with what the user has typed so far, from the most used to the least.
+     */
+    @PreAuthorize("hasAuthority(@authorities.TEAM_FORMATION_CREATE_PARTICIPANT) or hasAuthority(@authorities.TEAM_FORMATION_CREATE_TEAM)")
+    @GetMapping("/topicsAndSkills/suggest")
+    public ResponseEntity<TopicOrSkillSuggestionsDTO> getTopicOrSkillSuggestions(
+            @RequestParam(defaultValue = "") String prefix,
+            @RequestParam(defaultValue = "10") @Min(1) int limit) {
+        TopicOrSkillSuggestionsDTO resBody = teamFormationService.getTopicOrSkillSuggestions(prefix, limit);
+
+        return new ResponseEntity<>(resBody, HttpStatus.OK);
+    }
+
+    /**
+     * Suggests a team for each participant that isn't in a team yet and sends them an invitation from that team, unless
+     * it's a dry run. Meant for organizers to match the remaining participants near the end of team formation.
+     */
+    @PreAuthorize("hasAuthority(@authorities.TEAM_FORMATION_MATCH_PARTICIPANTS)")
+    @PostMapping("/matching")
+    public ResponseEntity<TeamFormationMatchingResultDTO> matchParticipantsToTeams(
+            @RequestBody @Valid TeamFormationMatchingRequestDTO reqBody) {
+        TeamFormationMatchingResultDTO resBody = teamFormationService.matchParticipantsToTeams(reqBody);
+
+        return new ResponseEntity<>(resBody, HttpStatus.OK);
+    }
+
     /**
      * Gets the details about a single invitation for a participant. Only invitations that a participant has received
      * can be viewed.
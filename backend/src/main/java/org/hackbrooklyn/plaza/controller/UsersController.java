@@ -9,7 +9,9 @@ import org.hackbrooklyn.plaza.service.impl.UsersServiceImpl.TokenDTOAndUser;
 import org.hackbrooklyn.plaza.util.JwtUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
@@ -23,6 +25,7 @@ import javax.validation.Valid;
 import javax.validation.constraints.Email;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Size;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RestController
@@ -43,18 +46,22 @@ public class UsersController {
 
     /**
      * Logs a user in and generates a refresh token and an access token.
+     * The password is checked off of the request thread and the response is sent once it has been checked.
      */
     @PostMapping("login")
-    public ResponseEntity<TokenDTO> login(@RequestBody @Valid AuthRequest reqBody, HttpServletResponse response) {
+    public CompletableFuture<ResponseEntity<TokenDTO>> login(@RequestBody @Valid AuthRequest reqBody) {
         // Check user credentials and get authenticating user
-        User authenticatingUser = usersService.logInUser(reqBody.getEmail(), reqBody.getPassword());
-
-        // Generate access and refresh tokens for the response
-        TokenDTO resBody = jwtUtils.generateAccessTokenDTO(authenticatingUser);
-        Cookie jwtCookie = jwtUtils.generateRefreshTokenCookie(authenticatingUser);
-        response.addCookie(jwtCookie);
-
-        return new ResponseEntity<>(resBody, HttpStatus.OK);
+        return usersService.logInUser(reqBody.getEmail(), reqBody.getPassword()).thenApply(authenticatingUser -> {
+            // Generate access and refresh tokens for the response
+            TokenDTO resBody = jwtUtils.generateAccessTokenDTO(authenticatingUser);
+            ResponseCookie jwtCookie = jwtUtils.generateRefreshTokenCookie(authenticatingUser);
+
+            // The cookie is sent as a header on the response entity since the servlet response shouldn't be changed
+            // off of the request thread
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.SET_COOKIE, jwtCookie.toString())
+                    .body(resBody);
+        });
     }
 
     /**
@@ -89,13 +96,9 @@ public class UsersController {
      * Activates a user's account and generates a refresh token and an access token.
      */
     @PostMapping("activate")
-    public ResponseEntity<TokenDTO> activate(@RequestBody @Valid KeyPasswordBodyRequest reqBody, HttpServletResponse response) {
-        TokenDTOAndUser tokenDTOAndUser = usersService.activateUser(reqBody.getKey(), reqBody.getPassword());
-
-        Cookie jwtCookie = jwtUtils.generateRefreshTokenCookie(tokenDTOAndUser.getUser());
-        response.addCookie(jwtCookie);
-
-        return new ResponseEntity<>(tokenDTOAndUser.getTokenDTO(), HttpStatus.OK);
+    public CompletableFuture<ResponseEntity<TokenDTO>> activate(@RequestBody @Valid KeyPasswordBodyRequest reqBody) {
+        return usersService.activateUser(reqBody.getKey(), reqBody.getPassword())
+                .thenApply(this::sendTokens);
     }
 
     @PostMapping("activate/request")
@@ -109,13 +112,9 @@ public class UsersController {
      * Resets a user's password given a password reset key and generates a refresh token and an access token.
      */
     @PostMapping("resetPassword")
-    public ResponseEntity<TokenDTO> resetPassword(@RequestBody @Valid KeyPasswordBodyRequest reqBody, HttpServletResponse response) {
-        TokenDTOAndUser tokenDTOAndUser = usersService.resetPassword(reqBody.getKey(), reqBody.getPassword());
-
-        Cookie jwtCookie = jwtUtils.generateRefreshTokenCookie(tokenDTOAndUser.getUser());
-        response.addCookie(jwtCookie);
-
-        return new ResponseEntity<>(tokenDTOAndUser.getTokenDTO(), HttpStatus.OK);
+    public CompletableFuture<ResponseEntity<TokenDTO>> resetPassword(@RequestBody @Valid KeyPasswordBodyRequest reqBody) {
+        return usersService.resetPassword(reqBody.getKey(), reqBody.getPassword())
+                .thenApply(this::sendTokens);
     }
 
     /**
@@ -154,13 +153,12 @@ public class UsersController {
 
     /**
      * Creates a new user account without needing the activation process to be done.
+     * The password is hashed off of the request thread and the response is sent once the account has been created.
      */
     @PreAuthorize("hasAuthority(@authorities.USERS_CREATE)")
     @PostMapping("create")
-    public ResponseEntity<Void> createUser(@RequestBody @Valid CreateUserRequestDTO reqBody) {
-        usersService.createUser(reqBody);
-
-        return new ResponseEntity<>(HttpStatus.OK);
+    public CompletableFuture<ResponseEntity<Void>> createUser(@RequestBody @Valid CreateUserRequestDTO reqBody) {
+        return usersService.createUser(reqBody).thenApply(created -> new ResponseEntity<Void>(HttpStatus.OK));
     }
 
     /**
@@ -184,6 +182,14 @@ public class UsersController {
         return new ResponseEntity<>(resBody, HttpStatus.OK);
     }
 
+    private ResponseEntity<TokenDTO> sendTokens(TokenDTOAndUser tokenDTOAndUser) {
+        ResponseCookie jwtCookie = jwtUtils.generateRefreshTokenCookie(tokenDTOAndUser.getUser());
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.SET_COOKIE, jwtCookie.toString())
+                .body(tokenDTOAndUser.getTokenDTO());
+    }
+
     @Data
     private static class EmailBodyRequest {
 
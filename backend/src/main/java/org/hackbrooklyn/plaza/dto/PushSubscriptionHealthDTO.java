@@ -0,0 +1,21 @@
+package org.hackbrooklyn.plaza.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * The size of the push notification subscription table and how deliveries from this instance of the app have turned
+ * out since it started.
+ */
+@Data
+@AllArgsConstructor
+public class PushSubscriptionHealthDTO {
+    private long totalSubscriptions;
+    private long subscribedUsers;
+    private long pendingRemovals;
+    private long removedSinceStartup;
+    private long deliveredSinceStartup;
+    private long retryableSinceStartup;
+    private long rejectedSinceStartup;
+    private long goneSinceStartup;
+}
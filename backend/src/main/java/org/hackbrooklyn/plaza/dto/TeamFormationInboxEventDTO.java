@@ -0,0 +1,30 @@
+package org.hackbrooklyn.plaza.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * A change to a team's or participant's inbox, streamed to the participants who can see the inbox.
+ */
+@Data
+@AllArgsConstructor
+@RequiredArgsConstructor
+public class TeamFormationInboxEventDTO {
+
+    private Inbox inbox;
+    private Change change;
+
+    // The ID of the join request or invitation that was added or removed
+    private int messageId;
+
+    public enum Inbox {
+        TEAM,
+        PARTICIPANT
+    }
+
+    public enum Change {
+        ADDED,
+        REMOVED
+    }
+}
@@ -0,0 +1,19 @@
+package org.hackbrooklyn.plaza.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class TeamFormationMatchSuggestionDTO {
+
+    private int participantId;
+    private int teamId;
+
+    // The ID of the invitation sent for the suggestion, or null if it was a dry run
+    private Integer invitationId;
+
+    private double score;
+    private int sharedTopicsAndSkills;
+    private boolean newSpecialization;
+}
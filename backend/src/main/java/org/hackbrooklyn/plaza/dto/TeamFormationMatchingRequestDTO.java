@@ -0,0 +1,20 @@
+package org.hackbrooklyn.plaza.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+import javax.validation.constraints.Size;
+
+@Data
+@AllArgsConstructor
+@RequiredArgsConstructor
+public class TeamFormationMatchingRequestDTO {
+
+    // Only report the suggested matches without sending any invitations
+    private boolean dryRun;
+
+    // The message to send with each invitation, or null to use the default message
+    @Size(min = 1, max = 500)
+    private String message;
+}
@@ -0,0 +1,35 @@
+package org.hackbrooklyn.plaza.dto;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+@Data
+@RequiredArgsConstructor
+public class TeamFormationMatchingResultDTO {
+
+    private boolean dryRun;
+
+    private int participants;
+    private int teams;
+    private int openSpots;
+    private int matchedParticipants;
+    private int unmatchedParticipants;
+    private int rounds;
+
+    // Match quality, where scores range from 0 to 1
+    private double averageScore;
+    private double minimumScore;
+    private double averageSharedTopicsAndSkills;
+    private double newSpecializationRate;
+
+    // How long each step took, in milliseconds
+    private long loadMillis;
+    private long scoringMillis;
+    private long assignmentMillis;
+    private long saveMillis;
+    private long totalMillis;
+
+    private List<TeamFormationMatchSuggestionDTO> suggestions;
+}
@@ -5,6 +5,7 @@ import lombok.EqualsAndHashCode;
 import lombok.RequiredArgsConstructor;
 import org.hackbrooklyn.plaza.model.TeamFormationParticipantInvitation;
 
+import java.time.LocalDateTime;
 import java.util.Collection;
 
 @Data
@@ -12,12 +13,18 @@ import java.util.Collection;
 @EqualsAndHashCode(callSuper = true)
 public class TeamFormationParticipantInboxDTO extends PaginatedResponse {
 
-    public TeamFormationParticipantInboxDTO(int pages, Collection<TeamFormationParticipantInvitation> invitations, long totalFoundInvitations) {
+    public TeamFormationParticipantInboxDTO(int pages, Collection<TeamFormationParticipantInvitation> invitations, long totalFoundInvitations, LocalDateTime nextCursorTimestamp, Integer nextCursorId) {
         super(pages);
         this.invitations = invitations;
         this.totalFoundInvitations = totalFoundInvitations;
+        this.nextCursorTimestamp = nextCursorTimestamp;
+        this.nextCursorId = nextCursorId;
     }
 
     private Collection<TeamFormationParticipantInvitation> invitations;
     private long totalFoundInvitations;
+
+    // The timestamp and ID to pass as afterTimestamp and afterId to get the next page, or null if there are no more results
+    private LocalDateTime nextCursorTimestamp;
+    private Integer nextCursorId;
 }
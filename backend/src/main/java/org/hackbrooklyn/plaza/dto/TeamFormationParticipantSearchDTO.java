@@ -3,7 +3,6 @@ package org.hackbrooklyn.plaza.dto;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.RequiredArgsConstructor;
-import org.hackbrooklyn.plaza.model.TeamFormationParticipant;
 
 import java.util.Collection;
 
@@ -12,13 +11,17 @@ import java.util.Collection;
 @EqualsAndHashCode(callSuper = true)
 public class TeamFormationParticipantSearchDTO extends PaginatedResponse {
 
-    public TeamFormationParticipantSearchDTO(int pages, Collection<TeamFormationParticipant> participants, long totalFoundParticipants) {
+    public TeamFormationParticipantSearchDTO(int pages, Collection<TeamFormationParticipantSummaryDTO> participants, long totalFoundParticipants, Integer nextCursor) {
         super(pages);
         this.participants = participants;
         this.totalFoundParticipants = totalFoundParticipants;
+        this.nextCursor = nextCursor;
     }
 
-    private Collection<TeamFormationParticipant> participants;
+    private Collection<TeamFormationParticipantSummaryDTO> participants;
     private long totalFoundParticipants;
 
+    // The ID to pass as afterId to get the next page, or null if there are no more results
+    private Integer nextCursor;
+
 }
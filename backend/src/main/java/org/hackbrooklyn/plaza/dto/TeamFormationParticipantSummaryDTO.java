@@ -0,0 +1,30 @@
+package org.hackbrooklyn.plaza.dto;
+
+import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.ObjectIdGenerators.PropertyGenerator;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A read-only view of a participant for the team formation browser, serialized the same way as a
+ * `TeamFormationParticipant`.
+ */
+@JsonIdentityInfo(generator = PropertyGenerator.class, property = "id")
+@Getter
+@Setter
+@RequiredArgsConstructor
+public class TeamFormationParticipantSummaryDTO {
+
+    private int id;
+    private UserFullNameDTO user;
+    private TeamFormationTeamSummaryDTO team;
+    private String specialization;
+    private String objectiveStatement;
+    private String contactInfo;
+    private boolean visibleInBrowser;
+    private List<String> interestedTopicsAndSkills = new ArrayList<>();
+}
@@ -5,6 +5,7 @@ import lombok.EqualsAndHashCode;
 import lombok.RequiredArgsConstructor;
 import org.hackbrooklyn.plaza.model.TeamFormationTeamJoinRequest;
 
+import java.time.LocalDateTime;
 import java.util.Collection;
 
 @Data
@@ -12,12 +13,18 @@ import java.util.Collection;
 @EqualsAndHashCode(callSuper = true)
 public class TeamFormationTeamInboxDTO extends PaginatedResponse {
 
-    public TeamFormationTeamInboxDTO(int pages, Collection<TeamFormationTeamJoinRequest> joinRequests, long totalFoundJoinRequests) {
+    public TeamFormationTeamInboxDTO(int pages, Collection<TeamFormationTeamJoinRequest> joinRequests, long totalFoundJoinRequests, LocalDateTime nextCursorTimestamp, Integer nextCursorId) {
         super(pages);
         this.joinRequests = joinRequests;
         this.totalFoundJoinRequests = totalFoundJoinRequests;
+        this.nextCursorTimestamp = nextCursorTimestamp;
+        this.nextCursorId = nextCursorId;
     }
 
     private Collection<TeamFormationTeamJoinRequest> joinRequests;
     private long totalFoundJoinRequests;
+
+    // The timestamp and ID to pass as afterTimestamp and afterId to get the next page, or null if there are no more results
+    private LocalDateTime nextCursorTimestamp;
+    private Integer nextCursorId;
 }
@@ -3,7 +3,6 @@ package org.hackbrooklyn.plaza.dto;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.RequiredArgsConstructor;
-import org.hackbrooklyn.plaza.model.TeamFormationTeam;
 
 import java.util.Collection;
 
@@ -12,12 +11,16 @@ import java.util.Collection;
 @EqualsAndHashCode(callSuper = true)
 public class TeamFormationTeamSearchDTO extends PaginatedResponse {
 
-    public TeamFormationTeamSearchDTO(int pages, Collection<TeamFormationTeam> teams, long totalFoundTeams) {
+    public TeamFormationTeamSearchDTO(int pages, Collection<TeamFormationTeamSummaryDTO> teams, long totalFoundTeams, Integer nextCursor) {
         super(pages);
         this.teams = teams;
         this.totalFoundTeams = totalFoundTeams;
+        this.nextCursor = nextCursor;
     }
 
-    private Collection<TeamFormationTeam> teams;
+    private Collection<TeamFormationTeamSummaryDTO> teams;
     private long totalFoundTeams;
+
+    // The ID to pass as afterId to get the next page, or null if there are no more results
+    private Integer nextCursor;
 }
@@ -0,0 +1,32 @@
+package org.hackbrooklyn.plaza.dto;
+
+import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.ObjectIdGenerators.PropertyGenerator;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A read-only view of a team for the team formation browser, serialized the same way as a `TeamFormationTeam`.
+ */
+@JsonIdentityInfo(generator = PropertyGenerator.class, property = "id")
+@Getter
+@Setter
+@RequiredArgsConstructor
+public class TeamFormationTeamSummaryDTO {
+
+    private int id;
+    private String name;
+    private int size;
+
+    // The ID of the team's leader
+    private Integer leader;
+
+    private List<TeamFormationParticipantSummaryDTO> members = new ArrayList<>();
+    private String objectiveStatement;
+    private boolean visibleInBrowser;
+    private List<String> interestedTopicsAndSkills = new ArrayList<>();
+}
@@ -0,0 +1,14 @@
+package org.hackbrooklyn.plaza.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class TopicOrSkillSuggestionDTO {
+
+    private String name;
+
+    // The number of teams and participants interested in the topic or skill
+    private int usageCount;
+}
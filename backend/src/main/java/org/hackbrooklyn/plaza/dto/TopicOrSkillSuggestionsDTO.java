@@ -0,0 +1,13 @@
+package org.hackbrooklyn.plaza.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class TopicOrSkillSuggestionsDTO {
+
+    private List<TopicOrSkillSuggestionDTO> suggestions;
+}
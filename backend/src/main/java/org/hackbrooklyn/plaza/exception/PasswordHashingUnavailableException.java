@@ -0,0 +1,19 @@
+package org.hackbrooklyn.plaza.exception;
+
+public class PasswordHashingUnavailableException extends RuntimeException {
+
+    public PasswordHashingUnavailableException() {
+    }
+
+    public PasswordHashingUnavailableException(String message) {
+        super(message);
+    }
+
+    public PasswordHashingUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public PasswordHashingUnavailableException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,65 @@
+package org.hackbrooklyn.plaza.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+/**
+ * A push notification waiting to be sent. Entries are written in the same transaction as the change they notify about
+ * and are deleted once they've been sent.
+ */
+@Entity
+@Table(name = "notification_outbox", indexes = {
+        @Index(columnList = "status, next_attempt_at")
+})
+@Getter
+@Setter
+@RequiredArgsConstructor
+public class NotificationOutboxEntry {
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    // The user to notify, or null to notify every user with a push notification subscription
+    @Column(name = "recipient_user_id")
+    private Integer recipientUserId;
+
+    // The notification's content as JSON
+    @Column(name = "payload", columnDefinition = "TEXT")
+    @NotNull
+    private String payload;
+
+    @Column(name = "status")
+    @Enumerated(EnumType.STRING)
+    @NotNull
+    private Status status;
+
+    @Column(name = "attempts")
+    private int attempts;
+
+    @Column(name = "next_attempt_at")
+    @NotNull
+    private LocalDateTime nextAttemptAt;
+
+    // Set while an instance of the app is sending the notification so that no other instance sends it at the same time
+    @Column(name = "claim_token")
+    private String claimToken;
+
+    @Column(name = "claimed_until")
+    private LocalDateTime claimedUntil;
+
+    @Column(name = "created_at")
+    @NotNull
+    private LocalDateTime createdAt;
+
+    public enum Status {
+        PENDING,
+        FAILED
+    }
+}
@@ -70,6 +70,11 @@ public class TeamFormationParticipant {
     @JsonSerialize(using = TopicOrSkillSetSerializer.class)
     private Set<TopicOrSkill> interestedTopicsAndSkills;
 
+    // Only changed with update queries in the same transaction as the invitations, so it's never written from here
+    @Column(name = "pending_invitation_count", insertable = false, updatable = false, columnDefinition = "integer not null default 0")
+    @JsonIgnore
+    private int pendingInvitationCount;
+
     @OneToMany(mappedBy = "requestingParticipant", cascade = CascadeType.ALL)
     @JsonIgnore
     private Set<TeamFormationTeamJoinRequest> sentTeamJoinRequests;
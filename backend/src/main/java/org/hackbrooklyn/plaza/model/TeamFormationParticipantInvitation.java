@@ -15,6 +15,9 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "team_formation_participant_invitations", uniqueConstraints = {
         @UniqueConstraint(columnNames = {"invited_participant_id", "inviting_team_id"})
+}, indexes = {
+        @Index(columnList = "invited_participant_id, invitation_accepted, invitation_timestamp"),
+        @Index(columnList = "inviting_team_id, invitation_accepted")
 })
 @Getter
 @Setter
@@ -48,6 +48,12 @@ public class TeamFormationTeam {
     @NotNull
     private Set<TeamFormationParticipant> members;
 
+    // Only changed with conditional update queries after the team is created so that concurrent joins can't fill the
+    // team past its size
+    @Column(name = "member_count", updatable = false, columnDefinition = "integer not null default 0")
+    @JsonIgnore
+    private int memberCount;
+
     @Column(name = "objective_statement")
     @Size(min = 1, max = 200)
     @NotBlank
@@ -68,6 +74,17 @@ public class TeamFormationTeam {
     @JsonSerialize(using = TopicOrSkillSetSerializer.class)
     private Set<TopicOrSkill> interestedTopicsAndSkills;
 
+    // Only changed with update queries in the same transaction as the join requests, so it's never written from here
+    @Column(name = "pending_join_request_count", insertable = false, updatable = false, columnDefinition = "integer not null default 0")
+    @JsonIgnore
+    private int pendingJoinRequestCount;
+
+    // Bumped by the member count update queries too, so that changes based on an outdated member count are rejected
+    @Version
+    @Column(name = "version", columnDefinition = "bigint not null default 0")
+    @JsonIgnore
+    private long version;
+
     @OneToMany(mappedBy = "requestedTeam", cascade = CascadeType.ALL)
     @JsonIgnore
     private Set<TeamFormationTeamJoinRequest> receivedTeamJoinRequests;
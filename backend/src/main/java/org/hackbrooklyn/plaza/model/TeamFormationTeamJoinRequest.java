@@ -17,6 +17,8 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "team_formation_team_join_requests", uniqueConstraints = {
         @UniqueConstraint(columnNames = {"requested_team_id", "requesting_participant_id"})
+}, indexes = {
+        @Index(columnList = "requested_team_id, request_accepted, request_timestamp")
 })
 @Getter
 @Setter
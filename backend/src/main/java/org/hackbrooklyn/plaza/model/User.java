@@ -62,6 +62,29 @@ public class User implements UserDetails {
     @JoinColumn(name = "linked_application", referencedColumnName = "application_number", unique = true)
     private SubmittedApplication linkedApplication;
 
+    // Set when the user was built from the claims of an access token and only has their ID, email, and role
+    @Transient
+    @JsonIgnore
+    private boolean loadedFromToken;
+
+    /**
+     * Builds a user from the identity and role embedded in a verified access token without looking them up.
+     *
+     * @param id    The user's ID.
+     * @param email The user's email.
+     * @param role  The user's role.
+     * @return The partially loaded user.
+     */
+    public static User fromTokenClaims(int id, String email, String role) {
+        User user = new User();
+        user.setId(id);
+        user.setEmail(email);
+        user.setRole(role);
+        user.setLoadedFromToken(true);
+
+        return user;
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return Roles.getGrantedAuthoritiesForRole(this.role);
@@ -0,0 +1,61 @@
+package org.hackbrooklyn.plaza.repository;
+
+import org.hackbrooklyn.plaza.model.NotificationOutboxEntry;
+import org.hackbrooklyn.plaza.model.NotificationOutboxEntry.Status;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface NotificationOutboxRepository extends JpaRepository<NotificationOutboxEntry, Integer> {
+
+    @Query("select e.id from NotificationOutboxEntry e where e.status = ?1 and e.nextAttemptAt <= ?2 " +
+            "and (e.claimedUntil is null or e.claimedUntil < ?2) order by e.nextAttemptAt")
+    List<Integer> findClaimableIds(Status status, LocalDateTime now, Pageable pageable);
+
+    /**
+     * Claims the given entries that are still claimable, so that only one instance of the app claims each entry even
+     * if several found the same entries.
+     */
+    @Transactional
+    @Modifying
+    @Query("update NotificationOutboxEntry e set e.claimToken = ?1, e.claimedUntil = ?2, e.attempts = e.attempts + 1 " +
+            "where e.id in ?3 and e.status = ?4 and e.nextAttemptAt <= ?5 and (e.claimedUntil is null or e.claimedUntil < ?5)")
+    int claim(String claimToken, LocalDateTime claimedUntil, Collection<Integer> ids, Status status, LocalDateTime now);
+
+    List<NotificationOutboxEntry> findAllByClaimToken(String claimToken);
+
+    @Transactional
+    @Modifying
+    @Query("delete from NotificationOutboxEntry e where e.id = ?1 and e.claimToken = ?2")
+    int deleteClaimed(int id, String claimToken);
+
+    @Transactional
+    @Modifying
+    @Query("update NotificationOutboxEntry e set e.status = ?3, e.nextAttemptAt = ?4, e.claimToken = null, e.claimedUntil = null " +
+            "where e.id = ?1 and e.claimToken = ?2")
+    int releaseClaimed(int id, String claimToken, Status status, LocalDateTime nextAttemptAt);
+
+    /**
+     * Gives up a claim without counting it as an attempt, so that the entry can be claimed again right away.
+     */
+    @Transactional
+    @Modifying
+    @Query("update NotificationOutboxEntry e set e.attempts = e.attempts - 1, e.claimToken = null, e.claimedUntil = null " +
+            "where e.id = ?1 and e.claimToken = ?2")
+    int unclaim(int id, String claimToken);
+
+    @Modifying
+    @Query(value = "insert into notification_outbox (recipient_user_id, payload, status, attempts, next_attempt_at, created_at) " +
+            "select distinct s.subscribed_user_id, ?1, 'PENDING', 0, ?2, ?2 from push_notification_subscriptions s", nativeQuery = true)
+    int insertForEverySubscribedUser(String payload, LocalDateTime now);
+
+    long countByStatus(Status status);
+}
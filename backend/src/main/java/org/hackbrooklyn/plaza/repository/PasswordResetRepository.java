@@ -3,15 +3,27 @@ package org.hackbrooklyn.plaza.repository;
 import org.hackbrooklyn.plaza.model.PasswordReset;
 import org.hackbrooklyn.plaza.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Repository
 public interface PasswordResetRepository extends JpaRepository<PasswordReset, Integer> {
     Optional<PasswordReset> findFirstByPasswordResetKey(String passwordResetKey);
 
+    /**
+     * Deletes a password reset key if it hasn't expired yet, so that only one reset can use it.
+     *
+     * @return The number of keys deleted, which is 0 if the key was already used or has expired.
+     */
+    @Modifying
+    @Query("delete from PasswordReset p where p.passwordResetKey = ?1 and p.keyExpiryTimestamp >= ?2")
+    int deleteUnexpiredByPasswordResetKey(String passwordResetKey, LocalDateTime now);
+
     @Transactional
     void deleteAllByResettingUser(User user);
 }
@@ -3,9 +3,12 @@ package org.hackbrooklyn.plaza.repository;
 import org.hackbrooklyn.plaza.model.PushNotificationSubscription;
 import org.hackbrooklyn.plaza.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,8 +17,21 @@ public interface PushNotificationSubscriptionRepository extends JpaRepository<Pu
 
     Optional<List<PushNotificationSubscription>> findAllBySubscribedUser(User subscribedUser);
 
+    List<PushNotificationSubscription> findAllBySubscribedUserId(int subscribedUserId);
+
     Optional<PushNotificationSubscription> findFirstBySubscribedUserAndEndpointAndKeyAndAuth(User subscribedUser, String endpoint, String key, String auth);
 
+    @Query("select s.id from PushNotificationSubscription s where s.subscribedUser = ?1")
+    List<Integer> findIdsBySubscribedUser(User subscribedUser);
+
     @Transactional
     void deleteAllBySubscribedUser(User subscribedUser);
+
+    @Transactional
+    @Modifying
+    @Query("delete from PushNotificationSubscription s where s.id in ?1")
+    int deleteAllByIdIn(Collection<Integer> ids);
+
+    @Query("select count(distinct s.subscribedUser.id) from PushNotificationSubscription s")
+    long countSubscribedUsers();
 }
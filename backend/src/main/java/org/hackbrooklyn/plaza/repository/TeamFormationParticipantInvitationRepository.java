@@ -2,7 +2,9 @@ package org.hackbrooklyn.plaza.repository;
 
 import org.hackbrooklyn.plaza.model.TeamFormationParticipant;
 import org.hackbrooklyn.plaza.model.TeamFormationParticipantInvitation;
+import org.hackbrooklyn.plaza.model.TeamFormationTeam;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
@@ -14,11 +16,42 @@ public interface TeamFormationParticipantInvitationRepository extends JpaReposit
 
     List<InvitationIdsOnly> findAllByInvitedParticipantAndInvitationAcceptedNullOrderByInvitationTimestamp(TeamFormationParticipant invitedParticipant);
 
+    boolean existsByInvitedParticipantAndInvitingTeam(TeamFormationParticipant invitedParticipant, TeamFormationTeam invitingTeam);
+
     @Query("select inv from TeamFormationParticipantInvitation inv join fetch inv.invitingTeam where inv.invitationId = ?1")
     Optional<TeamFormationParticipantInvitation> findByIdLoadTeam(int id);
 
+    @Query("select inv.invitedParticipant.id from TeamFormationParticipantInvitation inv where inv.invitingTeam = ?1")
+    List<Integer> findInvitedParticipantIdsByInvitingTeam(TeamFormationTeam invitingTeam);
+
+    @Query("select inv.invitationId as invitationId, inv.invitedParticipant.id as invitedParticipantId " +
+            "from TeamFormationParticipantInvitation inv where inv.invitingTeam = ?1 and inv.invitationAccepted is null")
+    List<PendingInvitation> findPendingByInvitingTeam(TeamFormationTeam invitingTeam);
+
+    @Modifying
+    @Query("delete from TeamFormationParticipantInvitation inv where inv.invitingTeam = ?1")
+    void deleteAllSentByTeam(TeamFormationTeam invitingTeam);
+
+    @Query("select inv.invitingTeam.id as teamId, inv.invitedParticipant.id as participantId " +
+            "from TeamFormationParticipantInvitation inv where inv.invitedParticipant.team is null")
+    List<InvitationPair> findAllSentToParticipantsWithoutTeam();
+
     interface InvitationIdsOnly {
 
         int getInvitationId();
     }
+
+    interface PendingInvitation {
+
+        int getInvitationId();
+
+        int getInvitedParticipantId();
+    }
+
+    interface InvitationPair {
+
+        int getTeamId();
+
+        int getParticipantId();
+    }
 }
@@ -1,14 +1,115 @@
 package org.hackbrooklyn.plaza.repository;
 
 import org.hackbrooklyn.plaza.model.TeamFormationParticipant;
+import org.hackbrooklyn.plaza.model.TeamFormationTeam;
 import org.hackbrooklyn.plaza.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+import static org.hackbrooklyn.plaza.repository.TeamFormationTeamRepository.SearchableText;
+import static org.hackbrooklyn.plaza.repository.TopicOrSkillRepository.TopicOrSkillLink;
+import static org.hackbrooklyn.plaza.repository.TopicOrSkillRepository.TopicOrSkillNameLink;
+
 @Repository
 public interface TeamFormationParticipantRepository extends JpaRepository<TeamFormationParticipant, Integer> {
 
     Optional<TeamFormationParticipant> findFirstByUser(User user);
+
+    @Query("select p.id as ownerId, tos.id as topicOrSkillId from TeamFormationParticipant p join p.interestedTopicsAndSkills tos")
+    List<TopicOrSkillLink> findAllTopicOrSkillLinks();
+
+    @Query("select p.id from TeamFormationParticipant p where p.visibleInBrowser = true")
+    List<Integer> findAllVisibleIds();
+
+    @Query("select p.id as id, concat(concat(u.firstName, ' '), u.lastName) as name, p.objectiveStatement as objectiveStatement " +
+            "from TeamFormationParticipant p join p.user u")
+    List<SearchableText> findAllSearchableText();
+
+    @Query("select p.id as ownerId, tos.name as topicOrSkillName from TeamFormationParticipant p join p.interestedTopicsAndSkills tos")
+    List<TopicOrSkillNameLink> findAllTopicOrSkillNameLinks();
+
+    @Modifying
+    @Query("update TeamFormationParticipant p set p.pendingInvitationCount = p.pendingInvitationCount + ?2 where p = ?1")
+    void addToPendingInvitationCount(TeamFormationParticipant participant, int amount);
+
+    @Modifying
+    @Query("update TeamFormationParticipant p set p.pendingInvitationCount = p.pendingInvitationCount + 1 where p.id in ?1")
+    void addPendingInvitationToAll(Collection<Integer> participantIds);
+
+    @Modifying
+    @Query("update TeamFormationParticipant p set p.pendingInvitationCount = p.pendingInvitationCount - 1 " +
+            "where p.id in (select inv.invitedParticipant.id from TeamFormationParticipantInvitation inv " +
+            "where inv.invitingTeam = ?1 and inv.invitationAccepted is null)")
+    void removePendingInvitationsFromTeam(TeamFormationTeam invitingTeam);
+
+    /**
+     * Puts a participant in a team and hides them from the participant browser unless they're already in a team.
+     *
+     * @return 1 if the participant joined the team, or 0 if they're already in a team.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update TeamFormationParticipant p set p.team = ?2, p.visibleInBrowser = false where p = ?1 and p.team is null")
+    int joinTeamIfNotInTeam(TeamFormationParticipant participant, TeamFormationTeam team);
+
+    /**
+     * Takes a participant out of a team if they're still in it.
+     *
+     * @return 1 if the participant left the team, or 0 if they weren't in it.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update TeamFormationParticipant p set p.team = null where p = ?1 and p.team = ?2")
+    int leaveTeamIfInTeam(TeamFormationParticipant participant, TeamFormationTeam team);
+
+    @Query("select p.user from TeamFormationParticipant p where p.team = ?1")
+    List<User> findUsersByTeam(TeamFormationTeam team);
+
+    @Modifying(flushAutomatically = true)
+    @Query("update TeamFormationParticipant p set p.team = null where p.team = ?1")
+    void removeAllFromTeam(TeamFormationTeam team);
+
+    /**
+     * Finds the participants that can be matched with a team, which are the ones without a team that are still visible
+     * in the participant browser.
+     */
+    @Query("select p.id as id, p.specialization as specialization from TeamFormationParticipant p " +
+            "where p.team is null and p.visibleInBrowser = true")
+    List<MatchableParticipant> findAllMatchable();
+
+    @Query("select p.id as ownerId, tos.id as topicOrSkillId from TeamFormationParticipant p join p.interestedTopicsAndSkills tos " +
+            "where p.team is null and p.visibleInBrowser = true")
+    List<TopicOrSkillLink> findAllMatchableTopicOrSkillLinks();
+
+    @Query("select t.id as teamId, p.specialization as specialization from TeamFormationParticipant p join p.team t " +
+            "where t.visibleInBrowser = true and t.memberCount < t.size")
+    List<TeamMemberSpecialization> findAllMatchableTeamMemberSpecializations();
+
+    @Query("select p.id as participantId, u as user from TeamFormationParticipant p join p.user u where p.id in ?1")
+    List<ParticipantUser> findUsersByIds(Collection<Integer> participantIds);
+
+    interface MatchableParticipant {
+
+        int getId();
+
+        String getSpecialization();
+    }
+
+    interface TeamMemberSpecialization {
+
+        int getTeamId();
+
+        String getSpecialization();
+    }
+
+    interface ParticipantUser {
+
+        int getParticipantId();
+
+        User getUser();
+    }
 }
@@ -1,8 +1,10 @@
 package org.hackbrooklyn.plaza.repository;
 
+import org.hackbrooklyn.plaza.model.TeamFormationParticipant;
 import org.hackbrooklyn.plaza.model.TeamFormationTeam;
 import org.hackbrooklyn.plaza.model.TeamFormationTeamJoinRequest;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
@@ -14,9 +16,18 @@ public interface TeamFormationTeamJoinRequestRepository extends JpaRepository<Te
 
     List<RequestIdsOnly> findAllByRequestedTeamAndRequestAcceptedNullOrderByRequestTimestamp(TeamFormationTeam requestedTeam);
 
+    boolean existsByRequestedTeamAndRequestingParticipant(TeamFormationTeam requestedTeam, TeamFormationParticipant requestingParticipant);
+
     @Query("select jr from TeamFormationTeamJoinRequest jr join fetch jr.requestingParticipant where jr.requestId = ?1")
     Optional<TeamFormationTeamJoinRequest> findByIdLoadParticipant(int id);
 
+    @Query("select jr.requestedTeam.id from TeamFormationTeamJoinRequest jr where jr.requestingParticipant = ?1")
+    List<Integer> findRequestedTeamIdsByRequestingParticipant(TeamFormationParticipant requestingParticipant);
+
+    @Modifying
+    @Query("delete from TeamFormationTeamJoinRequest jr where jr.requestedTeam = ?1")
+    void deleteAllReceivedByTeam(TeamFormationTeam requestedTeam);
+
     interface RequestIdsOnly {
 
         int getRequestId();
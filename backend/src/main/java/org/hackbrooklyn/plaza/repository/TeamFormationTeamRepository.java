@@ -2,12 +2,106 @@ package org.hackbrooklyn.plaza.repository;
 
 import org.hackbrooklyn.plaza.model.TeamFormationTeam;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
+import static org.hackbrooklyn.plaza.repository.TopicOrSkillRepository.TopicOrSkillLink;
+import static org.hackbrooklyn.plaza.repository.TopicOrSkillRepository.TopicOrSkillNameLink;
+
 @Repository
 public interface TeamFormationTeamRepository extends JpaRepository<TeamFormationTeam, Integer> {
 
     Optional<TeamFormationTeam> findFirstByName(String name);
+
+    @Query("select t.id as ownerId, tos.id as topicOrSkillId from TeamFormationTeam t join t.interestedTopicsAndSkills tos")
+    List<TopicOrSkillLink> findAllTopicOrSkillLinks();
+
+    @Query("select t.id from TeamFormationTeam t where t.visibleInBrowser = true")
+    List<Integer> findAllVisibleIds();
+
+    @Query("select t.id as id, t.name as name, t.objectiveStatement as objectiveStatement from TeamFormationTeam t")
+    List<SearchableText> findAllSearchableText();
+
+    @Query("select t.id as ownerId, tos.name as topicOrSkillName from TeamFormationTeam t join t.interestedTopicsAndSkills tos")
+    List<TopicOrSkillNameLink> findAllTopicOrSkillNameLinks();
+
+    @Modifying
+    @Query("update TeamFormationTeam t set t.pendingJoinRequestCount = t.pendingJoinRequestCount + ?2 where t = ?1")
+    void addToPendingJoinRequestCount(TeamFormationTeam team, int amount);
+
+    /**
+     * Counts a new member towards a team unless the team is already full.
+     *
+     * @return 1 if the member was counted, or 0 if the team is full.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update TeamFormationTeam t set t.memberCount = t.memberCount + 1, t.version = t.version + 1 " +
+            "where t = ?1 and t.memberCount < t.size")
+    int addMemberIfNotFull(TeamFormationTeam team);
+
+    @Modifying(flushAutomatically = true)
+    @Query("update TeamFormationTeam t set t.memberCount = t.memberCount - 1, t.version = t.version + 1 " +
+            "where t = ?1 and t.memberCount > 0")
+    int removeMember(TeamFormationTeam team);
+
+    @Modifying(flushAutomatically = true)
+    @Query("update TeamFormationTeam t set t.visibleInBrowser = false, t.version = t.version + 1 " +
+            "where t = ?1 and t.memberCount >= t.size")
+    int hideIfFull(TeamFormationTeam team);
+
+    /**
+     * Empties a team that is about to be deleted, which also locks the team's row so that nobody can join it until the
+     * deletion commits.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update TeamFormationTeam t set t.memberCount = 0, t.visibleInBrowser = false, t.version = t.version + 1 where t = ?1")
+    void dissolve(TeamFormationTeam team);
+
+    @Modifying
+    @Query(value = "delete from team_formation_team_topics_and_skills where team_id = ?1", nativeQuery = true)
+    void deleteTopicOrSkillLinks(int teamId);
+
+    /**
+     * Deletes a team without loading its join requests and invitations to cascade to, which have to be deleted first.
+     */
+    @Modifying
+    @Query("delete from TeamFormationTeam t where t.id = ?1")
+    void deleteWithoutCascade(int teamId);
+
+    /**
+     * Finds the teams that can be matched with participants, which are the ones with open spots that are still visible
+     * in the team browser.
+     */
+    @Query("select t.id as id, t.name as name, t.size - t.memberCount as openSpots from TeamFormationTeam t " +
+            "where t.visibleInBrowser = true and t.memberCount < t.size")
+    List<MatchableTeam> findAllMatchable();
+
+    @Query("select t.id as ownerId, tos.id as topicOrSkillId from TeamFormationTeam t join t.interestedTopicsAndSkills tos " +
+            "where t.visibleInBrowser = true and t.memberCount < t.size")
+    List<TopicOrSkillLink> findAllMatchableTopicOrSkillLinks();
+
+    interface MatchableTeam {
+
+        int getId();
+
+        String getName();
+
+        int getOpenSpots();
+    }
+
+    /**
+     * The text that a team or participant can be searched by in the team formation browser.
+     */
+    interface SearchableText {
+
+        int getId();
+
+        String getName();
+
+        String getObjectiveStatement();
+    }
 }
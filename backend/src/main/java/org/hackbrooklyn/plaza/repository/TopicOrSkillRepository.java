@@ -4,10 +4,34 @@ import org.hackbrooklyn.plaza.model.TopicOrSkill;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface TopicOrSkillRepository extends JpaRepository<TopicOrSkill, Integer> {
 
     Optional<TopicOrSkill> findFirstByName(String name);
+
+    List<TopicOrSkill> findAllByNameIn(Collection<String> names);
+
+    /**
+     * A link between a team or participant and one of their interested topics and skills.
+     */
+    interface TopicOrSkillLink {
+
+        int getOwnerId();
+
+        int getTopicOrSkillId();
+    }
+
+    /**
+     * A link between a team or participant and the name of one of their interested topics and skills.
+     */
+    interface TopicOrSkillNameLink {
+
+        int getOwnerId();
+
+        String getTopicOrSkillName();
+    }
 }
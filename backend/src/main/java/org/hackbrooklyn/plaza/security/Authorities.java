@@ -23,6 +23,8 @@ public final class Authorities {
 
     public static final String PARTICIPANT_CHECKLIST_READ = "PARTICIPANT_CHECKLIST_READ";
 
+    public static final String PUSH_NOTIFICATIONS_READ_HEALTH = "PUSH_NOTIFICATIONS_READ_HEALTH";
+
     public static final String SAVED_EVENTS_ADD = "SAVED_EVENTS_ADD";
     public static final String SAVED_EVENTS_READ = "SAVED_EVENTS_READ";
     public static final String SAVED_EVENTS_REMOVE = "SAVED_EVENTS_REMOVE";
@@ -34,6 +36,7 @@ public final class Authorities {
     public static final String TEAM_FORMATION_UPDATE_TEAM = "TEAM_FORMATION_READ_TEAMS";
     public static final String TEAM_FORMATION_UPDATE_PARTICIPANT = "TEAM_FORMATION_READ_PARTICIPANTS";
     public static final String TEAM_FORMATION_DELETE_TEAM = "TEAM_FORMATION_READ_TEAMS";
+    public static final String TEAM_FORMATION_MATCH_PARTICIPANTS = "TEAM_FORMATION_MATCH_PARTICIPANTS";
 
     public static final String USERS_CREATE = "USERS_CREATE";
     public static final String USERS_UPDATE_ROLE = "USERS_UPDATE_ROLE";
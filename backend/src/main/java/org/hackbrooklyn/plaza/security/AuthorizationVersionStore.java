@@ -0,0 +1,25 @@
+package org.hackbrooklyn.plaza.security;
+
+/**
+ * Keeps a per-user authorization version that is embedded in stateless access tokens.
+ * <p>
+ * Bumping a user's version whenever their role changes makes every access token issued before the change stale, so
+ * the token can no longer be used to authorize requests with the old role.
+ */
+public interface AuthorizationVersionStore {
+
+    /**
+     * Gets the current authorization version of a user. Users whose version was never bumped are at version 0.
+     *
+     * @param userId The ID of the user.
+     * @return The user's current authorization version.
+     */
+    long getVersion(int userId);
+
+    /**
+     * Bumps the authorization version of a user, invalidating their previously issued stateless access tokens.
+     *
+     * @param userId The ID of the user.
+     */
+    void bumpVersion(int userId);
+}
@@ -2,7 +2,6 @@ package org.hackbrooklyn.plaza.security;
 
 import lombok.extern.slf4j.Slf4j;
 import org.hackbrooklyn.plaza.model.User;
-import org.hackbrooklyn.plaza.repository.UserRepository;
 import org.hackbrooklyn.plaza.util.JwtUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
@@ -27,17 +26,18 @@ public class JwtTokenFilter extends OncePerRequestFilter {
     @Value("${JWT_COOKIE_NAME}")
     private String JWT_COOKIE_NAME;
 
-    private final UserRepository userRepository;
+    private final UserPrincipalCache userPrincipalCache;
     private final JwtUtils jwtUtils;
 
-    public JwtTokenFilter(UserRepository userRepository, JwtUtils jwtUtils) {
-        this.userRepository = userRepository;
+    public JwtTokenFilter(UserPrincipalCache userPrincipalCache, JwtUtils jwtUtils) {
+        this.userPrincipalCache = userPrincipalCache;
         this.jwtUtils = jwtUtils;
     }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
         final String jwt;
+        final JwtUtils.JwtTypes expectedJwtType;
         if (request.getRequestURI().equals("/users/refreshAccessToken")) {
             // Check for JWT from the refresh token cookie
             final Cookie[] cookies = request.getCookies();
@@ -61,6 +61,7 @@ public class JwtTokenFilter extends OncePerRequestFilter {
             }
 
             jwt = jwtCookie.getValue();
+            expectedJwtType = JwtUtils.JwtTypes.REFRESH;
         } else {
             // Extract JWT from authorization header
             final String header = request.getHeader(HttpHeaders.AUTHORIZATION);
@@ -70,16 +71,25 @@ public class JwtTokenFilter extends OncePerRequestFilter {
             }
 
             jwt = header.split(" ")[1].trim();
+            expectedJwtType = JwtUtils.JwtTypes.ACCESS;
         }
 
-        // Validate JWT
-        if (!jwtUtils.validateJwt(jwt)) {
+        // Verify the JWT and make sure it is the right type of token for the endpoint
+        JwtUtils.VerifiedJwt verifiedJwt = jwtUtils.verify(jwt).orElse(null);
+        if (verifiedJwt == null || !verifiedJwt.isUsableAs(expectedJwtType)) {
             chain.doFilter(request, response);
             return;
         }
 
         // Get user identity and set it on the Spring security context
-        User foundUser = userRepository.findById(jwtUtils.getUserIdFromJwt(jwt)).orElse(null);
+        // Access tokens with a current embedded role are trusted as is, anything else is looked up
+        User foundUser;
+        if (expectedJwtType == JwtUtils.JwtTypes.ACCESS && jwtUtils.isStatelessAuthorizationCurrent(verifiedJwt)) {
+            foundUser = User.fromTokenClaims(verifiedJwt.getUserId(), verifiedJwt.getEmail(), verifiedJwt.getRole());
+        } else {
+            foundUser = userPrincipalCache.getUser(verifiedJwt.getUserId()).orElse(null);
+        }
+
         if (foundUser == null) {
             chain.doFilter(request, response);
             return;
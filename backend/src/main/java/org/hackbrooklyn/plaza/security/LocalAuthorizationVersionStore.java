@@ -0,0 +1,28 @@
+package org.hackbrooklyn.plaza.security;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Stores authorization versions in memory. Only suitable when a single instance of the app is running since other
+ * instances won't see the bumped versions.
+ */
+@Component
+@ConditionalOnProperty(name = "AUTHORIZATION_VERSION_STORE", havingValue = "local")
+public class LocalAuthorizationVersionStore implements AuthorizationVersionStore {
+
+    private final ConcurrentMap<Integer, Long> versions = new ConcurrentHashMap<>();
+
+    @Override
+    public long getVersion(int userId) {
+        return versions.getOrDefault(userId, 0L);
+    }
+
+    @Override
+    public void bumpVersion(int userId) {
+        versions.merge(userId, 1L, Long::sum);
+    }
+}
@@ -0,0 +1,76 @@
+package org.hackbrooklyn.plaza.security;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps token buckets in memory. Only suitable when a single instance of the app is running since each instance would
+ * otherwise allow the full limit on its own.
+ * <p>
+ * Each bucket is an immutable state swapped in with compare-and-set, so concurrent requests for the same bucket never
+ * block each other. Buckets that haven't been used for a while are full again and are evicted.
+ */
+@Component
+@ConditionalOnProperty(name = "RATE_LIMIT_STORE", havingValue = "local", matchIfMissing = true)
+public class LocalRateLimiter implements RateLimiter {
+
+    private final Cache<String, AtomicReference<BucketState>> buckets;
+
+    @Autowired
+    public LocalRateLimiter(
+            @Value("${RATE_LIMIT_MAX_BUCKETS:100000}") long maxBuckets,
+            @Value("${RATE_LIMIT_BUCKET_IDLE_TIMEOUT_MS:3600000}") long bucketIdleTimeoutMs
+    ) {
+        this.buckets = CacheBuilder.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(bucketIdleTimeoutMs, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @Override
+    public long tryConsume(String bucketKey, RateLimitRule.Limit limit) {
+        AtomicReference<BucketState> bucket;
+        try {
+            bucket = buckets.get(bucketKey, () -> new AtomicReference<>(new BucketState(limit.getCapacity(), now())));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+
+        while (true) {
+            BucketState currentState = bucket.get();
+            long nowMs = now();
+
+            double refilledTokens = Math.min(
+                    limit.getCapacity(),
+                    currentState.tokens + (nowMs - currentState.refilledAtMs) * limit.getRefillRatePerMs()
+            );
+            if (refilledTokens < 1) {
+                return (long) Math.ceil((1 - refilledTokens) / limit.getRefillRatePerMs());
+            }
+
+            if (bucket.compareAndSet(currentState, new BucketState(refilledTokens - 1, nowMs))) {
+                return 0;
+            }
+        }
+    }
+
+    private static long now() {
+        return System.currentTimeMillis();
+    }
+
+    @AllArgsConstructor
+    private static class BucketState {
+
+        private final double tokens;
+        private final long refilledAtMs;
+    }
+}
@@ -0,0 +1,129 @@
+package org.hackbrooklyn.plaza.security;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.hackbrooklyn.plaza.exception.PasswordHashingUnavailableException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs password hashing on a dedicated, bounded pool of threads so that a burst of logins can't tie up every request
+ * thread on CPU-bound hashing. When the pool's queue is full, new hashing work is rejected with a
+ * {@link PasswordHashingUnavailableException} instead of queueing without bound.
+ */
+@Slf4j
+@Component
+public class PasswordHashingExecutor {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Timer queueWaitTimer;
+
+    // Compared against when a user doesn't exist so that a failed login takes as long whether or not the user exists
+    private final String dummyHashedPassword;
+
+    @Autowired
+    public PasswordHashingExecutor(
+            PasswordEncoder passwordEncoder,
+            MeterRegistry meterRegistry,
+            @Value("${PASSWORD_HASHING_THREADS:0}") int threads,
+            @Value("${PASSWORD_HASHING_QUEUE_CAPACITY:64}") int queueCapacity
+    ) {
+        this.passwordEncoder = passwordEncoder;
+
+        // Hashing is CPU-bound, so there is no point in having more threads than cores
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+
+        this.encodeTimer = Timer.builder("password.hashing.duration")
+                .description("Time spent hashing passwords")
+                .tag("operation", "encode")
+                .register(meterRegistry);
+        this.matchesTimer = Timer.builder("password.hashing.duration")
+                .description("Time spent hashing passwords")
+                .tag("operation", "matches")
+                .register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("password.hashing.queue.wait")
+                .description("Time spent waiting for a password hashing thread")
+                .register(meterRegistry);
+        Gauge.builder("password.hashing.queue.size", executor, pool -> pool.getQueue().size())
+                .description("Number of password hashing tasks waiting for a thread")
+                .register(meterRegistry);
+
+        this.dummyHashedPassword = passwordEncoder.encode(UUID.randomUUID().toString());
+    }
+
+    /**
+     * Hashes a password.
+     *
+     * @param rawPassword The password to hash.
+     * @return A future that completes with the hashed password.
+     * @throws PasswordHashingUnavailableException If there are already too many passwords waiting to be hashed.
+     */
+    public CompletableFuture<String> encode(String rawPassword) {
+        return submit(encodeTimer, () -> passwordEncoder.encode(rawPassword));
+    }
+
+    /**
+     * Checks if a password matches a hashed password.
+     *
+     * @param rawPassword     The password to check.
+     * @param encodedPassword The hashed password to check against, or null if there is no user to check against.
+     * @return A future that completes with whether or not the password matches.
+     * @throws PasswordHashingUnavailableException If there are already too many passwords waiting to be hashed.
+     */
+    public CompletableFuture<Boolean> matches(String rawPassword, String encodedPassword) {
+        if (encodedPassword == null) {
+            return submit(matchesTimer, () -> {
+                passwordEncoder.matches(rawPassword, dummyHashedPassword);
+                return false;
+            });
+        }
+
+        return submit(matchesTimer, () -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    private <T> CompletableFuture<T> submit(Timer hashingTimer, Supplier<T> hashingTask) {
+        long queuedAtNanos = System.nanoTime();
+
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                queueWaitTimer.record(System.nanoTime() - queuedAtNanos, TimeUnit.NANOSECONDS);
+                return hashingTimer.record(hashingTask);
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            log.warn("Rejected password hashing task since {} tasks are already queued", executor.getQueue().size());
+            throw new PasswordHashingUnavailableException(e);
+        }
+    }
+
+    @PreDestroy
+    private void shutDown() {
+        executor.shutdown();
+    }
+}
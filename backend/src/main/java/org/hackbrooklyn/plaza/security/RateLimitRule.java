@@ -0,0 +1,99 @@
+package org.hackbrooklyn.plaza.security;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The token bucket limits for requests to a single route.
+ * <p>
+ * Rules are configured as a semicolon-separated list of routes, each followed by a comma-separated list of limits, e.g.
+ * {@code /users/login=ip:30/60,email:10/300;/newsletter/subscribe=ip:10/60}. Each limit is keyed by either the client's
+ * IP address ({@code ip}) or the {@code email} field of the request's JSON body, and allows a burst of up to
+ * {@code capacity} requests that refills evenly over {@code periodSeconds}.
+ */
+@Getter
+@AllArgsConstructor
+public class RateLimitRule {
+
+    private final String path;
+    private final List<Limit> limits;
+
+    public boolean hasEmailLimit() {
+        return limits.stream().anyMatch(limit -> limit.getKeyType() == KeyType.EMAIL);
+    }
+
+    /**
+     * Parses rules from their configured format.
+     *
+     * @param rulesSpec The rules in their configured format.
+     * @return The parsed rules mapped by the routes they apply to.
+     * @throws IllegalArgumentException If the rules are not in the configured format.
+     */
+    public static Map<String, RateLimitRule> parseAll(String rulesSpec) {
+        Map<String, RateLimitRule> rules = new LinkedHashMap<>();
+        for (String ruleSpec : rulesSpec.split(";")) {
+            if (ruleSpec.trim().isEmpty()) continue;
+
+            String[] pathAndLimits = ruleSpec.trim().split("=", 2);
+            if (pathAndLimits.length != 2) {
+                throw new IllegalArgumentException(String.format("Invalid rate limit rule \"%s\"", ruleSpec));
+            }
+
+            String path = pathAndLimits[0].trim();
+            List<Limit> limits = new ArrayList<>();
+            for (String limitSpec : pathAndLimits[1].split(",")) {
+                limits.add(Limit.parse(path, limitSpec.trim()));
+            }
+
+            rules.put(path, new RateLimitRule(path, Collections.unmodifiableList(limits)));
+        }
+
+        return rules;
+    }
+
+    public enum KeyType {
+        IP,
+        EMAIL
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Limit {
+
+        private final String path;
+        private final KeyType keyType;
+        private final int capacity;
+        private final long periodMs;
+
+        /**
+         * @return The number of tokens added back to the bucket every millisecond.
+         */
+        public double getRefillRatePerMs() {
+            return (double) capacity / periodMs;
+        }
+
+        private static Limit parse(String path, String limitSpec) {
+            try {
+                String[] keyAndRate = limitSpec.split(":", 2);
+                String[] capacityAndPeriod = keyAndRate[1].split("/", 2);
+
+                KeyType keyType = KeyType.valueOf(keyAndRate[0].trim().toUpperCase());
+                int capacity = Integer.parseInt(capacityAndPeriod[0].trim());
+                long periodMs = TimeUnit.SECONDS.toMillis(Long.parseLong(capacityAndPeriod[1].trim()));
+                if (capacity <= 0 || periodMs <= 0) throw new IllegalArgumentException();
+
+                return new Limit(path, keyType, capacity, periodMs);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException(
+                        String.format("Invalid rate limit \"%s\" for route %s", limitSpec, path), e);
+            }
+        }
+    }
+}
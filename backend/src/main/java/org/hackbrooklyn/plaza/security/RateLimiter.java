@@ -0,0 +1,16 @@
+package org.hackbrooklyn.plaza.security;
+
+/**
+ * Keeps token buckets for rate limiting requests.
+ */
+public interface RateLimiter {
+
+    /**
+     * Takes a token from a bucket, refilling the bucket first for the time that has passed since it was last used.
+     *
+     * @param bucketKey The key of the bucket to take a token from.
+     * @param limit     The limit that the bucket enforces.
+     * @return 0 if a token was taken, otherwise the number of milliseconds until a token will be available.
+     */
+    long tryConsume(String bucketKey, RateLimitRule.Limit limit);
+}
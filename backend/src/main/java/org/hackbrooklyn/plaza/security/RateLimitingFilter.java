@@ -0,0 +1,185 @@
+package org.hackbrooklyn.plaza.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hackbrooklyn.plaza.util.CachedBodyHttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limits requests to the public endpoints with token buckets keyed by the client's IP address and, for endpoints
+ * that take an email, by the email in the request body. Requests over a limit are rejected with 429 Too Many Requests
+ * before they can reach the database or any external services.
+ */
+@Slf4j
+@Component
+public class RateLimitingFilter extends OncePerRequestFilter {
+
+    private static final String DEFAULT_RATE_LIMITS = "/apply=ip:10/60;" +
+            "/apply/checkPriorityEligibility=ip:30/60;" +
+            "/newsletter/subscribe=ip:10/60,email:3/3600;" +
+            "/users/login=ip:30/60,email:10/300;" +
+            "/users/activate/request=ip:10/60,email:3/3600;" +
+            "/users/resetPassword/request=ip:10/60,email:3/3600";
+
+    // Bodies larger than this are never read for an email and are only limited by IP address
+    private static final int MAX_CACHED_BODY_BYTES = 16 * 1024;
+
+    @Value("${RATE_LIMIT_ENABLED:true}")
+    private boolean RATE_LIMIT_ENABLED;
+
+    @Value("${RATE_LIMIT_TRUST_FORWARDED_FOR:false}")
+    private boolean RATE_LIMIT_TRUST_FORWARDED_FOR;
+
+    private final RateLimiter rateLimiter;
+    private final ObjectMapper objectMapper;
+    private final Map<String, RateLimitRule> rules;
+    private final Map<RateLimitRule.Limit, Counter> allowedCounters = new HashMap<>();
+    private final Map<RateLimitRule.Limit, Counter> rejectedCounters = new HashMap<>();
+
+    @Autowired
+    public RateLimitingFilter(
+            RateLimiter rateLimiter,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${RATE_LIMITS:" + DEFAULT_RATE_LIMITS + "}") String rateLimits
+    ) {
+        this.rateLimiter = rateLimiter;
+        this.objectMapper = objectMapper;
+        this.rules = Collections.unmodifiableMap(RateLimitRule.parseAll(rateLimits));
+
+        for (RateLimitRule rule : rules.values()) {
+            for (RateLimitRule.Limit limit : rule.getLimits()) {
+                allowedCounters.put(limit, buildCounter(meterRegistry, limit, "allowed"));
+                rejectedCounters.put(limit, buildCounter(meterRegistry, limit, "rejected"));
+            }
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !RATE_LIMIT_ENABLED
+                || !HttpMethod.POST.matches(request.getMethod())
+                || !rules.containsKey(getRoute(request));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        RateLimitRule rule = rules.get(getRoute(request));
+
+        // Only read the body for an email when the route is limited by email
+        String email = null;
+        if (rule.hasEmailLimit() && isSmallJsonBody(request)) {
+            CachedBodyHttpServletRequest cachedBodyRequest = new CachedBodyHttpServletRequest(request);
+            email = getEmailFromBody(cachedBodyRequest.getCachedBody());
+            request = cachedBodyRequest;
+        }
+
+        String clientIp = getClientIp(request);
+        for (RateLimitRule.Limit limit : rule.getLimits()) {
+            String bucketKey;
+            if (limit.getKeyType() == RateLimitRule.KeyType.EMAIL) {
+                if (email == null) continue;
+                bucketKey = String.format("%s:email:%s", rule.getPath(), email);
+            } else {
+                bucketKey = String.format("%s:ip:%s", rule.getPath(), clientIp);
+            }
+
+            long retryAfterMs = rateLimiter.tryConsume(bucketKey, limit);
+            if (retryAfterMs > 0) {
+                rejectedCounters.get(limit).increment();
+                sendTooManyRequests(response, retryAfterMs);
+                return;
+            }
+
+            allowedCounters.get(limit).increment();
+        }
+
+        chain.doFilter(request, response);
+    }
+
+    private static String getRoute(HttpServletRequest request) {
+        // Spring MVC matches paths with a trailing slash to the same handler, so they must share a limit too
+        String path = request.getServletPath();
+        return path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    private boolean isSmallJsonBody(HttpServletRequest request) {
+        long contentLength = request.getContentLengthLong();
+        if (request.getContentType() == null || contentLength < 0 || contentLength > MAX_CACHED_BODY_BYTES) {
+            return false;
+        }
+
+        try {
+            return MediaType.APPLICATION_JSON.includes(MediaType.parseMediaType(request.getContentType()));
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    private String getEmailFromBody(byte[] body) {
+        try {
+            JsonNode emailNode = objectMapper.readTree(body).get("email");
+            if (emailNode == null || !emailNode.isTextual()) return null;
+
+            // Normalize the email so that changing its case doesn't get a new bucket
+            return emailNode.asText().trim().toLowerCase();
+        } catch (IOException e) {
+            // Let the controller respond to the malformed body
+            return null;
+        }
+    }
+
+    private String getClientIp(HttpServletRequest request) {
+        if (RATE_LIMIT_TRUST_FORWARDED_FOR) {
+            // The proxy in front of the app appends the address it received the request from, so the last address is
+            // the only one that can't be spoofed by the client
+            String forwardedFor = request.getHeader("X-Forwarded-For");
+            if (forwardedFor != null && !forwardedFor.trim().isEmpty()) {
+                String[] forwardedAddresses = forwardedFor.split(",");
+                return forwardedAddresses[forwardedAddresses.length - 1].trim();
+            }
+        }
+
+        return request.getRemoteAddr();
+    }
+
+    private void sendTooManyRequests(HttpServletResponse response, long retryAfterMs) throws IOException {
+        Map<String, String> body = new HashMap<>();
+        body.put("message", "Too many requests have been made. Please wait a moment and try again.");
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(TimeUnit.MILLISECONDS.toSeconds(retryAfterMs) + 1));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+
+    private static Counter buildCounter(MeterRegistry meterRegistry, RateLimitRule.Limit limit, String outcome) {
+        return Counter.builder("rate.limit.requests")
+                .description("Requests checked against a rate limit")
+                .tag("route", limit.getPath())
+                .tag("key", limit.getKeyType().name().toLowerCase())
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
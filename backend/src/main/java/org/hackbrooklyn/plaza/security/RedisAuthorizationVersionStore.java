@@ -0,0 +1,61 @@
+package org.hackbrooklyn.plaza.security;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores authorization versions in Redis so that every instance of the app sees bumped versions.
+ * <p>
+ * Versions are cached locally for a short time to keep Redis off of the path of most requests. A bump made on this
+ * instance takes effect immediately, while a bump made on another instance takes effect once the cached version expires.
+ */
+@Component
+@ConditionalOnProperty(name = "AUTHORIZATION_VERSION_STORE", havingValue = "redis", matchIfMissing = true)
+public class RedisAuthorizationVersionStore implements AuthorizationVersionStore {
+
+    @Value("${REDIS_AUTHORIZATION_VERSION_NAMESPACE:authzversion}")
+    private String REDIS_AUTHORIZATION_VERSION_NAMESPACE;
+
+    private final StringRedisTemplate redisTemplate;
+    private final LoadingCache<Integer, Long> cachedVersions;
+
+    @Autowired
+    public RedisAuthorizationVersionStore(
+            StringRedisTemplate redisTemplate,
+            @Value("${AUTHORIZATION_VERSION_CACHE_TTL_MS:5000}") long cacheTtlMs
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.cachedVersions = CacheBuilder.newBuilder()
+                .maximumSize(10000)
+                .expireAfterWrite(cacheTtlMs, TimeUnit.MILLISECONDS)
+                .build(CacheLoader.from(this::loadVersion));
+    }
+
+    @Override
+    public long getVersion(int userId) {
+        return cachedVersions.getUnchecked(userId);
+    }
+
+    @Override
+    public void bumpVersion(int userId) {
+        redisTemplate.opsForValue().increment(getKeyName(userId));
+        cachedVersions.invalidate(userId);
+    }
+
+    private Long loadVersion(Integer userId) {
+        String version = redisTemplate.opsForValue().get(getKeyName(userId));
+        return version != null ? Long.parseLong(version) : 0L;
+    }
+
+    private String getKeyName(int userId) {
+        return String.format("%s:%s", REDIS_AUTHORIZATION_VERSION_NAMESPACE, userId);
+    }
+}
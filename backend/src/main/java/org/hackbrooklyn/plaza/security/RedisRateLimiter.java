@@ -0,0 +1,72 @@
+package org.hackbrooklyn.plaza.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+
+/**
+ * Keeps token buckets in Redis so that every instance of the app shares the same limits.
+ * <p>
+ * Each bucket is refilled and taken from in a single Lua script, so a request only needs one round trip to Redis and
+ * concurrent requests from different instances can't both take the last token. If Redis can't be reached, requests are
+ * allowed through rather than failing.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "RATE_LIMIT_STORE", havingValue = "redis")
+public class RedisRateLimiter implements RateLimiter {
+
+    // KEYS[1] = bucket key, ARGV[1] = capacity, ARGV[2] = refill rate per ms, ARGV[3] = current time in ms
+    // Returns 0 if a token was taken, otherwise the number of milliseconds until a token will be available
+    private static final RedisScript<Long> TOKEN_BUCKET_SCRIPT = new DefaultRedisScript<>(
+            "local capacity = tonumber(ARGV[1])\n" +
+                    "local refillRate = tonumber(ARGV[2])\n" +
+                    "local now = tonumber(ARGV[3])\n" +
+                    "local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'refilledAt')\n" +
+                    "local tokens = tonumber(bucket[1]) or capacity\n" +
+                    "local refilledAt = tonumber(bucket[2]) or now\n" +
+                    "tokens = math.min(capacity, tokens + math.max(0, now - refilledAt) * refillRate)\n" +
+                    "if tokens < 1 then\n" +
+                    "  return math.ceil((1 - tokens) / refillRate)\n" +
+                    "end\n" +
+                    "redis.call('HSET', KEYS[1], 'tokens', tostring(tokens - 1), 'refilledAt', tostring(now))\n" +
+                    "redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / refillRate))\n" +
+                    "return 0",
+            Long.class
+    );
+
+    @Value("${REDIS_RATE_LIMIT_NAMESPACE:ratelimit}")
+    private String REDIS_RATE_LIMIT_NAMESPACE;
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Autowired
+    public RedisRateLimiter(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public long tryConsume(String bucketKey, RateLimitRule.Limit limit) {
+        try {
+            Long retryAfterMs = redisTemplate.execute(
+                    TOKEN_BUCKET_SCRIPT,
+                    Collections.singletonList(String.format("%s:%s", REDIS_RATE_LIMIT_NAMESPACE, bucketKey)),
+                    String.valueOf(limit.getCapacity()),
+                    String.valueOf(limit.getRefillRatePerMs()),
+                    String.valueOf(System.currentTimeMillis())
+            );
+
+            return retryAfterMs != null ? retryAfterMs : 0;
+        } catch (Exception e) {
+            log.error("Unable to check rate limit in Redis, allowing request", e);
+            return 0;
+        }
+    }
+}
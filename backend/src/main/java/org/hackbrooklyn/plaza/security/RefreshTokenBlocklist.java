@@ -0,0 +1,284 @@
+package org.hackbrooklyn.plaza.security;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hashing;
+import lombok.extern.slf4j.Slf4j;
+import org.hackbrooklyn.plaza.util.JwtUtils;
+import org.hackbrooklyn.plaza.util.RedisSubscriptionLostEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Keeps track of refresh tokens that can no longer be used because their user logged out.
+ * <p>
+ * Redis is the source of truth for the blocklist. Each instance of the app also keeps a Bloom filter of the blocklisted
+ * tokens so that checking a token that isn't blocklisted, which is nearly every check, doesn't need to go to Redis.
+ * Only a possible hit in the Bloom filter is confirmed with Redis. Instances share newly blocklisted tokens with each
+ * other over Redis pub/sub and periodically resync from Redis in case a message was missed. Only hashes of the tokens are
+ * shared and kept in the Bloom filter, so the tokens themselves are never broadcast.
+ * <p>
+ * The Bloom filter can only answer for Redis while this instance is receiving the pub/sub messages. Every instance
+ * publishes a heartbeat on the channel. If this instance's subscription fails or it stops receiving heartbeats, every
+ * token is checked with Redis again until messages arrive again and the Bloom filter is resynced.
+ * <p>
+ * The Bloom filter is split into partitions by when the blocklisted tokens expire so that a whole partition can be
+ * dropped once all of its tokens have expired, since Bloom filters don't support removing entries.
+ */
+@Slf4j
+@Component
+public class RefreshTokenBlocklist implements MessageListener {
+
+    @Value("${REDIS_REFRESH_TOKEN_NAMESPACE}")
+    private String REDIS_REFRESH_TOKEN_NAMESPACE;
+
+    @Value("${REDIS_REFRESH_TOKEN_BLOCKLIST_CHANNEL:token-blocklist}")
+    private String REDIS_REFRESH_TOKEN_BLOCKLIST_CHANNEL;
+
+    @Value("${REFRESH_TOKEN_BLOCKLIST_HEARTBEAT_INTERVAL_MS:2000}")
+    private long REFRESH_TOKEN_BLOCKLIST_HEARTBEAT_INTERVAL_MS;
+
+    @Value("${REFRESH_TOKEN_BLOOM_FILTER_PARTITION_MS:86400000}")
+    private long REFRESH_TOKEN_BLOOM_FILTER_PARTITION_MS;
+
+    @Value("${REFRESH_TOKEN_BLOOM_FILTER_EXPECTED_INSERTIONS:10000}")
+    private int REFRESH_TOKEN_BLOOM_FILTER_EXPECTED_INSERTIONS;
+
+    @Value("${REFRESH_TOKEN_BLOOM_FILTER_FALSE_POSITIVE_RATE:0.001}")
+    private double REFRESH_TOKEN_BLOOM_FILTER_FALSE_POSITIVE_RATE;
+
+    private static final String HEARTBEAT_MESSAGE = "heartbeat";
+
+    // How many heartbeat intervals can pass without a message before the subscription is considered disconnected
+    private static final int MISSED_HEARTBEATS_BEFORE_DISCONNECTED = 3;
+
+    private final RedisTemplate<String, String> refreshTokenBlocklistRedisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final JwtUtils jwtUtils;
+
+    // Bloom filter partitions of token hashes keyed by the end of the expiry window they cover, in epoch milliseconds
+    private final ConcurrentNavigableMap<Long, BloomFilter<CharSequence>> partitions = new ConcurrentSkipListMap<>();
+
+    // The local Bloom filter can only be trusted to answer for Redis once it has been synced with Redis while subscribed
+    private volatile boolean synced = false;
+
+    // When the last pub/sub message was received, in epoch milliseconds
+    private volatile long lastMessageReceivedMs = 0;
+
+    @Autowired
+    public RefreshTokenBlocklist(RedisTemplate<String, String> refreshTokenBlocklistRedisTemplate, RedisMessageListenerContainer redisMessageListenerContainer, JwtUtils jwtUtils) {
+        this.refreshTokenBlocklistRedisTemplate = refreshTokenBlocklistRedisTemplate;
+        this.redisMessageListenerContainer = redisMessageListenerContainer;
+        this.jwtUtils = jwtUtils;
+    }
+
+    @PostConstruct
+    private void initialize() {
+        // Listen for tokens blocklisted by other instances. The ones that are already in Redis are loaded once the first
+        // heartbeat shows that the subscription is receiving messages.
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(REDIS_REFRESH_TOKEN_BLOCKLIST_CHANNEL));
+    }
+
+    /**
+     * Adds a refresh token to the blocklist until it expires.
+     *
+     * @param refreshToken The refresh token to blocklist.
+     * @param expiration   When the refresh token expires.
+     */
+    public void add(String refreshToken, Instant expiration) {
+        Duration timeToLive = Duration.between(Instant.now(), expiration);
+        if (timeToLive.isNegative() || timeToLive.isZero()) return;
+
+        // Set the key and its expiry in a single atomic SET command
+        refreshTokenBlocklistRedisTemplate.opsForValue().set(getKeyName(refreshToken), "", timeToLive);
+
+        String refreshTokenHash = hash(refreshToken);
+        putLocally(refreshTokenHash, expiration.toEpochMilli());
+        refreshTokenBlocklistRedisTemplate.convertAndSend(
+                REDIS_REFRESH_TOKEN_BLOCKLIST_CHANNEL,
+                String.format("%s,%s", expiration.toEpochMilli(), refreshTokenHash)
+        );
+    }
+
+    /**
+     * Checks if a refresh token is in the blocklist.
+     *
+     * @param refreshToken The refresh token to check.
+     * @return Whether or not the refresh token is blocklisted.
+     */
+    public boolean contains(String refreshToken) {
+        if (synced && isSubscribed() && !mightContainLocally(hash(refreshToken))) {
+            return false;
+        }
+
+        // Confirm a possible hit with Redis, since it may be a false positive
+        Boolean isKeyInBlocklist = refreshTokenBlocklistRedisTemplate.hasKey(getKeyName(refreshToken));
+        return isKeyInBlocklist != null && isKeyInBlocklist;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        lastMessageReceivedMs = System.currentTimeMillis();
+
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (HEARTBEAT_MESSAGE.equals(body)) return;
+
+        String[] expirationAndTokenHash = body.split(",", 2);
+        if (expirationAndTokenHash.length != 2) {
+            log.warn("Ignoring malformed refresh token blocklist message");
+            return;
+        }
+
+        try {
+            putLocally(expirationAndTokenHash[1], Long.parseLong(expirationAndTokenHash[0]));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring refresh token blocklist message with an invalid expiration - {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Stops trusting the local Bloom filter as soon as the subscription fails, since any tokens blocklisted until the
+     * subscription is restored won't be added to it.
+     */
+    @EventListener(RedisSubscriptionLostEvent.class)
+    public void onSubscriptionLost() {
+        lastMessageReceivedMs = 0;
+        synced = false;
+        log.warn("Lost the refresh token blocklist subscription, checking every refresh token with Redis");
+    }
+
+    /**
+     * Publishes a heartbeat so that every instance can tell whether its subscription is receiving messages, and stops
+     * trusting the local Bloom filter while this instance's subscription isn't. Once messages arrive again, the Bloom
+     * filter is resynced to pick up any tokens that were blocklisted in the meantime.
+     */
+    @Scheduled(fixedDelayString = "${REFRESH_TOKEN_BLOCKLIST_HEARTBEAT_INTERVAL_MS:2000}")
+    public void checkSubscription() {
+        try {
+            refreshTokenBlocklistRedisTemplate.convertAndSend(REDIS_REFRESH_TOKEN_BLOCKLIST_CHANNEL, HEARTBEAT_MESSAGE);
+        } catch (Exception e) {
+            log.warn("Unable to publish a refresh token blocklist heartbeat - {}", e.getMessage());
+        }
+
+        if (!isSubscribed()) {
+            if (synced) {
+                log.warn("Stopped receiving refresh token blocklist messages, checking every refresh token with Redis");
+            }
+            synced = false;
+        } else if (!synced) {
+            resync();
+        }
+    }
+
+    /**
+     * Adds every blocklisted refresh token in Redis to the local Bloom filter and drops partitions that have expired.
+     * This catches any pub/sub messages that this instance missed, such as while it was disconnected from Redis.
+     */
+    @Scheduled(
+            initialDelayString = "${REFRESH_TOKEN_BLOCKLIST_RESYNC_INTERVAL_MS:300000}",
+            fixedDelayString = "${REFRESH_TOKEN_BLOCKLIST_RESYNC_INTERVAL_MS:300000}"
+    )
+    public void resync() {
+        pruneExpiredPartitions();
+
+        // Tokens blocklisted after the scan starts are only caught if the subscription is receiving messages
+        boolean subscribed = isSubscribed();
+
+        String keyPrefix = REDIS_REFRESH_TOKEN_NAMESPACE + ":";
+        ScanOptions scanOptions = ScanOptions.scanOptions().match(keyPrefix + "*").count(1000).build();
+
+        try {
+            int syncedTokens = refreshTokenBlocklistRedisTemplate.execute((RedisCallback<Integer>) connection -> {
+                int count = 0;
+                try (Cursor<byte[]> cursor = connection.scan(scanOptions)) {
+                    while (cursor.hasNext()) {
+                        String refreshToken = new String(cursor.next(), StandardCharsets.UTF_8).substring(keyPrefix.length());
+
+                        // Read the expiry from the token itself instead of asking Redis for each key's TTL
+                        JwtUtils.VerifiedJwt verifiedRefreshToken = jwtUtils.verify(refreshToken).orElse(null);
+                        if (verifiedRefreshToken == null) continue;
+
+                        putLocally(hash(refreshToken), verifiedRefreshToken.getExpiration().toEpochMilli());
+                        count++;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return count;
+            });
+
+            if (!synced && subscribed) {
+                log.info("Synced {} blocklisted refresh tokens from Redis", syncedTokens);
+            }
+            // The subscription may have been lost during the scan
+            synced = subscribed && isSubscribed();
+        } catch (Exception e) {
+            // Keep checking every token with Redis until a sync succeeds
+            synced = false;
+            log.error("Unable to sync the refresh token blocklist from Redis", e);
+        }
+    }
+
+    private boolean isSubscribed() {
+        return System.currentTimeMillis() - lastMessageReceivedMs
+                <= REFRESH_TOKEN_BLOCKLIST_HEARTBEAT_INTERVAL_MS * MISSED_HEARTBEATS_BEFORE_DISCONNECTED;
+    }
+
+    private void putLocally(String refreshTokenHash, long expirationMs) {
+        if (expirationMs <= System.currentTimeMillis()) return;
+
+        long partitionEndMs = (expirationMs / REFRESH_TOKEN_BLOOM_FILTER_PARTITION_MS + 1) * REFRESH_TOKEN_BLOOM_FILTER_PARTITION_MS;
+        partitions
+                .computeIfAbsent(partitionEndMs, key -> BloomFilter.create(
+                        Funnels.stringFunnel(StandardCharsets.UTF_8),
+                        REFRESH_TOKEN_BLOOM_FILTER_EXPECTED_INSERTIONS,
+                        REFRESH_TOKEN_BLOOM_FILTER_FALSE_POSITIVE_RATE
+                ))
+                .put(refreshTokenHash);
+    }
+
+    private boolean mightContainLocally(String refreshTokenHash) {
+        // Partitions that ended in the past only hold expired tokens and don't need to be checked
+        for (BloomFilter<CharSequence> partition : partitions.tailMap(System.currentTimeMillis(), false).values()) {
+            if (partition.mightContain(refreshTokenHash)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void pruneExpiredPartitions() {
+        Map<Long, BloomFilter<CharSequence>> expiredPartitions = partitions.headMap(System.currentTimeMillis(), true);
+        expiredPartitions.clear();
+    }
+
+    private static String hash(String refreshToken) {
+        return Hashing.sha256().hashString(refreshToken, StandardCharsets.UTF_8).toString();
+    }
+
+    private String getKeyName(String refreshToken) {
+        return String.format("%s:%s", REDIS_REFRESH_TOKEN_NAMESPACE, refreshToken);
+    }
+}
@@ -50,6 +50,9 @@ public class Roles {
                 // Participant checklist
                 Authorities.PARTICIPANT_CHECKLIST_READ,
 
+                // Push Notifications
+                Authorities.PUSH_NOTIFICATIONS_READ_HEALTH,
+
                 // Saved Events
                 Authorities.SAVED_EVENTS_ADD,
                 Authorities.SAVED_EVENTS_REMOVE,
@@ -63,6 +66,7 @@ public class Roles {
                 Authorities.TEAM_FORMATION_UPDATE_TEAM,
                 Authorities.TEAM_FORMATION_UPDATE_PARTICIPANT,
                 Authorities.TEAM_FORMATION_DELETE_TEAM,
+                Authorities.TEAM_FORMATION_MATCH_PARTICIPANTS,
 
                 // Users
                 Authorities.USERS_CREATE,
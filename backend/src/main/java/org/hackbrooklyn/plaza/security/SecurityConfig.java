@@ -40,12 +40,14 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     private final Environment environment;
     private final PlazaUserDetailsServiceImpl userDetailsService;
     private final JwtTokenFilter jwtTokenFilter;
+    private final RateLimitingFilter rateLimitingFilter;
 
     @Autowired
-    public SecurityConfig(Environment environment, PlazaUserDetailsServiceImpl userDetailsService, JwtTokenFilter jwtTokenFilter) {
+    public SecurityConfig(Environment environment, PlazaUserDetailsServiceImpl userDetailsService, JwtTokenFilter jwtTokenFilter, RateLimitingFilter rateLimitingFilter) {
         this.environment = environment;
         this.userDetailsService = userDetailsService;
         this.jwtTokenFilter = jwtTokenFilter;
+        this.rateLimitingFilter = rateLimitingFilter;
     }
 
     @Override
@@ -66,6 +68,8 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
         http.exceptionHandling().authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED));
         http.cors().and().sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS).and().csrf().disable();
+        // Rate limit the public endpoints after CORS headers are added so that browsers can read the 429 responses
+        http.addFilterBefore(rateLimitingFilter, UsernamePasswordAuthenticationFilter.class);
         http.addFilterBefore(jwtTokenFilter, UsernamePasswordAuthenticationFilter.class);
     }
 
@@ -0,0 +1,95 @@
+package org.hackbrooklyn.plaza.security;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.hackbrooklyn.plaza.model.User;
+import org.hackbrooklyn.plaza.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the users authenticated by {@link JwtTokenFilter} so that authenticated requests don't have to look up the
+ * user in the database every time.
+ * <p>
+ * Entries are evicted after a fixed time to live, which also bounds how long a change made on another instance of the
+ * app can stay unseen. Any code that changes a user's role or credentials must call {@link #invalidate(int)} once its
+ * transaction commits.
+ * <p>
+ * Each call gets its own copy of the cached user, so changes a request makes to its principal never leak into the
+ * cache or into other requests.
+ */
+@Slf4j
+@Component
+public class UserPrincipalCache {
+
+    private final UserRepository userRepository;
+    private final Cache<Integer, User> cache;
+
+    @Autowired
+    public UserPrincipalCache(
+            UserRepository userRepository,
+            MeterRegistry meterRegistry,
+            @Value("${PRINCIPAL_CACHE_MAX_SIZE:10000}") long maxSize,
+            @Value("${PRINCIPAL_CACHE_TTL_MS:60000}") long ttlMs
+    ) {
+        this.userRepository = userRepository;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+
+        // Exposes hit, miss, eviction, and size metrics under cache.* with the tag cache=principals
+        GuavaCacheMetrics.monitor(meterRegistry, cache, "principals");
+    }
+
+    /**
+     * Gets a user by their ID, loading them from the database if they aren't already cached.
+     *
+     * @param userId The ID of the user to get.
+     * @return A copy of the found user, or an empty Optional if no user exists with the ID.
+     */
+    public Optional<User> getUser(int userId) {
+        User cachedUser = cache.getIfPresent(userId);
+        if (cachedUser != null) {
+            return Optional.of(copyOf(cachedUser));
+        }
+
+        // Only cache users that exist so a deleted or not yet created user is never cached as missing
+        Optional<User> foundUser = userRepository.findById(userId);
+        foundUser.ifPresent(user -> cache.put(userId, copyOf(user)));
+
+        return foundUser;
+    }
+
+    /**
+     * Removes a user from the cache so that the next authenticated request loads them from the database again.
+     *
+     * @param userId The ID of the user to remove.
+     */
+    public void invalidate(int userId) {
+        cache.invalidate(userId);
+    }
+
+    private static User copyOf(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setFirstName(user.getFirstName());
+        copy.setLastName(user.getLastName());
+        copy.setEmail(user.getEmail());
+        copy.setHashedPassword(user.getHashedPassword());
+        copy.setRole(user.getRole());
+        copy.setActivationTimestamp(user.getActivationTimestamp());
+        copy.setLinkedApplication(user.getLinkedApplication());
+        copy.setLoadedFromToken(user.isLoadedFromToken());
+
+        return copy;
+    }
+}
@@ -1,5 +1,6 @@
 package org.hackbrooklyn.plaza.service;
 
+import org.hackbrooklyn.plaza.dto.PushSubscriptionHealthDTO;
 import org.hackbrooklyn.plaza.dto.SubscribeToPushNotificationDTO;
 import org.hackbrooklyn.plaza.model.User;
 
@@ -8,4 +9,6 @@ public interface PushNotificationService {
     void subscribe(SubscribeToPushNotificationDTO requestData, User user);
 
     void unsubscribe(User user);
+
+    PushSubscriptionHealthDTO getSubscriptionHealth();
 }
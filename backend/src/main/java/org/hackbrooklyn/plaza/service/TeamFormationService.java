@@ -2,6 +2,9 @@ package org.hackbrooklyn.plaza.service;
 
 import org.hackbrooklyn.plaza.dto.*;
 import org.hackbrooklyn.plaza.model.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
 
 public interface TeamFormationService {
 
@@ -15,15 +18,15 @@ public interface TeamFormationService {
 
     TeamFormationTeam getLoggedInParticipantTeamData(User user);
 
-    TeamFormationTeamSearchDTO getTeams(int page, int limit, boolean personalized, boolean hideSentJoinRequests, String searchQuery, User user);
+    TeamFormationTeamSearchDTO getTeams(int page, int limit, Integer afterId, boolean personalized, boolean hideSentJoinRequests, boolean sortByRelevance, String searchQuery, User user);
 
-    TeamFormationParticipantSearchDTO getParticipants(int page, int limit, boolean personalized, boolean hideSentInvitations, String searchQuery, User user);
+    TeamFormationParticipantSearchDTO getParticipants(int page, int limit, Integer afterId, boolean personalized, boolean hideSentInvitations, boolean sortByRelevance, String searchQuery, User user);
 
     void requestToJoinTeam(int teamId, MessageDTO requestData, User user);
 
     void inviteParticipantToTeam(int participantId, MessageDTO resBody, User user);
 
-    TeamFormationTeamInboxDTO getTeamInbox(int page, int limit, User user);
+    TeamFormationTeamInboxDTO getTeamInbox(int page, int limit, LocalDateTime afterTimestamp, Integer afterId, User user);
 
     TeamFormationMessageIdsDTO getTeamInboxMessageIds(User user);
 
@@ -31,7 +34,7 @@ public interface TeamFormationService {
 
     void setTeamJoinRequestAccepted(int joinRequestId, Boolean requestAccepted, User user);
 
-    TeamFormationParticipantInboxDTO getParticipantInbox(int page, int limit, User user);
+    TeamFormationParticipantInboxDTO getParticipantInbox(int page, int limit, LocalDateTime afterTimestamp, Integer afterId, User user);
 
     TeamFormationMessageIdsDTO getParticipantInboxMessageIds(User user);
 
@@ -39,6 +42,12 @@ public interface TeamFormationService {
 
     void setParticipantInvitationAccepted(int invitationId, Boolean invitationAccepted, User user);
 
+    SseEmitter subscribeToInboxEvents(User user);
+
+    TopicOrSkillSuggestionsDTO getTopicOrSkillSuggestions(String prefix, int limit);
+
+    TeamFormationMatchingResultDTO matchParticipantsToTeams(TeamFormationMatchingRequestDTO matchingData);
+
     void updateLoggedInParticipantData(TeamFormationParticipantFormDataWithBrowserVisibilityDTO submittedData, User user);
 
     void updateLoggedInParticipantTeamData(TeamFormationTeamFormDataWithBrowserVisibilityDTO submittedData, User user);
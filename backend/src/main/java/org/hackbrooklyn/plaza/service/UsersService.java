@@ -2,21 +2,22 @@ package org.hackbrooklyn.plaza.service;
 
 import org.hackbrooklyn.plaza.dto.*;
 import org.hackbrooklyn.plaza.model.User;
-import org.springframework.security.authentication.BadCredentialsException;
+
+import java.util.concurrent.CompletableFuture;
 
 import static org.hackbrooklyn.plaza.service.impl.UsersServiceImpl.TokenDTOAndUser;
 
 public interface UsersService {
 
-    User logInUser(String email, String password) throws BadCredentialsException;
+    CompletableFuture<User> logInUser(String email, String password);
 
     void addRefreshTokenToBlocklist(String refreshToken);
 
-    TokenDTOAndUser activateUser(String key, String password);
+    CompletableFuture<TokenDTOAndUser> activateUser(String key, String password);
 
     void requestActivation(String email);
 
-    TokenDTOAndUser resetPassword(String key, String password);
+    CompletableFuture<TokenDTOAndUser> resetPassword(String key, String password);
 
     void requestPasswordReset(String email);
 
@@ -26,7 +27,7 @@ public interface UsersService {
 
     DecisionDTO getApplicationDecision(User user);
 
-    void createUser(CreateUserRequestDTO userData);
+    CompletableFuture<Void> createUser(CreateUserRequestDTO userData);
 
     void setRole(SetRoleDTO reqBody);
 }
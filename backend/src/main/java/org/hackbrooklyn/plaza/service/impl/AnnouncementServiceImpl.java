@@ -10,12 +10,13 @@ import org.hackbrooklyn.plaza.model.Announcement;
 import org.hackbrooklyn.plaza.model.User;
 import org.hackbrooklyn.plaza.repository.AnnouncementRepository;
 import org.hackbrooklyn.plaza.service.AnnouncementService;
-import org.hackbrooklyn.plaza.util.PushNotificationUtils;
+import org.hackbrooklyn.plaza.util.NotificationOutbox;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.reactive.function.client.WebClient;
 
 import javax.persistence.EntityManager;
@@ -39,14 +40,14 @@ public class AnnouncementServiceImpl implements AnnouncementService {
 
     private final EntityManager entityManager;
     private final AnnouncementRepository announcementRepository;
-    private final PushNotificationUtils pushNotificationUtils;
+    private final NotificationOutbox notificationOutbox;
     private final WebClient webClient;
 
     @Autowired
-    public AnnouncementServiceImpl(EntityManager entityManager, AnnouncementRepository announcementRepository, PushNotificationUtils pushNotificationUtils, WebClient.Builder webClientBuilder) {
+    public AnnouncementServiceImpl(EntityManager entityManager, AnnouncementRepository announcementRepository, NotificationOutbox notificationOutbox, WebClient.Builder webClientBuilder) {
         this.entityManager = entityManager;
         this.announcementRepository = announcementRepository;
-        this.pushNotificationUtils = pushNotificationUtils;
+        this.notificationOutbox = notificationOutbox;
         this.webClient = webClientBuilder
                 .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
                 .build();
@@ -77,6 +78,7 @@ public class AnnouncementServiceImpl implements AnnouncementService {
     }
 
     @Override
+    @Transactional
     public int createNewAnnouncement(String body, boolean participantsOnly, User author) {
         Announcement announcement = new Announcement();
         LocalDateTime time = LocalDateTime.now();
@@ -95,7 +97,7 @@ public class AnnouncementServiceImpl implements AnnouncementService {
                 true,
                 false
         );
-        pushNotificationUtils.sendBackgroundSimplePushNotificationToAllSubscribers(notification);
+        notificationOutbox.enqueueToAllSubscribers(notification);
 
         // Post the announcement on Discord as well
         try {
@@ -115,6 +117,7 @@ public class AnnouncementServiceImpl implements AnnouncementService {
     }
 
     @Override
+    @Transactional
     public void updateAnnouncement(int id, String body, boolean participantsOnly) {
         Announcement announcement = announcementRepository.getOne(id);
         announcement.setBody(body);
@@ -129,7 +132,7 @@ public class AnnouncementServiceImpl implements AnnouncementService {
                 true,
                 false
         );
-        pushNotificationUtils.sendBackgroundSimplePushNotificationToAllSubscribers(notification);
+        notificationOutbox.enqueueToAllSubscribers(notification);
     }
 
     @Override
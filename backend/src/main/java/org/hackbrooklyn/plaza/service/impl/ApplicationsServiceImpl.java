@@ -18,6 +18,8 @@ import org.hackbrooklyn.plaza.model.SubmittedApplication_;
 import org.hackbrooklyn.plaza.model.User;
 import org.hackbrooklyn.plaza.repository.SubmittedApplicationRepository;
 import org.hackbrooklyn.plaza.repository.UserRepository;
+import org.hackbrooklyn.plaza.security.AuthorizationVersionStore;
+import org.hackbrooklyn.plaza.security.UserPrincipalCache;
 import org.hackbrooklyn.plaza.service.ApplicationsService;
 import org.hackbrooklyn.plaza.util.UsersUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -46,6 +48,7 @@ import java.util.stream.Collectors;
 import static org.hackbrooklyn.plaza.model.SubmittedApplication.Decision;
 import static org.hackbrooklyn.plaza.model.SubmittedApplication.ExportFormat;
 import static org.hackbrooklyn.plaza.repository.SubmittedApplicationRepository.ApplicationNumbersOnly;
+import static org.hackbrooklyn.plaza.util.TransactionUtils.runAfterCommit;
 
 @Service
 public class ApplicationsServiceImpl implements ApplicationsService {
@@ -64,15 +67,19 @@ public class ApplicationsServiceImpl implements ApplicationsService {
     private final EntityManager entityManager;
     private final S3Presigner s3Presigner;
     private final UsersUtils usersUtils;
+    private final UserPrincipalCache userPrincipalCache;
+    private final AuthorizationVersionStore authorizationVersionStore;
 
     @Autowired
-    public ApplicationsServiceImpl(ObjectMapper objectMapper, SubmittedApplicationRepository submittedApplicationRepository, UserRepository userRepository, EntityManager entityManager, S3Presigner s3Presigner, UsersUtils usersUtils) {
+    public ApplicationsServiceImpl(ObjectMapper objectMapper, SubmittedApplicationRepository submittedApplicationRepository, UserRepository userRepository, EntityManager entityManager, S3Presigner s3Presigner, UsersUtils usersUtils, UserPrincipalCache userPrincipalCache, AuthorizationVersionStore authorizationVersionStore) {
         this.objectMapper = objectMapper;
         this.submittedApplicationRepository = submittedApplicationRepository;
         this.userRepository = userRepository;
         this.entityManager = entityManager;
         this.s3Presigner = s3Presigner;
         this.usersUtils = usersUtils;
+        this.userPrincipalCache = userPrincipalCache;
+        this.authorizationVersionStore = authorizationVersionStore;
     }
 
     @Override
@@ -159,6 +166,14 @@ public class ApplicationsServiceImpl implements ApplicationsService {
             String updatedRole = usersUtils.getRoleForDecision(decision);
             user.setRole(updatedRole);
             userRepository.save(user);
+
+            // Evict the user's cached principal and outdate their access tokens once the new role is committed
+            // so it takes effect on their next request
+            int userId = user.getId();
+            runAfterCommit(() -> {
+                userPrincipalCache.invalidate(userId);
+                authorizationVersionStore.bumpVersion(userId);
+            });
         }
     }
 
@@ -10,7 +10,7 @@ import org.hackbrooklyn.plaza.repository.EventRepository;
 import org.hackbrooklyn.plaza.repository.SavedEventRepository;
 import org.hackbrooklyn.plaza.repository.SavedEventRepository.UsersOnly;
 import org.hackbrooklyn.plaza.service.EventService;
-import org.hackbrooklyn.plaza.util.PushNotificationUtils;
+import org.hackbrooklyn.plaza.util.NotificationOutbox;
 import org.hackbrooklyn.plaza.util.SendEventPushNotificationsTask;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -33,14 +33,14 @@ import static org.hackbrooklyn.plaza.repository.SavedEventRepository.EventsOnly;
 public class EventServiceImpl implements EventService {
 
     private final EventRepository eventRepository;
-    private final PushNotificationUtils pushNotificationUtils;
+    private final NotificationOutbox notificationOutbox;
     private final SavedEventRepository savedEventRepository;
     private final EntityManager entityManager;
 
     @Autowired
-    public EventServiceImpl(EventRepository eventRepository, PushNotificationUtils pushNotificationUtils, SavedEventRepository savedEventRepository, EntityManager entityManager) {
+    public EventServiceImpl(EventRepository eventRepository, NotificationOutbox notificationOutbox, SavedEventRepository savedEventRepository, EntityManager entityManager) {
         this.eventRepository = eventRepository;
-        this.pushNotificationUtils = pushNotificationUtils;
+        this.notificationOutbox = notificationOutbox;
         this.savedEventRepository = savedEventRepository;
         this.entityManager = entityManager;
     }
@@ -173,7 +173,7 @@ public class EventServiceImpl implements EventService {
         if (eventStartTimeMs > currentTimeMs) {
             log.info(String.format("Scheduling a push notification for event ID: %s", event.getId()));
             new Timer().schedule(
-                    new SendEventPushNotificationsTask(event, pushNotificationUtils, eventRepository, savedEventRepository),
+                    new SendEventPushNotificationsTask(event, notificationOutbox, eventRepository, savedEventRepository),
                     eventStartTimeMs - currentTimeMs
             );
         }
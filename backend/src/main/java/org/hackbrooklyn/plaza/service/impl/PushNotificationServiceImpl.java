@@ -1,6 +1,7 @@
 package org.hackbrooklyn.plaza.service.impl;
 
 import lombok.extern.slf4j.Slf4j;
+import org.hackbrooklyn.plaza.dto.PushSubscriptionHealthDTO;
 import org.hackbrooklyn.plaza.dto.SubscribeToPushNotificationDTO;
 import org.hackbrooklyn.plaza.exception.ClientAlreadySubscribedException;
 import org.hackbrooklyn.plaza.model.Event;
@@ -10,7 +11,10 @@ import org.hackbrooklyn.plaza.repository.EventRepository;
 import org.hackbrooklyn.plaza.repository.PushNotificationSubscriptionRepository;
 import org.hackbrooklyn.plaza.repository.SavedEventRepository;
 import org.hackbrooklyn.plaza.service.PushNotificationService;
-import org.hackbrooklyn.plaza.util.PushNotificationUtils;
+import org.hackbrooklyn.plaza.util.NotificationOutbox;
+import org.hackbrooklyn.plaza.util.PushDeliveryOutcome;
+import org.hackbrooklyn.plaza.util.PushSubscriptionKeyCache;
+import org.hackbrooklyn.plaza.util.PushSubscriptionPruner;
 import org.hackbrooklyn.plaza.util.SendEventPushNotificationsTask;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
@@ -29,14 +33,18 @@ public class PushNotificationServiceImpl implements PushNotificationService {
     private final PushNotificationSubscriptionRepository pushNotificationSubscriptionRepository;
     private final EventRepository eventRepository;
     private final SavedEventRepository savedEventRepository;
-    private final PushNotificationUtils pushNotificationUtils;
+    private final NotificationOutbox notificationOutbox;
+    private final PushSubscriptionKeyCache pushSubscriptionKeyCache;
+    private final PushSubscriptionPruner pushSubscriptionPruner;
 
     @Autowired
-    public PushNotificationServiceImpl(PushNotificationSubscriptionRepository pushNotificationSubscriptionRepository, EventRepository eventRepository, SavedEventRepository savedEventRepository, PushNotificationUtils pushNotificationUtils) {
+    public PushNotificationServiceImpl(PushNotificationSubscriptionRepository pushNotificationSubscriptionRepository, EventRepository eventRepository, SavedEventRepository savedEventRepository, NotificationOutbox notificationOutbox, PushSubscriptionKeyCache pushSubscriptionKeyCache, PushSubscriptionPruner pushSubscriptionPruner) {
         this.pushNotificationSubscriptionRepository = pushNotificationSubscriptionRepository;
         this.eventRepository = eventRepository;
         this.savedEventRepository = savedEventRepository;
-        this.pushNotificationUtils = pushNotificationUtils;
+        this.notificationOutbox = notificationOutbox;
+        this.pushSubscriptionKeyCache = pushSubscriptionKeyCache;
+        this.pushSubscriptionPruner = pushSubscriptionPruner;
     }
 
     @EventListener(ApplicationReadyEvent.class)
@@ -51,7 +59,7 @@ public class PushNotificationServiceImpl implements PushNotificationService {
             if (eventStartTimeMs > currentTimeMs) {
                 totalScheduledEvents++;
                 new Timer().schedule(
-                        new SendEventPushNotificationsTask(event, pushNotificationUtils, eventRepository, savedEventRepository),
+                        new SendEventPushNotificationsTask(event, notificationOutbox, eventRepository, savedEventRepository),
                         eventStartTimeMs - currentTimeMs
                 );
             }
@@ -83,6 +91,25 @@ public class PushNotificationServiceImpl implements PushNotificationService {
 
     @Override
     public void unsubscribe(User user) {
+        List<Integer> subscriptionIds = pushNotificationSubscriptionRepository.findIdsBySubscribedUser(user);
         pushNotificationSubscriptionRepository.deleteAllBySubscribedUser(user);
+        pushSubscriptionKeyCache.invalidateAll(subscriptionIds);
+    }
+
+    /**
+     * Delivery outcomes are counted by each instance of the app, so they only cover deliveries from this instance.
+     */
+    @Override
+    public PushSubscriptionHealthDTO getSubscriptionHealth() {
+        return new PushSubscriptionHealthDTO(
+                pushNotificationSubscriptionRepository.count(),
+                pushNotificationSubscriptionRepository.countSubscribedUsers(),
+                pushSubscriptionPruner.getPendingRemovalCount(),
+                pushSubscriptionPruner.getRemovedCount(),
+                pushSubscriptionPruner.getOutcomeCount(PushDeliveryOutcome.DELIVERED),
+                pushSubscriptionPruner.getOutcomeCount(PushDeliveryOutcome.RETRYABLE),
+                pushSubscriptionPruner.getOutcomeCount(PushDeliveryOutcome.REJECTED),
+                pushSubscriptionPruner.getOutcomeCount(PushDeliveryOutcome.GONE)
+        );
     }
 }
@@ -1,49 +1,91 @@
 package org.hackbrooklyn.plaza.service.impl;
 
+import com.google.common.collect.Lists;
 import com.google.common.primitives.Ints;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
 import org.hackbrooklyn.plaza.dto.*;
 import org.hackbrooklyn.plaza.exception.*;
 import org.hackbrooklyn.plaza.model.*;
 import org.hackbrooklyn.plaza.repository.*;
 import org.hackbrooklyn.plaza.repository.TeamFormationTeamJoinRequestRepository.RequestIdsOnly;
 import org.hackbrooklyn.plaza.service.TeamFormationService;
-import org.hackbrooklyn.plaza.util.PushNotificationUtils;
+import org.hackbrooklyn.plaza.dto.TeamFormationInboxEventDTO.Change;
+import org.hackbrooklyn.plaza.dto.TeamFormationInboxEventDTO.Inbox;
+import org.hackbrooklyn.plaza.util.NotificationOutbox;
+import org.hackbrooklyn.plaza.util.RetryingTransactionTemplate;
+import org.hackbrooklyn.plaza.util.TeamFormationInboxEventBroker;
+import org.hackbrooklyn.plaza.util.TeamFormationMatcher;
+import org.hackbrooklyn.plaza.util.TeamFormationRecommender;
+import org.hackbrooklyn.plaza.util.TeamFormationSearchEngine;
+import org.hackbrooklyn.plaza.util.TeamFormationSummaryLoader;
+import org.hackbrooklyn.plaza.util.TeamFormationTopicIndex;
+import org.hackbrooklyn.plaza.util.TopicOrSkillDictionary;
+import org.hackbrooklyn.plaza.util.TopicOrSkillSuggestionIndex;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.*;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static org.hackbrooklyn.plaza.repository.TeamFormationParticipantInvitationRepository.InvitationIdsOnly;
-import static org.hackbrooklyn.plaza.util.TeamFormationUtils.cleanTopicOrSkillName;
+import static org.hackbrooklyn.plaza.repository.TeamFormationParticipantInvitationRepository.PendingInvitation;
+import static org.hackbrooklyn.plaza.repository.TeamFormationParticipantRepository.ParticipantUser;
+import static org.hackbrooklyn.plaza.repository.TeamFormationParticipantRepository.TeamMemberSpecialization;
+import static org.hackbrooklyn.plaza.repository.TeamFormationTeamRepository.MatchableTeam;
+import static org.hackbrooklyn.plaza.repository.TopicOrSkillRepository.TopicOrSkillLink;
+import static org.hackbrooklyn.plaza.util.TransactionUtils.runAfterCommit;
 
 @Slf4j
 @Service
 public class TeamFormationServiceImpl implements TeamFormationService {
 
+    private static final String DEFAULT_MATCH_INVITATION_MESSAGE =
+            "The organizers think you'd be a great fit for our team based on your interests and specialization. We'd love to have you!";
+
+    // The most IDs to put in a single IN clause when updating or loading the matched participants
+    private static final int MATCHING_QUERY_BATCH_SIZE = 1000;
+
     private final TeamFormationParticipantRepository teamFormationParticipantRepository;
     private final TeamFormationTeamRepository teamFormationTeamRepository;
     private final TeamFormationTeamJoinRequestRepository teamFormationTeamJoinRequestRepository;
     private final TeamFormationParticipantInvitationRepository teamFormationParticipantInvitationRepository;
-    private final TopicOrSkillRepository topicOrSkillRepository;
     private final EntityManager entityManager;
-    private final PushNotificationUtils pushNotificationUtils;
+    private final NotificationOutbox notificationOutbox;
+    private final TeamFormationTopicIndex teamFormationTopicIndex;
+    private final TopicOrSkillDictionary topicOrSkillDictionary;
+    private final TeamFormationSummaryLoader teamFormationSummaryLoader;
+    private final TeamFormationInboxEventBroker teamFormationInboxEventBroker;
+    private final TeamFormationSearchEngine teamFormationSearchEngine;
+    private final RetryingTransactionTemplate retryingTransactionTemplate;
+    private final TeamFormationMatcher teamFormationMatcher;
+    private final TopicOrSkillSuggestionIndex topicOrSkillSuggestionIndex;
+    private final TeamFormationRecommender teamFormationRecommender;
 
     @Autowired
-    public TeamFormationServiceImpl(TeamFormationParticipantRepository teamFormationParticipantRepository, TeamFormationTeamRepository teamFormationTeamRepository, TeamFormationTeamJoinRequestRepository teamFormationTeamJoinRequestRepository, TeamFormationParticipantInvitationRepository teamFormationParticipantInvitationRepository, TopicOrSkillRepository topicOrSkillRepository, EntityManager entityManager, PushNotificationUtils pushNotificationUtils) {
+    public TeamFormationServiceImpl(TeamFormationParticipantRepository teamFormationParticipantRepository, TeamFormationTeamRepository teamFormationTeamRepository, TeamFormationTeamJoinRequestRepository teamFormationTeamJoinRequestRepository, TeamFormationParticipantInvitationRepository teamFormationParticipantInvitationRepository, EntityManager entityManager, NotificationOutbox notificationOutbox, TeamFormationTopicIndex teamFormationTopicIndex, TopicOrSkillDictionary topicOrSkillDictionary, TeamFormationSummaryLoader teamFormationSummaryLoader, TeamFormationInboxEventBroker teamFormationInboxEventBroker, TeamFormationSearchEngine teamFormationSearchEngine, RetryingTransactionTemplate retryingTransactionTemplate, TeamFormationMatcher teamFormationMatcher, TopicOrSkillSuggestionIndex topicOrSkillSuggestionIndex, TeamFormationRecommender teamFormationRecommender) {
         this.teamFormationParticipantRepository = teamFormationParticipantRepository;
         this.teamFormationTeamRepository = teamFormationTeamRepository;
         this.teamFormationTeamJoinRequestRepository = teamFormationTeamJoinRequestRepository;
         this.teamFormationParticipantInvitationRepository = teamFormationParticipantInvitationRepository;
-        this.topicOrSkillRepository = topicOrSkillRepository;
         this.entityManager = entityManager;
-        this.pushNotificationUtils = pushNotificationUtils;
+        this.notificationOutbox = notificationOutbox;
+        this.teamFormationTopicIndex = teamFormationTopicIndex;
+        this.topicOrSkillDictionary = topicOrSkillDictionary;
+        this.teamFormationSummaryLoader = teamFormationSummaryLoader;
+        this.teamFormationInboxEventBroker = teamFormationInboxEventBroker;
+        this.teamFormationSearchEngine = teamFormationSearchEngine;
+        this.retryingTransactionTemplate = retryingTransactionTemplate;
+        this.teamFormationMatcher = teamFormationMatcher;
+        this.topicOrSkillSuggestionIndex = topicOrSkillSuggestionIndex;
+        this.teamFormationRecommender = teamFormationRecommender;
     }
 
     @Override
@@ -53,8 +95,16 @@ public class TeamFormationServiceImpl implements TeamFormationService {
             throw new TeamFormationParticipantAlreadyExistsException();
         }
 
+        // Users authorized statelessly only have the fields embedded in their access token, but the participant's name is
+        // needed to index them for search
+        User participantUser = user;
+        if (user.isLoadedFromToken()) {
+            participantUser = entityManager.find(User.class, user.getId());
+            if (participantUser == null) throw new UserNotFoundException();
+        }
+
         TeamFormationParticipant newParticipant = new TeamFormationParticipant();
-        newParticipant.setUser(user);
+        newParticipant.setUser(participantUser);
         newParticipant.setVisibleInBrowser(true);
         setCommonParticipantDataAndSave(submittedData, newParticipant);
     }
@@ -82,6 +132,7 @@ public class TeamFormationServiceImpl implements TeamFormationService {
         newTeam.setName(submittedData.getName());
         newTeam.setObjectiveStatement(submittedData.getObjectiveStatement());
         newTeam.setSize(submittedData.getSize());
+        newTeam.setMemberCount(1);
         newTeam.setVisibleInBrowser(true);
 
         Set<String> topicAndSkillNames = submittedData.getInterestedTopicsAndSkills();
@@ -94,11 +145,15 @@ public class TeamFormationServiceImpl implements TeamFormationService {
 
         TeamFormationTeam savedNewTeam = teamFormationTeamRepository.save(newTeam);
 
-        // Set the creating user's team to the new one and gide the user from the participant browser since they're now in a team
-        userParticipant.setTeam(savedNewTeam);
-        userParticipant.setVisibleInBrowser(false);
+        // Set the creating user's team to the new one and hide the user from the participant browser since they're now in a team
+        // This only happens if they're still not in a team, in case they accepted an invitation at the same time
+        if (teamFormationParticipantRepository.joinTeamIfNotInTeam(userParticipant, savedNewTeam) == 0) {
+            throw new TeamFormationParticipantAlreadyInTeamException();
+        }
+        entityManager.refresh(userParticipant);
 
-        teamFormationParticipantRepository.save(userParticipant);
+        indexTeamAfterCommit(savedNewTeam);
+        indexParticipantAfterCommit(userParticipant);
     }
 
     /**
@@ -139,41 +194,45 @@ public class TeamFormationServiceImpl implements TeamFormationService {
 
     @Override
     public void updateLoggedInParticipantTeamData(TeamFormationTeamFormDataWithBrowserVisibilityDTO submittedData, User user) {
-        TeamFormationParticipant updatingTeamMember = teamFormationParticipantRepository
-                .findFirstByUser(user)
-                .orElseThrow(TeamFormationParticipantNotFoundException::new);
+        // Retry if a member joins or leaves at the same time since the new size is checked against the member count
+        retryingTransactionTemplate.executeWithoutResult(status -> {
+            TeamFormationParticipant updatingTeamMember = teamFormationParticipantRepository
+                    .findFirstByUser(user)
+                    .orElseThrow(TeamFormationParticipantNotFoundException::new);
 
-        TeamFormationTeam updatingTeam = updatingTeamMember.getTeam();
+            TeamFormationTeam updatingTeam = updatingTeamMember.getTeam();
 
-        if (updatingTeam == null) {
-            throw new TeamFormationParticipantNotInTeamException();
-        }
+            if (updatingTeam == null) {
+                throw new TeamFormationParticipantNotInTeamException();
+            }
 
-        // Check if the new team size would exceed the current team size
-        int currentTeamSize = updatingTeam.getMembers().size();
-        if (currentTeamSize > submittedData.getSize()) {
-            throw new TeamFormationTeamFullException();
-        }
+            // Check if the new team size would exceed the current team size
+            int currentTeamSize = updatingTeam.getMemberCount();
+            if (currentTeamSize > submittedData.getSize()) {
+                throw new TeamFormationTeamFullException();
+            }
 
-        // Check if a team already exists with the provided team name
-        if (!submittedData.getName().equals(updatingTeam.getName()) && teamFormationTeamRepository.findFirstByName(submittedData.getName()).isPresent()) {
-            throw new TeamFormationTeamNameConflictException();
-        }
+            // Check if a team already exists with the provided team name
+            if (!submittedData.getName().equals(updatingTeam.getName()) && teamFormationTeamRepository.findFirstByName(submittedData.getName()).isPresent()) {
+                throw new TeamFormationTeamNameConflictException();
+            }
 
-        updatingTeam.setName(submittedData.getName());
-        updatingTeam.setObjectiveStatement(submittedData.getObjectiveStatement());
-        updatingTeam.setSize(submittedData.getSize());
+            updatingTeam.setName(submittedData.getName());
+            updatingTeam.setObjectiveStatement(submittedData.getObjectiveStatement());
+            updatingTeam.setSize(submittedData.getSize());
 
-        updatingTeam.setVisibleInBrowser(submittedData.isVisibleInBrowser());
-        if (currentTeamSize >= submittedData.getSize()) {
-            updatingTeam.setVisibleInBrowser(false);
-        }
+            updatingTeam.setVisibleInBrowser(submittedData.isVisibleInBrowser());
+            if (currentTeamSize >= submittedData.getSize()) {
+                updatingTeam.setVisibleInBrowser(false);
+            }
 
-        Set<String> topicAndSkillNames = submittedData.getInterestedTopicsAndSkills();
-        Set<TopicOrSkill> topicsAndSkills = getTopicsAndSkillsFromNames(topicAndSkillNames);
-        updatingTeam.setInterestedTopicsAndSkills(topicsAndSkills);
+            Set<String> topicAndSkillNames = submittedData.getInterestedTopicsAndSkills();
+            Set<TopicOrSkill> topicsAndSkills = getTopicsAndSkillsFromNames(topicAndSkillNames);
+            updatingTeam.setInterestedTopicsAndSkills(topicsAndSkills);
 
-        teamFormationTeamRepository.save(updatingTeam);
+            teamFormationTeamRepository.save(updatingTeam);
+            indexTeamAfterCommit(updatingTeam);
+        });
     }
 
     @Override
@@ -193,43 +252,81 @@ public class TeamFormationServiceImpl implements TeamFormationService {
             throw new TeamFormationNoPermissionException();
         }
 
-        TeamFormationParticipant memberToRemove = teamToModify.getMembers().stream()
-                .filter(member -> member.getId() == participantId)
-                .findFirst()
+        TeamFormationParticipant memberToRemove = teamFormationParticipantRepository
+                .findById(participantId)
                 .orElseThrow(TeamFormationParticipantNotFoundException::new);
 
-        // Remove the team from the participant's side
-        memberToRemove.setTeam(null);
-        teamFormationParticipantRepository.save(memberToRemove);
+        // Remove the member from the team if they're still in it, and stop counting them as a member of the team
+        if (teamFormationParticipantRepository.leaveTeamIfInTeam(memberToRemove, teamToModify) == 0) {
+            throw new TeamFormationParticipantNotFoundException();
+        }
+        teamFormationTeamRepository.removeMember(teamToModify);
+        entityManager.refresh(memberToRemove);
 
-        // Remove the member from the team on the team's side
-        teamToModify.getMembers().remove(memberToRemove);
-        teamFormationTeamRepository.save(teamToModify);
+        indexParticipantAfterCommit(memberToRemove);
     }
 
     @Override
-    @Transactional
     public void deleteLoggedInParticipantTeam(User user) {
-        TeamFormationParticipant memberPerformingDeletion = teamFormationParticipantRepository
-                .findFirstByUser(user)
-                .orElseThrow(TeamFormationParticipantNotFoundException::new);
-
-        TeamFormationTeam teamToDelete = memberPerformingDeletion.getTeam();
-        if (teamToDelete == null) throw new TeamFormationParticipantNotInTeamException();
-        if (teamToDelete.getLeader() != memberPerformingDeletion) throw new TeamFormationNoPermissionException();
-
-        // Remove each team member from the team
-        for (TeamFormationParticipant teamMember : teamToDelete.getMembers()) {
-            teamMember.setTeam(null);
-            teamFormationParticipantRepository.save(teamMember);
-        }
+        // Retry if a member joins at the same time so that they're taken out of the team before it's deleted
+        retryingTransactionTemplate.executeWithoutResult(status -> {
+            TeamFormationParticipant memberPerformingDeletion = teamFormationParticipantRepository
+                    .findFirstByUser(user)
+                    .orElseThrow(TeamFormationParticipantNotFoundException::new);
+
+            TeamFormationTeam teamToDelete = memberPerformingDeletion.getTeam();
+            if (teamToDelete == null) throw new TeamFormationParticipantNotInTeamException();
+            if (teamToDelete.getLeader() != memberPerformingDeletion) throw new TeamFormationNoPermissionException();
+
+            int deletedTeamId = teamToDelete.getId();
+
+            // Lock the team before anything else so that a member joining at the same time has to wait for the deletion
+            teamFormationTeamRepository.dissolve(teamToDelete);
+
+            int deletingUserId = memberPerformingDeletion.getUser().getId();
+            List<User> formerMemberUsers = teamFormationParticipantRepository.findUsersByTeam(teamToDelete).stream()
+                    .filter(memberUser -> memberUser.getId() != deletingUserId)
+                    .collect(Collectors.toList());
+            List<PendingInvitation> pendingInvitations = teamFormationParticipantInvitationRepository.findPendingByInvitingTeam(teamToDelete);
+
+            // Remove the team and everything referencing it with one statement each instead of loading and cascading to
+            // every member, join request, and invitation
+            teamFormationParticipantRepository.removeAllFromTeam(teamToDelete);
+            teamFormationTeamRepository.deleteTopicOrSkillLinks(deletedTeamId);
+            teamFormationTeamJoinRequestRepository.deleteAllReceivedByTeam(teamToDelete);
+
+            // Take the pending invitations out of the invited participants' counts before deleting them
+            teamFormationParticipantRepository.removePendingInvitationsFromTeam(teamToDelete);
+            teamFormationParticipantInvitationRepository.deleteAllSentByTeam(teamToDelete);
+
+            teamFormationTeamRepository.deleteWithoutCascade(deletedTeamId);
+
+            for (PendingInvitation pendingInvitation : pendingInvitations) {
+                publishInboxEventToIdsAfterCommit(
+                        Inbox.PARTICIPANT,
+                        Change.REMOVED,
+                        pendingInvitation.getInvitationId(),
+                        Collections.singletonList(pendingInvitation.getInvitedParticipantId())
+                );
+            }
 
-        // Manually delete many-to-many relation for interested topics and skills
-        teamToDelete.getInterestedTopicsAndSkills().clear();
-        teamFormationTeamRepository.save(teamToDelete);
+            runAfterCommit(() -> {
+                teamFormationTopicIndex.removeTeam(deletedTeamId);
+                teamFormationSearchEngine.removeTeam(deletedTeamId);
+                topicOrSkillSuggestionIndex.removeTeam(deletedTeamId);
+                teamFormationRecommender.removeTeam(deletedTeamId);
+            });
 
-        // The cascade will remove the one-to-many relations for the team's join requests and invitations
-        teamFormationTeamRepository.delete(teamToDelete);
+            // Let the rest of the team know that the team is gone, which is only sent once it's actually deleted
+            NotificationContentDTO notification = new NotificationContentDTO(
+                    String.format("Your team \"%s\" has been deleted by the team leader.", teamToDelete.getName()),
+                    "Visit Team Formation to find a new team.",
+                    String.format("teamformation-team-deleted-%s", deletedTeamId),
+                    true,
+                    false
+            );
+            notificationOutbox.enqueueToUsers(formerMemberUsers, notification);
+        });
     }
 
     @Override
@@ -245,163 +342,323 @@ public class TeamFormationServiceImpl implements TeamFormationService {
             throw new TeamFormationParticipantNotInTeamException();
         }
 
-        leavingMember.setTeam(null);
-        teamFormationParticipantRepository.save(leavingMember);
+        // Leave the team if they're still in it, and stop counting them as a member of the team
+        if (teamFormationParticipantRepository.leaveTeamIfInTeam(leavingMember, leftTeam) == 0) {
+            throw new TeamFormationParticipantNotInTeamException();
+        }
+        teamFormationTeamRepository.removeMember(leftTeam);
+        entityManager.refresh(leavingMember);
 
-        leftTeam.getMembers().remove(leavingMember);
-        teamFormationTeamRepository.save(leftTeam);
+        indexParticipantAfterCommit(leavingMember);
     }
 
+    /**
+     * Personalized results, searched results, and results sorted by relevance are found with the topic index and the
+     * search engine. Relevance is scored against the participant's interested topics and skills. Personalized results
+     * are the participant's precomputed recommendations, so they only include the most relevant teams.
+     */
     @Override
-    public TeamFormationTeamSearchDTO getTeams(int page, int limit, boolean personalized, boolean hideSentJoinRequests, String searchQuery, User user) {
+    public TeamFormationTeamSearchDTO getTeams(int page, int limit, Integer afterId, boolean personalized, boolean hideSentJoinRequests, boolean sortByRelevance, String searchQuery, User user) {
         TeamFormationParticipant participant = teamFormationParticipantRepository
                 .findFirstByUser(user)
                 .orElseThrow(TeamFormationParticipantNotFoundException::new);
 
+        if (personalized) {
+            // Personalized results ignore the search query
+            BitSet visibleTeamIds = findIndexedTeamIds(participant, Collections.emptySet(), hideSentJoinRequests);
+            int[] recommendedTeamIds = keepFoundIds(teamFormationRecommender.getRecommendedTeamIds(participant.getId()), visibleTeamIds);
+
+            return getTeamsFromIds(toBitSet(recommendedTeamIds), recommendedTeamIds, Collections.emptySet(), page, limit, afterId, sortByRelevance);
+        }
+
+        if (sortByRelevance || searchQuery != null) {
+            Set<Integer> participantTopicOrSkillIds = getTopicOrSkillIds(participant.getInterestedTopicsAndSkills());
+
+            BitSet foundTeamIds = findIndexedTeamIds(participant, Collections.emptySet(), hideSentJoinRequests);
+            if (searchQuery != null) {
+                foundTeamIds.and(teamFormationSearchEngine.searchTeams(searchQuery));
+            }
+
+            return getTeamsFromIds(foundTeamIds, null, participantTopicOrSkillIds, page, limit, afterId, sortByRelevance);
+        }
+
         CriteriaBuilder cb = entityManager.getCriteriaBuilder();
-        CriteriaQuery<TeamFormationTeam> query = cb.createQuery(TeamFormationTeam.class);
 
-        // Query for teams and apply sorting and filters if provided
+        // Count the matching teams without loading any of them
+        CriteriaQuery<Long> countQuery = cb.createQuery(Long.class);
+        Root<TeamFormationTeam> countedTeams = countQuery.from(TeamFormationTeam.class);
+        countQuery.select(cb.countDistinct(countedTeams.get(TeamFormationTeam_.id)));
+        countQuery.where(buildTeamSearchPredicate(cb, countQuery, countedTeams, participant, hideSentJoinRequests));
+
+        long foundTeamsSize = entityManager.createQuery(countQuery).getSingleResult();
+        int totalPages = (int) Math.ceil((double) foundTeamsSize / limit);
+
+        // Query for the IDs of the teams and apply sorting and filters if provided
+        CriteriaQuery<Integer> query = cb.createQuery(Integer.class);
         Root<TeamFormationTeam> teams = query.from(TeamFormationTeam.class);
-        query.select(teams);
+        query.select(teams.get(TeamFormationTeam_.id));
         query.distinct(true);
 
-        // Compute predicates depending on the user's options
-        List<Predicate> orPredicates = new ArrayList<>();
-        if (personalized) {
-            // Return personalized teams based on the user's interested topics and skills
-            Set<TopicOrSkill> participantTopicsAndSkills = participant.getInterestedTopicsAndSkills();
+        Predicate searchPredicate = buildTeamSearchPredicate(cb, query, teams, participant, hideSentJoinRequests);
+        if (afterId != null) {
+            // Continue after the last team of the previous page instead of skipping over all of the previous pages
+            searchPredicate = cb.and(searchPredicate, cb.lessThan(teams.get(TeamFormationTeam_.id), afterId));
+        }
 
-            for (TopicOrSkill topicOrSkill : participantTopicsAndSkills) {
-                orPredicates.add(
-                        cb.equal(teams.join(TeamFormationTeam_.interestedTopicsAndSkills).get(TopicOrSkill_.name), topicOrSkill.getName())
-                );
-            }
-        } else if (searchQuery != null) {
-            if (StringUtils.substring(searchQuery, 0, 4).equals("tos:")) {
-                // Do an exact search for the topic or skill when the tos: operator is used
-                // Exact meaning case sensitive and with unprocessed input
-                String searchedTopicOrSkill = StringUtils.substring(searchQuery, 4);
-
-                orPredicates.add(
-                        cb.equal(teams.join(TeamFormationTeam_.interestedTopicsAndSkills).get(TopicOrSkill_.name), searchedTopicOrSkill)
-                );
-            } else {
-                // Search for an occurrence on the team name, interested topics and skills, and the objective statement
-                String topicAndSkillPattern = "%" + cleanTopicOrSkillName(searchQuery) + "%";
-                String searchQueryPattern = "%" + searchQuery.toLowerCase() + "%";
-
-                orPredicates.add(cb.or(
-                        cb.like(cb.lower(teams.get(TeamFormationTeam_.name)), searchQueryPattern),
-                        cb.like(cb.lower(teams.get(TeamFormationTeam_.objectiveStatement)), searchQueryPattern),
-                        cb.like(cb.lower(teams.join(TeamFormationTeam_.interestedTopicsAndSkills, JoinType.LEFT).get(TopicOrSkill_.name)), topicAndSkillPattern)
-                ));
-            }
+        // Finish query and get most recently created teams matching the results
+        query.where(searchPredicate);
+        query.orderBy(cb.desc(teams.get(TeamFormationTeam_.id)));
+        TypedQuery<Integer> typedQuery = entityManager.createQuery(query);
+
+        // Get paginated teams from query
+        if (afterId == null) {
+            typedQuery.setFirstResult((page - 1) * limit);
         }
+        typedQuery.setMaxResults(limit);
+        List<Integer> pageTeamIds = typedQuery.getResultList();
+        List<TeamFormationTeamSummaryDTO> foundTeams = teamFormationSummaryLoader.loadTeams(pageTeamIds);
 
-        // Add necessary requirements during search
-        List<Predicate> andPredicates = new ArrayList<>();
-        andPredicates.add(cb.isTrue(teams.get(TeamFormationTeam_.visibleInBrowser)));
+        Integer nextCursor = pageTeamIds.size() == limit ? pageTeamIds.get(pageTeamIds.size() - 1) : null;
+
+        return new TeamFormationTeamSearchDTO(
+                totalPages,
+                foundTeams,
+                foundTeamsSize,
+                nextCursor
+        );
+    }
+
+    /**
+     * Finds the IDs of the visible teams interested in any of the given topics and skills using the topic index, or of
+     * every visible team if no topics or skills are given.
+     */
+    private BitSet findIndexedTeamIds(TeamFormationParticipant participant, Set<Integer> topicOrSkillIds, boolean hideSentJoinRequests) {
+        BitSet foundTeamIds = teamFormationTopicIndex.findVisibleTeams(topicOrSkillIds);
 
         // Don't return the user's current team if they're in one already
         if (participant.getTeam() != null) {
-            andPredicates.add(cb.notEqual(teams.get(TeamFormationTeam_.id), participant.getTeam().getId()));
+            foundTeamIds.clear(participant.getTeam().getId());
         }
 
         // Hide found teams that have a join request from the user
         if (hideSentJoinRequests) {
-            Expression<TeamFormationParticipant> requestingParticipant = teams.join(TeamFormationTeam_.receivedTeamJoinRequests, JoinType.LEFT).get(TeamFormationTeamJoinRequest_.requestingParticipant);
-            andPredicates.add(cb.or(
-                    cb.notEqual(requestingParticipant, participant),
-                    cb.isNull(requestingParticipant)
-            ));
+            teamFormationTeamJoinRequestRepository
+                    .findRequestedTeamIdsByRequestingParticipant(participant)
+                    .forEach(foundTeamIds::clear);
         }
 
-        // Add constraints specified by query parameters if any were specified
-        if (orPredicates.size() > 0) {
-            andPredicates.add(cb.or(orPredicates.toArray(new Predicate[0])));
-        }
-
-        // Finish query and get most recently created teams matching the results
-        query.where(cb.and(andPredicates.toArray(new Predicate[0])));
-        query.orderBy(cb.desc(teams.get(TeamFormationTeam_.id)));
-        TypedQuery<TeamFormationTeam> typedQuery = entityManager.createQuery(query);
+        return foundTeamIds;
+    }
 
-        // Get total count and results from query
-        long foundTeamsSize = typedQuery.getResultList().size();
+    /**
+     * Loads a page of teams from a set of found team IDs, so that only the teams on the requested page are loaded from
+     * the database. The found teams are ranked against the participant's topics and skills unless they're already
+     * ranked.
+     */
+    private TeamFormationTeamSearchDTO getTeamsFromIds(BitSet foundTeamIds, int[] rankedTeamIds, Set<Integer> participantTopicOrSkillIds, int page, int limit, Integer afterId, boolean sortByRelevance) {
+        long foundTeamsSize = foundTeamIds.cardinality();
         int totalPages = (int) Math.ceil((double) foundTeamsSize / limit);
 
-        // Get paginated teams from query
-        typedQuery.setFirstResult((page - 1) * limit);
-        typedQuery.setMaxResults(limit);
-        Collection<TeamFormationTeam> foundTeams = typedQuery.getResultList();
+        List<Integer> pageTeamIds;
+        Integer nextCursor = null;
+        if (sortByRelevance) {
+            if (rankedTeamIds == null) {
+                rankedTeamIds = teamFormationTopicIndex.rankTeams(foundTeamIds, participantTopicOrSkillIds, getRankedCount(page, limit, foundTeamsSize));
+            }
+            pageTeamIds = getRankedPage(rankedTeamIds, page, limit);
+        } else {
+            pageTeamIds = TeamFormationTopicIndex.getPageDescending(foundTeamIds, page, limit, afterId);
+            if (pageTeamIds.size() == limit) {
+                nextCursor = pageTeamIds.get(pageTeamIds.size() - 1);
+            }
+        }
+
+        List<TeamFormationTeamSummaryDTO> foundTeams = teamFormationSummaryLoader.loadTeams(pageTeamIds).stream()
+                // The index can briefly lag behind changes made by other instances of the app
+                .filter(TeamFormationTeamSummaryDTO::isVisibleInBrowser)
+                .collect(Collectors.toList());
 
         return new TeamFormationTeamSearchDTO(
                 totalPages,
                 foundTeams,
-                foundTeamsSize
+                foundTeamsSize,
+                nextCursor
         );
     }
 
     /**
-     * The `personalized` feature will only work if the user is in a team since the feature relies on the user's team's
-     * interested topics and skills to determine personalized results
+     * Builds the filters for a team search. Used for both counting and fetching the found teams.
+     */
+    private Predicate buildTeamSearchPredicate(CriteriaBuilder cb, CriteriaQuery<?> query, Root<TeamFormationTeam> teams, TeamFormationParticipant participant, boolean hideSentJoinRequests) {
+        // Add necessary requirements during search
+        List<Predicate> andPredicates = new ArrayList<>();
+        andPredicates.add(cb.isTrue(teams.get(TeamFormationTeam_.visibleInBrowser)));
+
+        // Don't return the user's current team if they're in one already
+        if (participant.getTeam() != null) {
+            andPredicates.add(cb.notEqual(teams.get(TeamFormationTeam_.id), participant.getTeam().getId()));
+        }
+
+        // Hide found teams that have a join request from the user
+        if (hideSentJoinRequests) {
+            Subquery<Integer> sentJoinRequest = query.subquery(Integer.class);
+            Root<TeamFormationTeamJoinRequest> joinRequests = sentJoinRequest.from(TeamFormationTeamJoinRequest.class);
+            sentJoinRequest.select(joinRequests.get(TeamFormationTeamJoinRequest_.requestId));
+            sentJoinRequest.where(
+                    cb.equal(joinRequests.get(TeamFormationTeamJoinRequest_.requestedTeam), teams),
+                    cb.equal(joinRequests.get(TeamFormationTeamJoinRequest_.requestingParticipant), participant)
+            );
+
+            andPredicates.add(cb.not(cb.exists(sentJoinRequest)));
+        }
+
+        return cb.and(andPredicates.toArray(new Predicate[0]));
+    }
+
+    /**
+     * The `personalized` feature and sorting by relevance will only work if the user is in a team since they rely on the
+     * user's team's interested topics and skills to determine personalized results. Personalized results are the team's
+     * precomputed recommendations, so they only include the most relevant participants. Searched results are found with
+     * the search engine.
      */
     @Override
-    public TeamFormationParticipantSearchDTO getParticipants(int page, int limit, boolean personalized, boolean hideSentInvitations, String searchQuery, User user) {
+    public TeamFormationParticipantSearchDTO getParticipants(int page, int limit, Integer afterId, boolean personalized, boolean hideSentInvitations, boolean sortByRelevance, String searchQuery, User user) {
         TeamFormationParticipant userParticipant = teamFormationParticipantRepository
                 .findFirstByUser(user)
                 .orElseThrow(TeamFormationParticipantNotFoundException::new);
 
+        if (personalized || sortByRelevance || searchQuery != null) {
+            TeamFormationTeam userTeam = userParticipant.getTeam();
+            if ((personalized || sortByRelevance) && userTeam == null) {
+                throw new TeamFormationParticipantNotInTeamException();
+            }
+
+            BitSet foundParticipantIds = findIndexedParticipantIds(userParticipant, Collections.emptySet(), hideSentInvitations);
+
+            // Personalized results ignore the search query
+            if (personalized) {
+                int[] recommendedParticipantIds = keepFoundIds(teamFormationRecommender.getRecommendedParticipantIds(userTeam.getId()), foundParticipantIds);
+
+                return getParticipantsFromIds(toBitSet(recommendedParticipantIds), recommendedParticipantIds, Collections.emptySet(), page, limit, afterId, sortByRelevance);
+            }
+
+            if (searchQuery != null) {
+                foundParticipantIds.and(teamFormationSearchEngine.searchParticipants(searchQuery));
+            }
+
+            Set<Integer> teamTopicOrSkillIds = userTeam != null
+                    ? getTopicOrSkillIds(userTeam.getInterestedTopicsAndSkills())
+                    : Collections.emptySet();
+
+            return getParticipantsFromIds(foundParticipantIds, null, teamTopicOrSkillIds, page, limit, afterId, sortByRelevance);
+        }
+
         CriteriaBuilder cb = entityManager.getCriteriaBuilder();
-        CriteriaQuery<TeamFormationParticipant> query = cb.createQuery(TeamFormationParticipant.class);
 
-        // Query for participants and apply sorting and filters if provided
+        // Count the matching participants without loading any of them
+        CriteriaQuery<Long> countQuery = cb.createQuery(Long.class);
+        Root<TeamFormationParticipant> countedParticipants = countQuery.from(TeamFormationParticipant.class);
+        countQuery.select(cb.countDistinct(countedParticipants.get(TeamFormationParticipant_.id)));
+        countQuery.where(buildParticipantSearchPredicate(cb, countQuery, countedParticipants, userParticipant, hideSentInvitations));
+
+        long foundParticipantsSize = entityManager.createQuery(countQuery).getSingleResult();
+        int totalPages = (int) Math.ceil((double) foundParticipantsSize / limit);
+
+        // Query for the IDs of the participants and apply sorting and filters if provided
+        CriteriaQuery<Integer> query = cb.createQuery(Integer.class);
         Root<TeamFormationParticipant> participants = query.from(TeamFormationParticipant.class);
-        query.select(participants);
+        query.select(participants.get(TeamFormationParticipant_.id));
         query.distinct(true);
 
-        // Compute predicates depending on the user's options
-        List<Predicate> orPredicates = new ArrayList<>();
-        if (personalized) {
-            // Return personalized participants based on the team's interested topics and skills
-            if (userParticipant.getTeam() == null) {
-                throw new TeamFormationParticipantNotInTeamException();
-            }
+        Predicate searchPredicate = buildParticipantSearchPredicate(cb, query, participants, userParticipant, hideSentInvitations);
+        if (afterId != null) {
+            // Continue after the last participant of the previous page instead of skipping over all of the previous pages
+            searchPredicate = cb.and(searchPredicate, cb.lessThan(participants.get(TeamFormationParticipant_.id), afterId));
+        }
+
+        // Finish query and get most recently created participants matching the results
+        query.where(searchPredicate);
+        query.orderBy(cb.desc(participants.get(TeamFormationParticipant_.id)));
+        TypedQuery<Integer> typedQuery = entityManager.createQuery(query);
 
-            Set<TopicOrSkill> teamTopicsAndSkills = userParticipant.getTeam().getInterestedTopicsAndSkills();
+        // Get paginated participants from query
+        if (afterId == null) {
+            typedQuery.setFirstResult((page - 1) * limit);
+        }
+        typedQuery.setMaxResults(limit);
+        List<Integer> pageParticipantIds = typedQuery.getResultList();
+        List<TeamFormationParticipantSummaryDTO> foundParticipants = teamFormationSummaryLoader.loadParticipants(pageParticipantIds);
 
-            for (TopicOrSkill topicOrSkill : teamTopicsAndSkills) {
-                orPredicates.add(
-                        cb.equal(participants.join(TeamFormationParticipant_.interestedTopicsAndSkills).get(TopicOrSkill_.name), topicOrSkill.getName())
-                );
+        Integer nextCursor = pageParticipantIds.size() == limit ? pageParticipantIds.get(pageParticipantIds.size() - 1) : null;
+
+        return new TeamFormationParticipantSearchDTO(
+                totalPages,
+                foundParticipants,
+                foundParticipantsSize,
+                nextCursor
+        );
+    }
+
+    /**
+     * Finds the IDs of the visible participants interested in any of the given topics and skills using the topic index,
+     * or of every visible participant if no topics or skills are given.
+     */
+    private BitSet findIndexedParticipantIds(TeamFormationParticipant userParticipant, Set<Integer> topicOrSkillIds, boolean hideSentInvitations) {
+        BitSet foundParticipantIds = teamFormationTopicIndex.findVisibleParticipants(topicOrSkillIds);
+
+        // Don't return the participant that is currently getting the list of participants
+        foundParticipantIds.clear(userParticipant.getId());
+
+        // Hide found participants that have an invitation from the user's team
+        if (userParticipant.getTeam() != null && hideSentInvitations) {
+            teamFormationParticipantInvitationRepository
+                    .findInvitedParticipantIdsByInvitingTeam(userParticipant.getTeam())
+                    .forEach(foundParticipantIds::clear);
+        }
+
+        return foundParticipantIds;
+    }
+
+    /**
+     * Loads a page of participants from a set of found participant IDs, so that only the participants on the requested
+     * page are loaded from the database. The found participants are ranked against the team's topics and skills unless
+     * they're already ranked.
+     */
+    private TeamFormationParticipantSearchDTO getParticipantsFromIds(BitSet foundParticipantIds, int[] rankedParticipantIds, Set<Integer> teamTopicOrSkillIds, int page, int limit, Integer afterId, boolean sortByRelevance) {
+        long foundParticipantsSize = foundParticipantIds.cardinality();
+        int totalPages = (int) Math.ceil((double) foundParticipantsSize / limit);
+
+        List<Integer> pageParticipantIds;
+        Integer nextCursor = null;
+        if (sortByRelevance) {
+            if (rankedParticipantIds == null) {
+                rankedParticipantIds = teamFormationTopicIndex.rankParticipants(foundParticipantIds, teamTopicOrSkillIds, getRankedCount(page, limit, foundParticipantsSize));
             }
-        } else if (searchQuery != null) {
-            if (StringUtils.substring(searchQuery, 0, 4).equals("tos:")) {
-                // Do an exact search for the topic or skill when the tos: operator is used
-                // Exact meaning case sensitive and with unprocessed input
-                String searchedTopicOrSkill = StringUtils.substring(searchQuery, 4);
-
-                orPredicates.add(
-                        cb.equal(participants.join(TeamFormationParticipant_.interestedTopicsAndSkills).get(TopicOrSkill_.name), searchedTopicOrSkill)
-                );
-            } else {
-                // Search for an occurrence on the participant's name, interested topics and skills, and the objective statement
-                String searchQueryPattern = "%" + searchQuery.toLowerCase() + "%";
-                String topicAndSkillPattern = "%" + cleanTopicOrSkillName(searchQuery) + "%";
-
-                // Concatenate the participant's first and last name separated by a space in the middle
-                Expression<String> firstNameWithSpace = cb.concat(participants.join(TeamFormationParticipant_.user).get(User_.firstName), " ");
-                Expression<String> firstAndLastNameWithSpace = cb.concat(firstNameWithSpace, participants.join(TeamFormationParticipant_.user).get(User_.lastName));
-
-                orPredicates.add(cb.or(
-                        cb.like(cb.lower(firstAndLastNameWithSpace), searchQueryPattern),
-                        cb.like(cb.lower(participants.get(TeamFormationParticipant_.objectiveStatement)), searchQueryPattern),
-                        cb.like(cb.lower(participants.join(TeamFormationParticipant_.interestedTopicsAndSkills, JoinType.LEFT).get(TopicOrSkill_.name)), topicAndSkillPattern)
-                ));
+            pageParticipantIds = getRankedPage(rankedParticipantIds, page, limit);
+        } else {
+            pageParticipantIds = TeamFormationTopicIndex.getPageDescending(foundParticipantIds, page, limit, afterId);
+            if (pageParticipantIds.size() == limit) {
+                nextCursor = pageParticipantIds.get(pageParticipantIds.size() - 1);
             }
         }
 
+        List<TeamFormationParticipantSummaryDTO> foundParticipants = teamFormationSummaryLoader.loadParticipants(pageParticipantIds).stream()
+                // The index can briefly lag behind changes made by other instances of the app
+                .filter(TeamFormationParticipantSummaryDTO::isVisibleInBrowser)
+                .collect(Collectors.toList());
+
+        return new TeamFormationParticipantSearchDTO(
+                totalPages,
+                foundParticipants,
+                foundParticipantsSize,
+                nextCursor
+        );
+    }
+
+    /**
+     * Builds the filters for a participant search. Used for both counting and fetching the found participants.
+     */
+    private Predicate buildParticipantSearchPredicate(CriteriaBuilder cb, CriteriaQuery<?> query, Root<TeamFormationParticipant> participants, TeamFormationParticipant userParticipant, boolean hideSentInvitations) {
         // Add necessary requirements during search
         List<Predicate> andPredicates = new ArrayList<>();
         andPredicates.add(cb.isTrue(participants.get(TeamFormationParticipant_.visibleInBrowser)));
@@ -411,40 +668,57 @@ public class TeamFormationServiceImpl implements TeamFormationService {
 
         // Hide found participants that have an invitation from the user's team
         if (userParticipant.getTeam() != null && hideSentInvitations) {
-            Expression<TeamFormationTeam> invitingTeam = participants.join(TeamFormationParticipant_.receivedParticipantInvitations, JoinType.LEFT).get(TeamFormationParticipantInvitation_.invitingTeam);
-            andPredicates.add(cb.or(
-                    cb.notEqual(invitingTeam, userParticipant.getTeam()),
-                    cb.isNull(invitingTeam)
-            ));
-        }
+            Subquery<Integer> sentInvitation = query.subquery(Integer.class);
+            Root<TeamFormationParticipantInvitation> invitations = sentInvitation.from(TeamFormationParticipantInvitation.class);
+            sentInvitation.select(invitations.get(TeamFormationParticipantInvitation_.invitationId));
+            sentInvitation.where(
+                    cb.equal(invitations.get(TeamFormationParticipantInvitation_.invitedParticipant), participants),
+                    cb.equal(invitations.get(TeamFormationParticipantInvitation_.invitingTeam), userParticipant.getTeam())
+            );
 
-        // Add constraints specified by query parameters if any were specified
-        if (orPredicates.size() > 0) {
-            andPredicates.add(cb.or(orPredicates.toArray(new Predicate[0])));
+            andPredicates.add(cb.not(cb.exists(sentInvitation)));
         }
 
-        // Finish query and get most recently created participants matching the results
-        query.where(cb.and(andPredicates.toArray(new Predicate[0])));
-        query.orderBy(cb.desc(participants.get(TeamFormationParticipant_.id)));
-        TypedQuery<TeamFormationParticipant> typedQuery = entityManager.createQuery(query);
+        return cb.and(andPredicates.toArray(new Predicate[0]));
+    }
 
-        // Get total count and results from query
-        long foundParticipantsSize = typedQuery.getResultList().size();
-        int totalPages = (int) Math.ceil((double) foundParticipantsSize / limit);
+    /**
+     * Gets how many of the best matches need to be ranked to fill the requested page.
+     */
+    private static int getRankedCount(int page, int limit, long foundSize) {
+        return (int) Math.min((long) page * limit, foundSize);
+    }
 
-        // Get paginated participants from query
-        typedQuery.setFirstResult((page - 1) * limit);
-        typedQuery.setMaxResults(limit);
-        Collection<TeamFormationParticipant> foundParticipants = typedQuery.getResultList();
+    /**
+     * Keeps the ranked IDs that were found, in their ranked order. Precomputed rankings can include IDs that have been
+     * hidden or removed since they were ranked.
+     */
+    private static int[] keepFoundIds(int[] rankedIds, BitSet foundIds) {
+        return Arrays.stream(rankedIds).filter(foundIds::get).toArray();
+    }
 
-        return new TeamFormationParticipantSearchDTO(
-                totalPages,
-                foundParticipants,
-                foundParticipantsSize
-        );
+    private static BitSet toBitSet(int[] ids) {
+        BitSet bitSet = new BitSet();
+        for (int id : ids) {
+            bitSet.set(id);
+        }
+
+        return bitSet;
+    }
+
+    /**
+     * Gets the requested page out of the ranked IDs, which may be ranked past that page. Results sorted by relevance
+     * can only be paged by page number since the scores don't follow the order of the IDs.
+     */
+    private static List<Integer> getRankedPage(int[] rankedIds, int page, int limit) {
+        int pageStart = (int) Math.min((long) (page - 1) * limit, rankedIds.length);
+        int pageEnd = (int) Math.min((long) pageStart + limit, rankedIds.length);
+
+        return Ints.asList(rankedIds).subList(pageStart, pageEnd);
     }
 
     @Override
+    @Transactional
     public void requestToJoinTeam(int teamId, MessageDTO requestData, User user) {
         TeamFormationParticipant requestingParticipant = teamFormationParticipantRepository
                 .findFirstByUser(user)
@@ -458,15 +732,12 @@ public class TeamFormationServiceImpl implements TeamFormationService {
             throw new TeamFormationParticipantAlreadyInTeamException();
         }
 
-        if (requestedTeam.getMembers().size() >= requestedTeam.getSize()) {
+        if (requestedTeam.getMemberCount() >= requestedTeam.getSize()) {
             throw new TeamFormationTeamFullException();
         }
 
-        // Try to find an invitation already sent by the participant and throw an exception if there is
-        if (requestedTeam.getReceivedTeamJoinRequests().stream()
-                .anyMatch(joinRequest -> joinRequest
-                        .getRequestingParticipant()
-                        .equals(requestingParticipant))) {
+        // Check if the participant already sent the team a join request without loading the team's received requests
+        if (teamFormationTeamJoinRequestRepository.existsByRequestedTeamAndRequestingParticipant(requestedTeam, requestingParticipant)) {
             throw new TeamFormationTeamJoinRequestAlreadySentException();
         }
 
@@ -476,7 +747,15 @@ public class TeamFormationServiceImpl implements TeamFormationService {
         joinRequest.setRequestingParticipant(requestingParticipant);
         joinRequest.setMessage(requestData.getMessage());
 
-        teamFormationTeamJoinRequestRepository.save(joinRequest);
+        TeamFormationTeamJoinRequest savedJoinRequest;
+        try {
+            savedJoinRequest = teamFormationTeamJoinRequestRepository.saveAndFlush(joinRequest);
+        } catch (DataIntegrityViolationException e) {
+            // The unique constraint on the team and participant catches join requests sent at the same time
+            throw new TeamFormationTeamJoinRequestAlreadySentException(e);
+        }
+        teamFormationTeamRepository.addToPendingJoinRequestCount(requestedTeam, 1);
+        publishInboxEventAfterCommit(Inbox.TEAM, Change.ADDED, savedJoinRequest.getRequestId(), requestedTeam.getMembers());
 
         // Send a push notification to each team member, but don't renotify to avoid spamming them with many requests at once
         NotificationContentDTO notification = new NotificationContentDTO(
@@ -492,10 +771,11 @@ public class TeamFormationServiceImpl implements TeamFormationService {
         Set<User> teamMemberUsers = requestedTeam.getMembers().stream()
                 .map(TeamFormationParticipant::getUser)
                 .collect(Collectors.toSet());
-        pushNotificationUtils.sendBackgroundSimplePushNotificationToUsers(teamMemberUsers, notification);
+        notificationOutbox.enqueueToUsers(teamMemberUsers, notification);
     }
 
     @Override
+    @Transactional
     public void inviteParticipantToTeam(int participantId, MessageDTO invitationData, User user) {
         TeamFormationParticipant invitingTeamMember = teamFormationParticipantRepository
                 .findFirstByUser(user)
@@ -507,7 +787,7 @@ public class TeamFormationServiceImpl implements TeamFormationService {
             throw new TeamFormationParticipantNotInTeamException();
         }
 
-        if (invitingTeam.getMembers().size() >= invitingTeam.getSize()) {
+        if (invitingTeam.getMemberCount() >= invitingTeam.getSize()) {
             throw new TeamFormationTeamFullException();
         }
 
@@ -515,11 +795,8 @@ public class TeamFormationServiceImpl implements TeamFormationService {
                 .findById(participantId)
                 .orElseThrow(TeamFormationParticipantNotFoundException::new);
 
-        // Check if the team already sent the participant an invitation
-        if (invitedParticipant.getReceivedParticipantInvitations().stream()
-                .anyMatch(participantInvitation -> participantInvitation
-                        .getInvitingTeam()
-                        .equals(invitingTeam))) {
+        // Check if the team already sent the participant an invitation without loading the participant's received invitations
+        if (teamFormationParticipantInvitationRepository.existsByInvitedParticipantAndInvitingTeam(invitedParticipant, invitingTeam)) {
             throw new TeamFormationParticipantInvitationAlreadySentException();
         }
 
@@ -528,7 +805,15 @@ public class TeamFormationServiceImpl implements TeamFormationService {
         participantInvitation.setInvitedParticipant(invitedParticipant);
         participantInvitation.setMessage(invitationData.getMessage());
 
-        teamFormationParticipantInvitationRepository.save(participantInvitation);
+        TeamFormationParticipantInvitation savedInvitation;
+        try {
+            savedInvitation = teamFormationParticipantInvitationRepository.saveAndFlush(participantInvitation);
+        } catch (DataIntegrityViolationException e) {
+            // The unique constraint on the participant and team catches invitations sent at the same time
+            throw new TeamFormationParticipantInvitationAlreadySentException(e);
+        }
+        teamFormationParticipantRepository.addToPendingInvitationCount(invitedParticipant, 1);
+        publishInboxEventAfterCommit(Inbox.PARTICIPANT, Change.ADDED, savedInvitation.getInvitationId(), Collections.singleton(invitedParticipant));
 
         // Send a push notification to the invited participant, but don't renotify to avoid spamming them with many requests at once
         NotificationContentDTO notification = new NotificationContentDTO(
@@ -538,11 +823,11 @@ public class TeamFormationServiceImpl implements TeamFormationService {
                 false,
                 false
         );
-        pushNotificationUtils.sendBackgroundSimplePushNotificationToUser(invitedParticipant.getUser(), notification);
+        notificationOutbox.enqueueToUser(invitedParticipant.getUser(), notification);
     }
 
     @Override
-    public TeamFormationTeamInboxDTO getTeamInbox(int page, int limit, User user) {
+    public TeamFormationTeamInboxDTO getTeamInbox(int page, int limit, LocalDateTime afterTimestamp, Integer afterId, User user) {
         TeamFormationParticipant userParticipant = teamFormationParticipantRepository
                 .findFirstByUser(user)
                 .orElseThrow(TeamFormationParticipantNotFoundException::new);
@@ -551,6 +836,14 @@ public class TeamFormationServiceImpl implements TeamFormationService {
             throw new TeamFormationParticipantNotInTeamException();
         }
 
+        // The team's pending count is kept up to date with its join requests, so they don't need to be counted
+        long foundJoinRequestsSize = userParticipant.getTeam().getPendingJoinRequestCount();
+        int totalPages = (int) Math.ceil((double) foundJoinRequestsSize / limit);
+
+        if (foundJoinRequestsSize == 0) {
+            return new TeamFormationTeamInboxDTO(totalPages, Collections.emptyList(), foundJoinRequestsSize, null, null);
+        }
+
         CriteriaBuilder cb = entityManager.getCriteriaBuilder();
         CriteriaQuery<TeamFormationTeamJoinRequest> query = cb.createQuery(TeamFormationTeamJoinRequest.class);
 
@@ -562,23 +855,37 @@ public class TeamFormationServiceImpl implements TeamFormationService {
         // Load the lazy-loaded requestingParticipant field
         joinRequests.fetch(TeamFormationTeamJoinRequest_.requestingParticipant);
 
-        query.where(cb.and(
-                cb.isNull(joinRequests.get(TeamFormationTeamJoinRequest_.requestAccepted)),
-                cb.equal(joinRequests.get(TeamFormationTeamJoinRequest_.requestedTeam), userParticipant.getTeam())
-        ));
-        query.orderBy(cb.desc(joinRequests.get(TeamFormationTeamJoinRequest_.requestTimestamp)));
-        TypedQuery<TeamFormationTeamJoinRequest> typedQuery = entityManager.createQuery(query);
+        Path<LocalDateTime> requestTimestamp = joinRequests.get(TeamFormationTeamJoinRequest_.requestTimestamp);
+        Path<Integer> requestId = joinRequests.get(TeamFormationTeamJoinRequest_.requestId);
 
-        // Get total count and results from query
-        long foundJoinRequestsSize = typedQuery.getResultList().size();
-        int totalPages = (int) Math.ceil((double) foundJoinRequestsSize / limit);
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.isNull(joinRequests.get(TeamFormationTeamJoinRequest_.requestAccepted)));
+        predicates.add(cb.equal(joinRequests.get(TeamFormationTeamJoinRequest_.requestedTeam), userParticipant.getTeam()));
+        if (afterTimestamp != null && afterId != null) {
+            // Continue after the last join request of the previous page instead of skipping over all of the previous pages
+            predicates.add(buildBeforeCursorPredicate(cb, requestTimestamp, requestId, afterTimestamp, afterId));
+        }
+
+        query.where(cb.and(predicates.toArray(new Predicate[0])));
+        query.orderBy(cb.desc(requestTimestamp), cb.desc(requestId));
+        TypedQuery<TeamFormationTeamJoinRequest> typedQuery = entityManager.createQuery(query);
 
         // Get paginated join requests from query
-        typedQuery.setFirstResult((page - 1) * limit);
+        if (afterTimestamp == null || afterId == null) {
+            typedQuery.setFirstResult((page - 1) * limit);
+        }
         typedQuery.setMaxResults(limit);
-        Collection<TeamFormationTeamJoinRequest> foundJoinRequests = typedQuery.getResultList();
+        List<TeamFormationTeamJoinRequest> foundJoinRequests = typedQuery.getResultList();
+
+        LocalDateTime nextCursorTimestamp = null;
+        Integer nextCursorId = null;
+        if (foundJoinRequests.size() == limit) {
+            TeamFormationTeamJoinRequest lastJoinRequest = foundJoinRequests.get(foundJoinRequests.size() - 1);
+            nextCursorTimestamp = lastJoinRequest.getRequestTimestamp();
+            nextCursorId = lastJoinRequest.getRequestId();
+        }
 
-        return new TeamFormationTeamInboxDTO(totalPages, foundJoinRequests, foundJoinRequestsSize);
+        return new TeamFormationTeamInboxDTO(totalPages, foundJoinRequests, foundJoinRequestsSize, nextCursorTimestamp, nextCursorId);
     }
 
     @Override
@@ -591,6 +898,11 @@ public class TeamFormationServiceImpl implements TeamFormationService {
             throw new TeamFormationParticipantNotInTeamException();
         }
 
+        // Skip the query when the inbox is empty, which is the usual case when the inbox is polled
+        if (userParticipant.getTeam().getPendingJoinRequestCount() == 0) {
+            return new TeamFormationMessageIdsDTO(new int[0]);
+        }
+
         List<RequestIdsOnly> messageIdsProjection = teamFormationTeamJoinRequestRepository.
                 findAllByRequestedTeamAndRequestAcceptedNullOrderByRequestTimestamp(userParticipant.getTeam());
 
@@ -653,19 +965,31 @@ public class TeamFormationServiceImpl implements TeamFormationService {
                     true,
                     false
             );
-            pushNotificationUtils.sendBackgroundSimplePushNotificationToUser(requestingParticipant.getUser(), notification);
+            notificationOutbox.enqueueToUser(requestingParticipant.getUser(), notification);
         }
 
+        int pendingCountChange = getPendingCountChange(foundJoinRequest.getRequestAccepted(), requestAccepted);
+        teamFormationTeamRepository.addToPendingJoinRequestCount(foundJoinRequest.getRequestedTeam(), pendingCountChange);
+        publishPendingChangeAfterCommit(Inbox.TEAM, pendingCountChange, joinRequestId, foundJoinRequest.getRequestedTeam().getMembers());
+
         foundJoinRequest.setRequestAccepted(requestAccepted);
         teamFormationTeamJoinRequestRepository.save(foundJoinRequest);
     }
 
     @Override
-    public TeamFormationParticipantInboxDTO getParticipantInbox(int page, int limit, User user) {
+    public TeamFormationParticipantInboxDTO getParticipantInbox(int page, int limit, LocalDateTime afterTimestamp, Integer afterId, User user) {
         TeamFormationParticipant userParticipant = teamFormationParticipantRepository
                 .findFirstByUser(user)
                 .orElseThrow(TeamFormationParticipantNotFoundException::new);
 
+        // The participant's pending count is kept up to date with their invitations, so they don't need to be counted
+        long foundInvitationsSize = userParticipant.getPendingInvitationCount();
+        int totalPages = (int) Math.ceil((double) foundInvitationsSize / limit);
+
+        if (foundInvitationsSize == 0) {
+            return new TeamFormationParticipantInboxDTO(totalPages, Collections.emptyList(), foundInvitationsSize, null, null);
+        }
+
         CriteriaBuilder cb = entityManager.getCriteriaBuilder();
         CriteriaQuery<TeamFormationParticipantInvitation> query = cb.createQuery(TeamFormationParticipantInvitation.class);
 
@@ -677,23 +1001,37 @@ public class TeamFormationServiceImpl implements TeamFormationService {
         // Load the lazy-loaded invitingTeam field
         invitations.fetch(TeamFormationParticipantInvitation_.invitingTeam);
 
-        query.where(cb.and(
-                cb.isNull(invitations.get(TeamFormationParticipantInvitation_.invitationAccepted)),
-                cb.equal(invitations.get(TeamFormationParticipantInvitation_.invitedParticipant), userParticipant)
-        ));
-        query.orderBy(cb.desc(invitations.get(TeamFormationParticipantInvitation_.invitationTimestamp)));
-        TypedQuery<TeamFormationParticipantInvitation> typedQuery = entityManager.createQuery(query);
+        Path<LocalDateTime> invitationTimestamp = invitations.get(TeamFormationParticipantInvitation_.invitationTimestamp);
+        Path<Integer> invitationId = invitations.get(TeamFormationParticipantInvitation_.invitationId);
 
-        // Get total count and results from query
-        long foundInvitationsSize = typedQuery.getResultList().size();
-        int totalPages = (int) Math.ceil((double) foundInvitationsSize / limit);
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.isNull(invitations.get(TeamFormationParticipantInvitation_.invitationAccepted)));
+        predicates.add(cb.equal(invitations.get(TeamFormationParticipantInvitation_.invitedParticipant), userParticipant));
+        if (afterTimestamp != null && afterId != null) {
+            // Continue after the last invitation of the previous page instead of skipping over all of the previous pages
+            predicates.add(buildBeforeCursorPredicate(cb, invitationTimestamp, invitationId, afterTimestamp, afterId));
+        }
 
-        // Get paginated join requests from query
-        typedQuery.setFirstResult((page - 1) * limit);
+        query.where(cb.and(predicates.toArray(new Predicate[0])));
+        query.orderBy(cb.desc(invitationTimestamp), cb.desc(invitationId));
+        TypedQuery<TeamFormationParticipantInvitation> typedQuery = entityManager.createQuery(query);
+
+        // Get paginated invitations from query
+        if (afterTimestamp == null || afterId == null) {
+            typedQuery.setFirstResult((page - 1) * limit);
+        }
         typedQuery.setMaxResults(limit);
-        Collection<TeamFormationParticipantInvitation> foundInvitations = typedQuery.getResultList();
+        List<TeamFormationParticipantInvitation> foundInvitations = typedQuery.getResultList();
+
+        LocalDateTime nextCursorTimestamp = null;
+        Integer nextCursorId = null;
+        if (foundInvitations.size() == limit) {
+            TeamFormationParticipantInvitation lastInvitation = foundInvitations.get(foundInvitations.size() - 1);
+            nextCursorTimestamp = lastInvitation.getInvitationTimestamp();
+            nextCursorId = lastInvitation.getInvitationId();
+        }
 
-        return new TeamFormationParticipantInboxDTO(totalPages, foundInvitations, foundInvitationsSize);
+        return new TeamFormationParticipantInboxDTO(totalPages, foundInvitations, foundInvitationsSize, nextCursorTimestamp, nextCursorId);
     }
 
     @Override
@@ -702,6 +1040,11 @@ public class TeamFormationServiceImpl implements TeamFormationService {
                 .findFirstByUser(user)
                 .orElseThrow(TeamFormationParticipantNotFoundException::new);
 
+        // Skip the query when the inbox is empty, which is the usual case when the inbox is polled
+        if (userParticipant.getPendingInvitationCount() == 0) {
+            return new TeamFormationMessageIdsDTO(new int[0]);
+        }
+
         List<InvitationIdsOnly> messageIdsProjection = teamFormationParticipantInvitationRepository
                 .findAllByInvitedParticipantAndInvitationAcceptedNullOrderByInvitationTimestamp(userParticipant);
 
@@ -753,29 +1096,25 @@ public class TeamFormationServiceImpl implements TeamFormationService {
         if (invitationAccepted) {
             TeamFormationTeam invitingTeam = foundInvitation.getInvitingTeam();
 
-            if (invitedParticipant.getTeam() != null) {
+            // Join the team with single-row conditional updates so that concurrent acceptances can't put the participant
+            // in two teams or fill the team past its size
+            if (teamFormationParticipantRepository.joinTeamIfNotInTeam(invitedParticipant, invitingTeam) == 0) {
                 throw new TeamFormationParticipantAlreadyInTeamException();
             }
 
-            int teamCurrentSize = invitingTeam.getMembers().size();
-            int teamMaxSize = invitingTeam.getSize();
-            if (teamCurrentSize >= teamMaxSize) {
+            if (teamFormationTeamRepository.addMemberIfNotFull(invitingTeam) == 0) {
                 throw new TeamFormationTeamFullException();
             }
 
-            // The team has room left, add them to the team
-            invitingTeam.getMembers().add(invitedParticipant);
-
-            // Hide the team from the team browser if they will be full after the member joins
-            if (teamCurrentSize + 1 >= teamMaxSize) {
-                invitingTeam.setVisibleInBrowser(false);
-            }
+            // Hide the team from the team browser if they're full now that the member joined
+            teamFormationTeamRepository.hideIfFull(invitingTeam);
 
-            TeamFormationTeam savedInvitingTeam = teamFormationTeamRepository.save(invitingTeam);
+            // Pick up the changes made by the update queries
+            entityManager.refresh(invitingTeam);
+            entityManager.refresh(invitedParticipant);
 
-            invitedParticipant.setTeam(savedInvitingTeam);
-            invitedParticipant.setVisibleInBrowser(false);
-            teamFormationParticipantRepository.save(invitedParticipant);
+            indexTeamAfterCommit(invitingTeam);
+            indexParticipantAfterCommit(invitedParticipant);
 
             // Send a push notification to each team member about the acceptance
             NotificationContentDTO notification = new NotificationContentDTO(
@@ -788,17 +1127,244 @@ public class TeamFormationServiceImpl implements TeamFormationService {
                     false
             );
 
-            Set<User> teamMemberUsers = savedInvitingTeam.getMembers().stream()
+            Set<User> teamMemberUsers = invitingTeam.getMembers().stream()
                     .filter(participant -> participant != invitedParticipant)  // Don't notify the new team member
                     .map(TeamFormationParticipant::getUser)
                     .collect(Collectors.toSet());
-            pushNotificationUtils.sendBackgroundSimplePushNotificationToUsers(teamMemberUsers, notification);
+            notificationOutbox.enqueueToUsers(teamMemberUsers, notification);
         }
 
+        int pendingCountChange = getPendingCountChange(foundInvitation.getInvitationAccepted(), invitationAccepted);
+        teamFormationParticipantRepository.addToPendingInvitationCount(invitedParticipant, pendingCountChange);
+        publishPendingChangeAfterCommit(Inbox.PARTICIPANT, pendingCountChange, invitationId, Collections.singleton(invitedParticipant));
+
         foundInvitation.setInvitationAccepted(invitationAccepted);
         teamFormationParticipantInvitationRepository.save(foundInvitation);
     }
 
+    @Override
+    public SseEmitter subscribeToInboxEvents(User user) {
+        TeamFormationParticipant userParticipant = teamFormationParticipantRepository
+                .findFirstByUser(user)
+                .orElseThrow(TeamFormationParticipantNotFoundException::new);
+
+        return teamFormationInboxEventBroker.subscribe(userParticipant.getId());
+    }
+
+    @Override
+    public TopicOrSkillSuggestionsDTO getTopicOrSkillSuggestions(String prefix, int limit) {
+        return new TopicOrSkillSuggestionsDTO(topicOrSkillSuggestionIndex.suggest(prefix, limit));
+    }
+
+    @Override
+    @Transactional
+    public TeamFormationMatchingResultDTO matchParticipantsToTeams(TeamFormationMatchingRequestDTO matchingData) {
+        long startTime = System.nanoTime();
+
+        Map<Integer, List<Integer>> participantTopicOrSkillIds = groupTopicOrSkillIds(teamFormationParticipantRepository.findAllMatchableTopicOrSkillLinks());
+        List<TeamFormationMatcher.Candidate> participants = teamFormationParticipantRepository.findAllMatchable().stream()
+                .map(participant -> new TeamFormationMatcher.Candidate(
+                        participant.getId(),
+                        participantTopicOrSkillIds.getOrDefault(participant.getId(), Collections.emptyList()),
+                        Collections.singletonList(participant.getSpecialization()),
+                        0
+                ))
+                .collect(Collectors.toList());
+
+        Map<Integer, List<Integer>> teamTopicOrSkillIds = groupTopicOrSkillIds(teamFormationTeamRepository.findAllMatchableTopicOrSkillLinks());
+        Map<Integer, List<String>> teamSpecializations = new HashMap<>();
+        for (TeamMemberSpecialization memberSpecialization : teamFormationParticipantRepository.findAllMatchableTeamMemberSpecializations()) {
+            teamSpecializations.computeIfAbsent(memberSpecialization.getTeamId(), key -> new ArrayList<>()).add(memberSpecialization.getSpecialization());
+        }
+        Map<Integer, String> teamNames = new HashMap<>();
+        List<TeamFormationMatcher.Candidate> teams = new ArrayList<>();
+        int openSpots = 0;
+        for (MatchableTeam team : teamFormationTeamRepository.findAllMatchable()) {
+            teamNames.put(team.getId(), team.getName());
+            teams.add(new TeamFormationMatcher.Candidate(
+                    team.getId(),
+                    teamTopicOrSkillIds.getOrDefault(team.getId(), Collections.emptyList()),
+                    teamSpecializations.getOrDefault(team.getId(), Collections.emptyList()),
+                    team.getOpenSpots()
+            ));
+            openSpots += team.getOpenSpots();
+        }
+
+        // Teams can only invite a participant once, so don't suggest the teams that already did
+        Set<Long> excludedPairs = teamFormationParticipantInvitationRepository.findAllSentToParticipantsWithoutTeam().stream()
+                .map(pair -> TeamFormationMatcher.getPairKey(pair.getTeamId(), pair.getParticipantId()))
+                .collect(Collectors.toSet());
+
+        long matchStartTime = System.nanoTime();
+        TeamFormationMatcher.Result matchResult = teamFormationMatcher.match(participants, teams, excludedPairs);
+        List<TeamFormationMatcher.Match> matches = matchResult.getMatches();
+
+        long saveStartTime = System.nanoTime();
+        List<Integer> invitationIds = matchingData.isDryRun()
+                ? Collections.<Integer>nCopies(matches.size(), null)
+                : sendMatchInvitations(matches, matchingData.getMessage(), teamNames);
+        long endTime = System.nanoTime();
+
+        TeamFormationMatchingResultDTO result = new TeamFormationMatchingResultDTO();
+        result.setDryRun(matchingData.isDryRun());
+        result.setParticipants(participants.size());
+        result.setTeams(teams.size());
+        result.setOpenSpots(openSpots);
+        result.setMatchedParticipants(matches.size());
+        result.setUnmatchedParticipants(participants.size() - matches.size());
+        result.setRounds(matchResult.getRounds());
+
+        List<TeamFormationMatchSuggestionDTO> suggestions = new ArrayList<>(matches.size());
+        double totalScore = 0;
+        double minimumScore = matches.isEmpty() ? 0 : Double.MAX_VALUE;
+        long totalSharedTopicsAndSkills = 0;
+        int newSpecializations = 0;
+        for (int i = 0; i < matches.size(); i++) {
+            TeamFormationMatcher.Match match = matches.get(i);
+            suggestions.add(new TeamFormationMatchSuggestionDTO(
+                    match.getParticipantId(),
+                    match.getTeamId(),
+                    invitationIds.get(i),
+                    match.getScore(),
+                    match.getSharedTopicsAndSkills(),
+                    match.isNewSpecialization()
+            ));
+
+            totalScore += match.getScore();
+            minimumScore = Math.min(minimumScore, match.getScore());
+            totalSharedTopicsAndSkills += match.getSharedTopicsAndSkills();
+            if (match.isNewSpecialization()) newSpecializations++;
+        }
+        result.setSuggestions(suggestions);
+        result.setAverageScore(matches.isEmpty() ? 0 : totalScore / matches.size());
+        result.setMinimumScore(minimumScore);
+        result.setAverageSharedTopicsAndSkills(matches.isEmpty() ? 0 : (double) totalSharedTopicsAndSkills / matches.size());
+        result.setNewSpecializationRate(matches.isEmpty() ? 0 : (double) newSpecializations / matches.size());
+
+        result.setLoadMillis(TimeUnit.NANOSECONDS.toMillis(matchStartTime - startTime));
+        result.setScoringMillis(TimeUnit.NANOSECONDS.toMillis(matchResult.getScoringNanos()));
+        result.setAssignmentMillis(TimeUnit.NANOSECONDS.toMillis(matchResult.getAssignmentNanos()));
+        result.setSaveMillis(TimeUnit.NANOSECONDS.toMillis(endTime - saveStartTime));
+        result.setTotalMillis(TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
+
+        log.info("Matched {} of {} team formation participants to {} teams (dry run: {}, average score: {}) in {} ms",
+                matches.size(), participants.size(), teams.size(), matchingData.isDryRun(), result.getAverageScore(), result.getTotalMillis());
+
+        return result;
+    }
+
+    /**
+     * Sends an invitation from the matched team to each matched participant.
+     *
+     * @return The IDs of the sent invitations, in the same order as the matches.
+     */
+    private List<Integer> sendMatchInvitations(List<TeamFormationMatcher.Match> matches, String message, Map<Integer, String> teamNames) {
+        String invitationMessage = message != null ? message : DEFAULT_MATCH_INVITATION_MESSAGE;
+
+        List<TeamFormationParticipantInvitation> invitations = new ArrayList<>(matches.size());
+        for (TeamFormationMatcher.Match match : matches) {
+            TeamFormationParticipantInvitation invitation = new TeamFormationParticipantInvitation();
+            invitation.setInvitingTeam(teamFormationTeamRepository.getOne(match.getTeamId()));
+            invitation.setInvitedParticipant(teamFormationParticipantRepository.getOne(match.getParticipantId()));
+            invitation.setMessage(invitationMessage);
+            invitations.add(invitation);
+        }
+
+        List<TeamFormationParticipantInvitation> savedInvitations;
+        try {
+            savedInvitations = teamFormationParticipantInvitationRepository.saveAll(invitations);
+        } catch (DataIntegrityViolationException e) {
+            // A team invited one of the participants while the matches were being found
+            throw new DataConflictException(e);
+        }
+
+        List<Integer> participantIds = matches.stream()
+                .map(TeamFormationMatcher.Match::getParticipantId)
+                .collect(Collectors.toList());
+        Map<Integer, User> usersByParticipantId = new HashMap<>();
+        for (List<Integer> participantIdBatch : Lists.partition(participantIds, MATCHING_QUERY_BATCH_SIZE)) {
+            teamFormationParticipantRepository.addPendingInvitationToAll(participantIdBatch);
+            for (ParticipantUser participantUser : teamFormationParticipantRepository.findUsersByIds(participantIdBatch)) {
+                usersByParticipantId.put(participantUser.getParticipantId(), participantUser.getUser());
+            }
+        }
+
+        List<Integer> invitationIds = new ArrayList<>(savedInvitations.size());
+        Map<Integer, List<User>> invitedUsersByTeamId = new HashMap<>();
+        for (int i = 0; i < matches.size(); i++) {
+            TeamFormationMatcher.Match match = matches.get(i);
+            int invitationId = savedInvitations.get(i).getInvitationId();
+            invitationIds.add(invitationId);
+
+            publishInboxEventToIdsAfterCommit(Inbox.PARTICIPANT, Change.ADDED, invitationId, Collections.singletonList(match.getParticipantId()));
+            invitedUsersByTeamId.computeIfAbsent(match.getTeamId(), key -> new ArrayList<>()).add(usersByParticipantId.get(match.getParticipantId()));
+        }
+
+        // Send one batch of push notifications per team since the notification is the same for everyone a team invited
+        invitedUsersByTeamId.forEach((teamId, invitedUsers) -> {
+            NotificationContentDTO notification = new NotificationContentDTO(
+                    String.format("You have been invited to the team \"%s\".", teamNames.get(teamId)),
+                    invitationMessage,
+                    "teamformation-participant-invitation-received",
+                    false,
+                    false
+            );
+            notificationOutbox.enqueueToUsers(invitedUsers, notification);
+        });
+
+        return invitationIds;
+    }
+
+    private static Map<Integer, List<Integer>> groupTopicOrSkillIds(List<TopicOrSkillLink> links) {
+        Map<Integer, List<Integer>> topicOrSkillIdsByOwner = new HashMap<>();
+        for (TopicOrSkillLink link : links) {
+            topicOrSkillIdsByOwner.computeIfAbsent(link.getOwnerId(), key -> new ArrayList<>()).add(link.getTopicOrSkillId());
+        }
+
+        return topicOrSkillIdsByOwner;
+    }
+
+    /**
+     * Gets how much a pending count changes by when a join request or invitation is answered. A join request or
+     * invitation is pending until it has been accepted or rejected.
+     */
+    private static int getPendingCountChange(Boolean previouslyAccepted, Boolean accepted) {
+        return (accepted == null ? 1 : 0) - (previouslyAccepted == null ? 1 : 0);
+    }
+
+    private void publishPendingChangeAfterCommit(Inbox inbox, int pendingCountChange, int messageId, Collection<TeamFormationParticipant> recipients) {
+        if (pendingCountChange == 0) return;
+
+        Change change = pendingCountChange > 0 ? Change.ADDED : Change.REMOVED;
+        publishInboxEventAfterCommit(inbox, change, messageId, recipients);
+    }
+
+    private void publishInboxEventAfterCommit(Inbox inbox, Change change, int messageId, Collection<TeamFormationParticipant> recipients) {
+        List<Integer> recipientIds = recipients.stream()
+                .map(TeamFormationParticipant::getId)
+                .collect(Collectors.toList());
+
+        publishInboxEventToIdsAfterCommit(inbox, change, messageId, recipientIds);
+    }
+
+    private void publishInboxEventToIdsAfterCommit(Inbox inbox, Change change, int messageId, List<Integer> recipientIds) {
+        // Only let clients know about the change once it can be seen when they reload their inbox
+        TeamFormationInboxEventDTO event = new TeamFormationInboxEventDTO(inbox, change, messageId);
+
+        runAfterCommit(() -> teamFormationInboxEventBroker.publish(event, recipientIds));
+    }
+
+    /**
+     * Builds a filter for inbox messages that come after a message in an inbox sorted from newest to oldest. The ID
+     * breaks ties between messages sent at the same time.
+     */
+    private static Predicate buildBeforeCursorPredicate(CriteriaBuilder cb, Path<LocalDateTime> timestamp, Path<Integer> id, LocalDateTime cursorTimestamp, int cursorId) {
+        return cb.or(
+                cb.lessThan(timestamp, cursorTimestamp),
+                cb.and(cb.equal(timestamp, cursorTimestamp), cb.lessThan(id, cursorId))
+        );
+    }
+
     private void setCommonParticipantDataAndSave(TeamFormationParticipantFormDataDTO submittedData, TeamFormationParticipant participant) {
         participant.setSpecialization(submittedData.getSpecialization());
         participant.setObjectiveStatement(submittedData.getObjectiveStatement());
@@ -808,27 +1374,60 @@ public class TeamFormationServiceImpl implements TeamFormationService {
         Set<TopicOrSkill> topicsAndSkills = getTopicsAndSkillsFromNames(topicAndSkillNames);
         participant.setInterestedTopicsAndSkills(topicsAndSkills);
 
-        teamFormationParticipantRepository.save(participant);
+        TeamFormationParticipant savedParticipant = teamFormationParticipantRepository.save(participant);
+        indexParticipantAfterCommit(savedParticipant);
+    }
+
+    private void indexTeamAfterCommit(TeamFormationTeam team) {
+        // Read the team's state now since the entity may change or be detached by the time the transaction commits
+        int teamId = team.getId();
+        boolean visibleInBrowser = team.isVisibleInBrowser();
+        Set<Integer> topicOrSkillIds = getTopicOrSkillIds(team.getInterestedTopicsAndSkills());
+        String name = team.getName();
+        String objectiveStatement = team.getObjectiveStatement();
+        List<String> topicOrSkillNames = getTopicOrSkillNames(team.getInterestedTopicsAndSkills());
+
+        runAfterCommit(() -> {
+            teamFormationTopicIndex.updateTeam(teamId, visibleInBrowser, topicOrSkillIds);
+            teamFormationSearchEngine.updateTeam(teamId, name, objectiveStatement, topicOrSkillNames);
+            topicOrSkillSuggestionIndex.updateTeam(teamId, topicOrSkillNames);
+            teamFormationRecommender.refreshTeam(teamId);
+        });
+    }
+
+    private void indexParticipantAfterCommit(TeamFormationParticipant participant) {
+        int participantId = participant.getId();
+        boolean visibleInBrowser = participant.isVisibleInBrowser();
+        Set<Integer> topicOrSkillIds = getTopicOrSkillIds(participant.getInterestedTopicsAndSkills());
+        String name = participant.getUser().getFirstName() + " " + participant.getUser().getLastName();
+        String objectiveStatement = participant.getObjectiveStatement();
+        List<String> topicOrSkillNames = getTopicOrSkillNames(participant.getInterestedTopicsAndSkills());
+
+        runAfterCommit(() -> {
+            teamFormationTopicIndex.updateParticipant(participantId, visibleInBrowser, topicOrSkillIds);
+            teamFormationSearchEngine.updateParticipant(participantId, name, objectiveStatement, topicOrSkillNames);
+            topicOrSkillSuggestionIndex.updateParticipant(participantId, topicOrSkillNames);
+            teamFormationRecommender.refreshParticipant(participantId);
+        });
+    }
+
+    private static Set<Integer> getTopicOrSkillIds(Set<TopicOrSkill> topicsAndSkills) {
+        if (topicsAndSkills == null) return Collections.emptySet();
+
+        return topicsAndSkills.stream()
+                .map(TopicOrSkill::getId)
+                .collect(Collectors.toSet());
+    }
+
+    private static List<String> getTopicOrSkillNames(Set<TopicOrSkill> topicsAndSkills) {
+        if (topicsAndSkills == null) return Collections.emptyList();
+
+        return topicsAndSkills.stream()
+                .map(TopicOrSkill::getName)
+                .collect(Collectors.toList());
     }
 
     private Set<TopicOrSkill> getTopicsAndSkillsFromNames(Set<String> topicAndSkillNames) {
-        Set<TopicOrSkill> topicsAndSkills = new HashSet<>(topicAndSkillNames.size());
-        for (String providedTopicOrSkillName : topicAndSkillNames) {
-            // Clean and try to find the topic or skill name in the database
-            String cleanedTopicOrSkillName = cleanTopicOrSkillName(providedTopicOrSkillName);
-            Optional<TopicOrSkill> existingTopicOrSkill = topicOrSkillRepository.findFirstByName(cleanedTopicOrSkillName);
-
-            if (existingTopicOrSkill.isPresent()) {
-                // Topic or skill was found, add it to the user's interested topics and skills
-                topicsAndSkills.add(existingTopicOrSkill.get());
-            } else {
-                // Add the topic or skill if it doesn't exist
-                TopicOrSkill newTopicOrSkill = new TopicOrSkill();
-                newTopicOrSkill.setName(cleanedTopicOrSkillName);
-                TopicOrSkill savedTopicOrSkill = topicOrSkillRepository.save(newTopicOrSkill);
-                topicsAndSkills.add(savedTopicOrSkill);
-            }
-        }
-        return topicsAndSkills;
+        return topicOrSkillDictionary.getOrCreateAll(topicAndSkillNames);
     }
 }
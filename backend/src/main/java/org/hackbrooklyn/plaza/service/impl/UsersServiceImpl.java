@@ -22,18 +22,20 @@ import org.hackbrooklyn.plaza.repository.SubmittedApplicationRepository;
 import org.hackbrooklyn.plaza.repository.UserActivationRepository;
 import org.hackbrooklyn.plaza.repository.UserRepository;
 import org.hackbrooklyn.plaza.security.Roles;
+import org.hackbrooklyn.plaza.security.AuthorizationVersionStore;
+import org.hackbrooklyn.plaza.security.PasswordHashingExecutor;
+import org.hackbrooklyn.plaza.security.RefreshTokenBlocklist;
+import org.hackbrooklyn.plaza.security.UserPrincipalCache;
 import org.hackbrooklyn.plaza.service.UsersService;
 import org.hackbrooklyn.plaza.util.JwtUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.authentication.BadCredentialsException;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.persistence.EntityManagerFactory;
 import javax.validation.constraints.NotNull;
@@ -42,8 +44,11 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import static org.hackbrooklyn.plaza.model.SubmittedApplication.Decision;
+import static org.hackbrooklyn.plaza.util.TransactionUtils.runAfterCommit;
 
 @Slf4j
 @Service
@@ -67,51 +72,61 @@ public class UsersServiceImpl implements UsersService {
     @Value("${SENDGRID_RESET_PASSWORD_TEMPLATE_ID}")
     private String SENDGRID_RESET_PASSWORD_TEMPLATE_ID;
 
-    @Value("${REDIS_REFRESH_TOKEN_NAMESPACE}")
-    private String REDIS_REFRESH_TOKEN_NAMESPACE;
-
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingExecutor passwordHashingExecutor;
     private final EntityManagerFactory entityManagerFactory;
-    private final AuthenticationManager authenticationManager;
+    private final Executor applicationTaskExecutor;
+    private final TransactionTemplate transactionTemplate;
     private final UserRepository userRepository;
     private final SubmittedApplicationRepository submittedApplicationRepository;
     private final UserActivationRepository userActivationRepository;
     private final PasswordResetRepository passwordResetRepository;
-    private final RedisTemplate<String, String> refreshTokenBlocklistRedisTemplate;
+    private final RefreshTokenBlocklist refreshTokenBlocklist;
     private final SendGrid sendGrid;
     private final JwtUtils jwtUtils;
+    private final UserPrincipalCache userPrincipalCache;
+    private final AuthorizationVersionStore authorizationVersionStore;
 
     @Autowired
-    public UsersServiceImpl(PasswordEncoder passwordEncoder, EntityManagerFactory entityManagerFactory, AuthenticationManager authenticationManager, UserRepository userRepository, SubmittedApplicationRepository submittedApplicationRepository, UserActivationRepository userActivationRepository, PasswordResetRepository passwordResetRepository, RedisTemplate<String, String> refreshTokenBlocklistRedisTemplate, SendGrid sendGrid, JwtUtils jwtUtils) {
-        this.passwordEncoder = passwordEncoder;
+    public UsersServiceImpl(PasswordHashingExecutor passwordHashingExecutor, EntityManagerFactory entityManagerFactory, @Qualifier("applicationTaskExecutor") Executor applicationTaskExecutor, TransactionTemplate transactionTemplate, UserRepository userRepository, SubmittedApplicationRepository submittedApplicationRepository, UserActivationRepository userActivationRepository, PasswordResetRepository passwordResetRepository, RefreshTokenBlocklist refreshTokenBlocklist, SendGrid sendGrid, JwtUtils jwtUtils, UserPrincipalCache userPrincipalCache, AuthorizationVersionStore authorizationVersionStore) {
+        this.passwordHashingExecutor = passwordHashingExecutor;
         this.entityManagerFactory = entityManagerFactory;
-        this.authenticationManager = authenticationManager;
+        this.applicationTaskExecutor = applicationTaskExecutor;
+        this.transactionTemplate = transactionTemplate;
         this.userRepository = userRepository;
         this.submittedApplicationRepository = submittedApplicationRepository;
         this.userActivationRepository = userActivationRepository;
         this.passwordResetRepository = passwordResetRepository;
-        this.refreshTokenBlocklistRedisTemplate = refreshTokenBlocklistRedisTemplate;
+        this.refreshTokenBlocklist = refreshTokenBlocklist;
         this.sendGrid = sendGrid;
         this.jwtUtils = jwtUtils;
+        this.userPrincipalCache = userPrincipalCache;
+        this.authorizationVersionStore = authorizationVersionStore;
     }
 
     @Override
-    public User logInUser(String email, String password) throws BadCredentialsException {
-        Authentication auth = authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(email, password));
-        return (User) auth.getPrincipal();
+    public CompletableFuture<User> logInUser(String email, String password) {
+        // Still check the password if the user doesn't exist so that the response time doesn't reveal which emails exist
+        User foundUser = userRepository.findByEmail(email).orElse(null);
+        String hashedPassword = foundUser != null ? foundUser.getHashedPassword() : null;
+
+        return passwordHashingExecutor.matches(password, hashedPassword).thenApply(passwordMatches -> {
+            if (!passwordMatches) throw new BadCredentialsException("The email or password provided is incorrect.");
+            return foundUser;
+        });
     }
 
     @Override
     public void addRefreshTokenToBlocklist(String refreshToken) {
-        String keyName = String.format("%s:%s", REDIS_REFRESH_TOKEN_NAMESPACE, refreshToken);
+        // Tokens that are invalid or have already expired can't be used again, so there is nothing to block
+        JwtUtils.VerifiedJwt verifiedRefreshToken = jwtUtils.verify(refreshToken).orElse(null);
+        if (verifiedRefreshToken == null) return;
 
-        // Add key to Redis blocklist and set the key to expire when the JWT also expires
-        refreshTokenBlocklistRedisTemplate.opsForValue().set(keyName, "");
-        refreshTokenBlocklistRedisTemplate.expireAt(keyName, jwtUtils.getExpirationFromJwt(refreshToken));
+        // Blocklist the token until it would have expired anyway
+        refreshTokenBlocklist.add(refreshToken, verifiedRefreshToken.getExpiration());
     }
 
     @Override
-    public TokenDTOAndUser activateUser(String activationKey, String password) {
+    public CompletableFuture<TokenDTOAndUser> activateUser(String activationKey, String password) {
         // Find the application via activation key
         UserActivation userActivation = userActivationRepository
                 .findFirstByActivationKey(activationKey)
@@ -130,13 +145,20 @@ public class UsersServiceImpl implements UsersService {
             throw new AccountAlreadyActivatedException();
         }
 
-        // Activation key is valid, proceed to activate the user's account
+        // Activation key is valid, proceed to hash the password and activate the user's account
+        return passwordHashingExecutor.encode(password).thenApplyAsync(
+                hashedPassword -> transactionTemplate.execute(status -> saveActivatedUser(activatedUserApplication, hashedPassword)),
+                applicationTaskExecutor
+        );
+    }
+
+    private TokenDTOAndUser saveActivatedUser(SubmittedApplication activatedUserApplication, String hashedPassword) {
         User activatedUser = new User();
 
         activatedUser.setFirstName(activatedUserApplication.getFirstName());
         activatedUser.setLastName(activatedUserApplication.getLastName());
         activatedUser.setEmail(activatedUserApplication.getEmail());
-        activatedUser.setHashedPassword(passwordEncoder.encode(password));
+        activatedUser.setHashedPassword(hashedPassword);
         activatedUser.setLinkedApplication(activatedUserApplication);
         switch (activatedUserApplication.getDecision()) {
             case ACCEPTED:
@@ -151,6 +173,7 @@ public class UsersServiceImpl implements UsersService {
         }
 
         User savedActivatedUser = userRepository.save(activatedUser);
+        runAfterCommit(() -> userPrincipalCache.invalidate(savedActivatedUser.getId()));
 
         // Save the newly activated user on the application as well
         activatedUserApplication.setActivatedUser(savedActivatedUser);
@@ -202,8 +225,7 @@ public class UsersServiceImpl implements UsersService {
     }
 
     @Override
-    @Transactional
-    public TokenDTOAndUser resetPassword(String passwordResetKey, String password) {
+    public CompletableFuture<TokenDTOAndUser> resetPassword(String passwordResetKey, String password) {
         // Find the user via password reset key
         PasswordReset passwordReset = passwordResetRepository.findFirstByPasswordResetKey(passwordResetKey)
                 .orElseThrow(InvalidKeyException::new);
@@ -217,18 +239,34 @@ public class UsersServiceImpl implements UsersService {
 
 
         // Password reset key is valid, proceed to hash and reset the user's password
-        User resettingUser = passwordReset.getResettingUser();
-        String newHashedPassword = passwordEncoder.encode(password);
-        resettingUser.setHashedPassword(newHashedPassword);
-        userRepository.save(resettingUser);
-
-        // Destroy all password reset keys from the activating user
-        passwordResetRepository.deleteAllByResettingUser(resettingUser);
-
-        // Generate access token to enable the user to log in immediately
-        TokenDTO tokenDTO = jwtUtils.generateAccessTokenDTO(resettingUser);
-
-        return new TokenDTOAndUser(tokenDTO, resettingUser);
+        int resettingUserId = passwordReset.getResettingUser().getId();
+        return passwordHashingExecutor.encode(password).thenApplyAsync(
+                newHashedPassword -> transactionTemplate.execute(status -> {
+                    // Use up the key before resetting the password so that concurrent resets with the same key can't
+                    // both go through
+                    LocalDateTime now = LocalDateTime.now(ZoneId.of("UTC"));
+                    if (passwordResetRepository.deleteUnexpiredByPasswordResetKey(passwordResetKey, now) == 0) {
+                        throw new InvalidKeyException();
+                    }
+
+                    // Load the user again in this transaction since the hashing finishes on another thread
+                    User resettingUser = userRepository
+                            .findById(resettingUserId)
+                            .orElseThrow(UserNotFoundException::new);
+                    resettingUser.setHashedPassword(newHashedPassword);
+                    userRepository.save(resettingUser);
+                    runAfterCommit(() -> userPrincipalCache.invalidate(resettingUser.getId()));
+
+                    // Destroy all password reset keys from the activating user
+                    passwordResetRepository.deleteAllByResettingUser(resettingUser);
+
+                    // Generate access token to enable the user to log in immediately
+                    TokenDTO tokenDTO = jwtUtils.generateAccessTokenDTO(resettingUser);
+
+                    return new TokenDTOAndUser(tokenDTO, resettingUser);
+                }),
+                applicationTaskExecutor
+        );
     }
 
     @Override
@@ -264,11 +302,8 @@ public class UsersServiceImpl implements UsersService {
 
     @Override
     public TokenDTO refreshAccessToken(String refreshToken, User refreshingUser) {
-        String keyName = String.format("%s:%s", REDIS_REFRESH_TOKEN_NAMESPACE, refreshToken);
-
-        // Throw exception and send 401 Unauthorized if the key is in the blocklist
-        Boolean isKeyInBlocklist = refreshTokenBlocklistRedisTemplate.hasKey(keyName);
-        if (isKeyInBlocklist != null && isKeyInBlocklist) throw new InvalidTokenException();
+        // Throw exception and send 401 Unauthorized if the token is in the blocklist
+        if (refreshTokenBlocklist.contains(refreshToken)) throw new InvalidTokenException();
 
         // Generate new access token and corresponding DTO
         return jwtUtils.generateAccessTokenDTO(refreshingUser);
@@ -276,6 +311,8 @@ public class UsersServiceImpl implements UsersService {
 
     @Override
     public UserDataDTO getUserData(User user) {
+        user = loadFullUser(user);
+
         return new UserDataDTO(
                 user.getId(),
                 user.getEmail(),
@@ -287,6 +324,8 @@ public class UsersServiceImpl implements UsersService {
 
     @Override
     public DecisionDTO getApplicationDecision(User user) {
+        user = loadFullUser(user);
+
         // Get the user's linked application number from the User model if they have one
         SubmittedApplication userLinkedApplication = user.getLinkedApplication();
         if (userLinkedApplication == null) throw new ApplicationNotFoundException();
@@ -305,25 +344,33 @@ public class UsersServiceImpl implements UsersService {
     }
 
     @Override
-    public void createUser(CreateUserRequestDTO userData) {
+    public CompletableFuture<Void> createUser(CreateUserRequestDTO userData) {
         // Check if there is already an existing account with the email
         if (userRepository.findByEmail(userData.getEmail()).isPresent()) {
             throw new AccountAlreadyActivatedException();
         }
 
-        // No user exists, create the account
-        User createdUser = new User();
-
-        createdUser.setFirstName(userData.getFirstName());
-        createdUser.setLastName(userData.getLastName());
-        createdUser.setEmail(userData.getEmail());
-        createdUser.setHashedPassword(passwordEncoder.encode(userData.getPassword()));
-        createdUser.setRole(userData.getRole());
-
-        userRepository.save(createdUser);
+        // No user exists, hash the password and create the account
+        return passwordHashingExecutor.encode(userData.getPassword()).thenAcceptAsync(hashedPassword -> {
+            User createdUser = new User();
+
+            createdUser.setFirstName(userData.getFirstName());
+            createdUser.setLastName(userData.getLastName());
+            createdUser.setEmail(userData.getEmail());
+            createdUser.setHashedPassword(hashedPassword);
+            createdUser.setRole(userData.getRole());
+
+            try {
+                userRepository.save(createdUser);
+            } catch (DataIntegrityViolationException e) {
+                // Another sign up with the same email was saved after the check above
+                throw new AccountAlreadyActivatedException(e);
+            }
+        }, applicationTaskExecutor);
     }
 
     @Override
+    @Transactional
     public void setRole(SetRoleDTO reqBody) {
         User foundUser = userRepository
                 .findByEmail(reqBody.getEmail())
@@ -332,6 +379,24 @@ public class UsersServiceImpl implements UsersService {
         foundUser.setRole(reqBody.getRole());
 
         userRepository.save(foundUser);
+
+        // Evict the user's cached principal and outdate their access tokens once the new role is committed
+        int userId = foundUser.getId();
+        runAfterCommit(() -> {
+            userPrincipalCache.invalidate(userId);
+            authorizationVersionStore.bumpVersion(userId);
+        });
+    }
+
+    private User loadFullUser(User user) {
+        // Users authorized statelessly only have the fields embedded in their access token
+        if (!user.isLoadedFromToken()) {
+            return user;
+        }
+
+        return userRepository
+                .findById(user.getId())
+                .orElseThrow(UserNotFoundException::new);
     }
 
     private void sendDynamicTemplateEmailUsingSendGrid(String templateId, Personalization personalization) throws IOException {
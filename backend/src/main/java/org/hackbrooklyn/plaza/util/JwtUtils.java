@@ -4,20 +4,32 @@ import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SignatureException;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.hackbrooklyn.plaza.dto.TokenDTO;
 import org.hackbrooklyn.plaza.model.User;
+import org.hackbrooklyn.plaza.security.AuthorizationVersionStore;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseCookie;
 import org.springframework.stereotype.Component;
 
-import javax.servlet.http.Cookie;
+import javax.annotation.PostConstruct;
 import java.security.Key;
+import java.time.Instant;
 import java.util.Date;
+import java.util.Optional;
 
 @Slf4j
 @Component
 public class JwtUtils {
 
+    private static final String TYPE_CLAIM = "type";
+    private static final String ROLE_CLAIM = "role";
+    private static final String AUTHORIZATION_VERSION_CLAIM = "authzVersion";
+
     @Value("${JWT_SECRET}")
     private String JWT_SECRET;
 
@@ -33,10 +45,39 @@ public class JwtUtils {
     @Value("${BACKEND_DOMAIN}")
     private String BACKEND_DOMAIN;
 
-    public boolean validateJwt(String token) {
+    @Value("${JWT_STATELESS_AUTHORIZATION:false}")
+    private boolean JWT_STATELESS_AUTHORIZATION;
+
+    private final AuthorizationVersionStore authorizationVersionStore;
+
+    private Key signingKey;
+    private JwtParser jwtParser;
+
+    @Autowired
+    public JwtUtils(AuthorizationVersionStore authorizationVersionStore) {
+        this.authorizationVersionStore = authorizationVersionStore;
+    }
+
+    /**
+     * Decodes the signing key and builds the JWT parser once so they can be reused by every request.
+     * The built parser is immutable and safe to share between threads.
+     */
+    @PostConstruct
+    private void initializeSigningKeyAndParser() {
+        signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(JWT_SECRET));
+        jwtParser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+    }
+
+    /**
+     * Parses and verifies a JWT in a single pass.
+     *
+     * @param token The JWT to verify.
+     * @return The verified claims of the JWT, or an empty Optional if the JWT is invalid or has expired.
+     */
+    public Optional<VerifiedJwt> verify(String token) {
         try {
-            Jwts.parserBuilder().setSigningKey(JWT_SECRET).build().parseClaimsJws(token);
-            return true;
+            Claims claims = jwtParser.parseClaimsJws(token).getBody();
+            return Optional.of(VerifiedJwt.fromClaims(claims));
         } catch (SignatureException e) {
             log.error("Invalid JWT signature - {}", e.getMessage());
         } catch (MalformedJwtException e) {
@@ -46,9 +87,9 @@ public class JwtUtils {
         } catch (UnsupportedJwtException e) {
             log.error("Unsupported JWT token - {}", e.getMessage());
         } catch (IllegalArgumentException e) {
-            log.error("JWT claims string is empty - {}", e.getMessage());
+            log.error("JWT claims string is empty or invalid - {}", e.getMessage());
         }
-        return false;
+        return Optional.empty();
     }
 
     public String generateJwt(User user, JwtTypes jwtType) {
@@ -64,35 +105,36 @@ public class JwtUtils {
                 jwtExpirationTimeMs = 900000;  // Default to 15 minutes if none was provided
         }
 
-        return Jwts.builder()
+        JwtBuilder jwtBuilder = Jwts.builder()
                 .setSubject(String.format("%s,%s", user.getId(), user.getEmail()))
                 .setIssuer(BACKEND_DOMAIN)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + jwtExpirationTimeMs))
-                .signWith(getSigningKey())
-                .compact();
-    }
+                .claim(TYPE_CLAIM, jwtType.name());
 
-    public int getUserIdFromJwt(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(JWT_SECRET).build()
-                .parseClaimsJws(token)
-                .getBody();
+        // Embed the user's role in access tokens so requests can be authorized without looking up the user
+        if (JWT_STATELESS_AUTHORIZATION && jwtType == JwtTypes.ACCESS) {
+            jwtBuilder
+                    .claim(ROLE_CLAIM, user.getRole())
+                    .claim(AUTHORIZATION_VERSION_CLAIM, authorizationVersionStore.getVersion(user.getId()));
+        }
 
-        return Integer.parseInt(claims.getSubject().split(",")[0]);
+        return jwtBuilder.signWith(signingKey).compact();
     }
 
-    public Date getExpirationFromJwt(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(JWT_SECRET).build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getExpiration();
-    }
+    /**
+     * Checks if a verified access token can be used to authorize a request by itself without looking up the user.
+     * The token must carry a role that was embedded while the user's authorization version was still current.
+     *
+     * @param verifiedJwt The verified access token.
+     * @return Whether or not the token can be used for stateless authorization.
+     */
+    public boolean isStatelessAuthorizationCurrent(VerifiedJwt verifiedJwt) {
+        if (!JWT_STATELESS_AUTHORIZATION || verifiedJwt.getRole() == null || verifiedJwt.getAuthorizationVersion() == null) {
+            return false;
+        }
 
-    private Key getSigningKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(JWT_SECRET);
-        return Keys.hmacShaKeyFor(keyBytes);
+        return verifiedJwt.getAuthorizationVersion() == authorizationVersionStore.getVersion(verifiedJwt.getUserId());
     }
 
     public TokenDTO generateAccessTokenDTO(User user) {
@@ -100,18 +142,65 @@ public class JwtUtils {
         return new TokenDTO(generatedToken);
     }
 
-    public Cookie generateRefreshTokenCookie(User user) {
-        Cookie jwtCookie = new Cookie(JWT_COOKIE_NAME, generateJwt(user, JwtUtils.JwtTypes.REFRESH));
-        jwtCookie.setPath("/users/refreshAccessToken");
-        jwtCookie.setMaxAge((int) (JWT_REFRESH_TOKEN_EXPIRATION_TIME_MS / 1000));  // Convert milliseconds to seconds
-        jwtCookie.setHttpOnly(true);
-        jwtCookie.setSecure(true);
-
-        return jwtCookie;
+    public ResponseCookie generateRefreshTokenCookie(User user) {
+        return ResponseCookie.from(JWT_COOKIE_NAME, generateJwt(user, JwtUtils.JwtTypes.REFRESH))
+                .path("/users/refreshAccessToken")
+                .maxAge(JWT_REFRESH_TOKEN_EXPIRATION_TIME_MS / 1000)  // Convert milliseconds to seconds
+                .httpOnly(true)
+                .secure(true)
+                .build();
     }
 
     public enum JwtTypes {
         ACCESS,
         REFRESH
     }
+
+    /**
+     * An immutable view of the claims of a JWT that has been verified by {@link #verify(String)}.
+     */
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class VerifiedJwt {
+
+        private final int userId;
+        private final String email;
+        private final Instant expiration;
+
+        // Tokens issued before the type claim was added don't have a type
+        private final JwtTypes type;
+
+        // Only present on access tokens issued with stateless authorization enabled
+        private final String role;
+        private final Long authorizationVersion;
+
+        private static VerifiedJwt fromClaims(Claims claims) {
+            String[] subject = claims.getSubject().split(",", 2);
+            int userId = Integer.parseInt(subject[0]);
+            String email = subject.length > 1 ? subject[1] : null;
+            Instant expiration = claims.getExpiration().toInstant();
+
+            String typeClaim = claims.get(TYPE_CLAIM, String.class);
+            JwtTypes type = typeClaim != null ? JwtTypes.valueOf(typeClaim) : null;
+
+            String role = claims.get(ROLE_CLAIM, String.class);
+            Number authorizationVersion = claims.get(AUTHORIZATION_VERSION_CLAIM, Number.class);
+
+            return new VerifiedJwt(
+                    userId,
+                    email,
+                    expiration,
+                    type,
+                    role,
+                    authorizationVersion != null ? authorizationVersion.longValue() : null
+            );
+        }
+
+        /**
+         * Checks if the JWT can be used as the given type. Untyped tokens are accepted as any type.
+         */
+        public boolean isUsableAs(JwtTypes expectedType) {
+            return type == null || type == expectedType;
+        }
+    }
 }
@@ -0,0 +1,107 @@
+package org.hackbrooklyn.plaza.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hackbrooklyn.plaza.util.TeamFormationTopicIndex.Ranking;
+
+/**
+ * Stores team formation recommendations in memory. Only suitable when a single instance of the app is running since
+ * other instances won't see the updated recommendations.
+ */
+@Component
+@ConditionalOnProperty(name = "TEAM_FORMATION_RECOMMENDATION_STORE", havingValue = "local", matchIfMissing = true)
+public class LocalTeamFormationRecommendationStore implements TeamFormationRecommendationStore {
+
+    private final long ttlMs;
+    private final Map<Kind, Cache<Integer, Entry>> cachesByKind = new EnumMap<>(Kind.class);
+
+    @Autowired
+    public LocalTeamFormationRecommendationStore(@Value("${TEAM_FORMATION_RECOMMENDATIONS_TTL_MS:600000}") long ttlMs) {
+        this.ttlMs = ttlMs;
+        for (Kind kind : Kind.values()) {
+            cachesByKind.put(kind, CacheBuilder.newBuilder()
+                    .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                    .build());
+        }
+    }
+
+    @Override
+    public Ranking get(Kind kind, int ownerId) {
+        Entry entry = cachesByKind.get(kind).getIfPresent(ownerId);
+        return entry != null && entry.expiresAt > System.currentTimeMillis() ? entry.recommendations : null;
+    }
+
+    @Override
+    public void put(Kind kind, int ownerId, Ranking recommendations) {
+        cachesByKind.get(kind).put(ownerId, new Entry(recommendations, System.currentTimeMillis() + ttlMs));
+    }
+
+    @Override
+    public void updateIfPresent(Kind kind, int recommendedId, Map<Integer, Double> scoresByOwnerId, int maxSize) {
+        Map<Integer, Entry> entries = cachesByKind.get(kind).asMap();
+        scoresByOwnerId.forEach((ownerId, score) -> entries.computeIfPresent(ownerId, (key, entry) -> new Entry(
+                withScore(entry.recommendations, recommendedId, score, maxSize),
+                // Updating single recommendations doesn't postpone the next full computation
+                entry.expiresAt
+        )));
+    }
+
+    @Override
+    public void remove(Kind kind, int ownerId) {
+        cachesByKind.get(kind).invalidate(ownerId);
+    }
+
+    /**
+     * Copies a ranking with the score of one ID changed, keeping it sorted like TeamFormationTopicIndex does with ties
+     * going to the higher ID.
+     */
+    static Ranking withScore(Ranking ranking, int id, double score, int maxSize) {
+        int[] ids = ranking.getIds();
+        double[] scores = ranking.getScores();
+
+        int[] newIds = new int[Math.min(ids.length + 1, maxSize)];
+        double[] newScores = new double[newIds.length];
+        int size = 0;
+        boolean inserted = score <= 0;
+        for (int i = 0; i < ids.length && size < newIds.length; i++) {
+            if (ids[i] == id) continue;
+
+            if (!inserted && (score > scores[i] || (score == scores[i] && id > ids[i]))) {
+                newIds[size] = id;
+                newScores[size++] = score;
+                inserted = true;
+                if (size == newIds.length) break;
+            }
+
+            newIds[size] = ids[i];
+            newScores[size++] = scores[i];
+        }
+        if (!inserted && size < newIds.length) {
+            newIds[size] = id;
+            newScores[size++] = score;
+        }
+
+        return new Ranking(Arrays.copyOf(newIds, size), Arrays.copyOf(newScores, size));
+    }
+
+    private static class Entry {
+
+        private final Ranking recommendations;
+        private final long expiresAt;
+
+        private Entry(Ranking recommendations, long expiresAt) {
+            this.recommendations = recommendations;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package org.hackbrooklyn.plaza.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hackbrooklyn.plaza.repository.TeamFormationParticipantRepository;
+import org.hackbrooklyn.plaza.repository.TeamFormationTeamRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.hackbrooklyn.plaza.repository.TeamFormationTeamRepository.SearchableText;
+import static org.hackbrooklyn.plaza.repository.TopicOrSkillRepository.TopicOrSkillNameLink;
+import static org.hackbrooklyn.plaza.util.TeamFormationUtils.cleanTopicOrSkillName;
+
+/**
+ * Searches teams and participants with an in-memory trigram index of their searchable text.
+ * <p>
+ * Every three-character sequence in the indexed text points to the teams or participants whose text contains it. A
+ * query's candidates are the ones containing all of the query's trigrams, which are then checked for the whole query so
+ * that results are the same as a substring search. Queries shorter than a trigram check every indexed text instead.
+ * <p>
+ * Like the topic index, changes made on this instance are indexed immediately and the index is rebuilt from the
+ * database on a schedule to pick up changes made by other instances of the app.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "TEAM_FORMATION_SEARCH_ENGINE", havingValue = "local", matchIfMissing = true)
+public class LocalTeamFormationSearchEngine implements TeamFormationSearchEngine {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private final TeamFormationTeamRepository teamFormationTeamRepository;
+    private final TeamFormationParticipantRepository teamFormationParticipantRepository;
+
+    private final TrigramIndex teams = new TrigramIndex();
+    private final TrigramIndex participants = new TrigramIndex();
+
+    @Autowired
+    public LocalTeamFormationSearchEngine(TeamFormationTeamRepository teamFormationTeamRepository, TeamFormationParticipantRepository teamFormationParticipantRepository) {
+        this.teamFormationTeamRepository = teamFormationTeamRepository;
+        this.teamFormationParticipantRepository = teamFormationParticipantRepository;
+    }
+
+    @PostConstruct
+    @Scheduled(
+            initialDelayString = "${TEAM_FORMATION_INDEX_REBUILD_INTERVAL_MS:600000}",
+            fixedDelayString = "${TEAM_FORMATION_INDEX_REBUILD_INTERVAL_MS:600000}"
+    )
+    public void rebuild() {
+        teams.rebuild(
+                teamFormationTeamRepository::findAllSearchableText,
+                teamFormationTeamRepository::findAllTopicOrSkillNameLinks
+        );
+        participants.rebuild(
+                teamFormationParticipantRepository::findAllSearchableText,
+                teamFormationParticipantRepository::findAllTopicOrSkillNameLinks
+        );
+    }
+
+    @Override
+    public BitSet searchTeams(String searchQuery) {
+        return teams.search(searchQuery);
+    }
+
+    @Override
+    public BitSet searchParticipants(String searchQuery) {
+        return participants.search(searchQuery);
+    }
+
+    @Override
+    public void updateTeam(int teamId, String name, String objectiveStatement, Collection<String> topicOrSkillNames) {
+        teams.update(teamId, new Document(name, objectiveStatement, topicOrSkillNames));
+    }
+
+    @Override
+    public void removeTeam(int teamId) {
+        teams.update(teamId, null);
+    }
+
+    @Override
+    public void updateParticipant(int participantId, String name, String objectiveStatement, Collection<String> topicOrSkillNames) {
+        participants.update(participantId, new Document(name, objectiveStatement, topicOrSkillNames));
+    }
+
+    @Override
+    public void removeParticipant(int participantId) {
+        participants.update(participantId, null);
+    }
+
+    /**
+     * Gets the distinct trigrams in a piece of text, each packed into a long as three 16-bit characters.
+     */
+    private static Set<Long> getTrigrams(String text) {
+        Set<Long> trigrams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            trigrams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+
+        return trigrams;
+    }
+
+    /**
+     * The searchable text of a team or participant, normalized the same way as the queries it's matched against.
+     */
+    private static class Document {
+
+        // The name and objective statement, lowercased
+        private final String[] texts;
+        private final String[] topicOrSkillNames;
+
+        private Document(String name, String objectiveStatement, Collection<String> topicOrSkillNames) {
+            this.texts = Arrays.stream(new String[]{name, objectiveStatement})
+                    .filter(Objects::nonNull)
+                    .map(text -> text.toLowerCase(Locale.ROOT))
+                    .toArray(String[]::new);
+            this.topicOrSkillNames = topicOrSkillNames.toArray(new String[0]);
+        }
+
+        private Set<Long> getTextTrigrams() {
+            Set<Long> trigrams = new HashSet<>();
+            for (String text : texts) {
+                trigrams.addAll(getTrigrams(text));
+            }
+
+            return trigrams;
+        }
+
+        private Set<Long> getTopicOrSkillTrigrams() {
+            Set<Long> trigrams = new HashSet<>();
+            for (String topicOrSkillName : topicOrSkillNames) {
+                trigrams.addAll(getTrigrams(topicOrSkillName));
+            }
+
+            return trigrams;
+        }
+
+        private boolean textContains(String needle) {
+            for (String text : texts) {
+                if (text.contains(needle)) return true;
+            }
+
+            return false;
+        }
+
+        private boolean topicOrSkillNameContains(String needle) {
+            for (String topicOrSkillName : topicOrSkillNames) {
+                if (topicOrSkillName.contains(needle)) return true;
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * The index for one kind of owner, either teams or participants.
+     */
+    private static class TrigramIndex {
+
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private Map<Integer, Document> documentsByOwner = new HashMap<>();
+        private Map<Long, BitSet> ownerIdsByTextTrigram = new HashMap<>();
+        private Map<Long, BitSet> ownerIdsByTopicOrSkillTrigram = new HashMap<>();
+        private Map<String, BitSet> ownerIdsByTopicOrSkillName = new HashMap<>();
+
+        // Updates made while a rebuild is reading from the database, replayed onto the rebuilt index before it is used
+        private List<Consumer<TrigramIndex>> updatesDuringRebuild = null;
+
+        private BitSet search(String searchQuery) {
+            lock.readLock().lock();
+            try {
+                if (TeamFormationSearchEngine.isTopicOrSkillQuery(searchQuery)) {
+                    BitSet interestedOwnerIds = ownerIdsByTopicOrSkillName.get(TeamFormationSearchEngine.getSearchedTopicOrSkill(searchQuery));
+                    return interestedOwnerIds != null ? (BitSet) interestedOwnerIds.clone() : new BitSet();
+                }
+
+                // Topics and skills are stored cleaned, so they're matched against the cleaned query
+                String textNeedle = searchQuery.toLowerCase(Locale.ROOT);
+                String topicOrSkillNeedle = cleanTopicOrSkillName(searchQuery);
+
+                BitSet foundOwnerIds = new BitSet();
+                BitSet textCandidates = findCandidates(textNeedle, ownerIdsByTextTrigram);
+                for (int ownerId = textCandidates.nextSetBit(0); ownerId >= 0; ownerId = textCandidates.nextSetBit(ownerId + 1)) {
+                    if (documentsByOwner.get(ownerId).textContains(textNeedle)) {
+                        foundOwnerIds.set(ownerId);
+                    }
+                }
+
+                BitSet topicOrSkillCandidates = findCandidates(topicOrSkillNeedle, ownerIdsByTopicOrSkillTrigram);
+                topicOrSkillCandidates.andNot(foundOwnerIds);
+                for (int ownerId = topicOrSkillCandidates.nextSetBit(0); ownerId >= 0; ownerId = topicOrSkillCandidates.nextSetBit(ownerId + 1)) {
+                    if (documentsByOwner.get(ownerId).topicOrSkillNameContains(topicOrSkillNeedle)) {
+                        foundOwnerIds.set(ownerId);
+                    }
+                }
+
+                return foundOwnerIds;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Finds the owners whose text contains every trigram in the needle, or every owner if the needle is too short
+         * to have any trigrams.
+         */
+        private BitSet findCandidates(String needle, Map<Long, BitSet> ownerIdsByTrigram) {
+            BitSet candidates = null;
+            for (long trigram : getTrigrams(needle)) {
+                BitSet ownerIds = ownerIdsByTrigram.get(trigram);
+                if (ownerIds == null) {
+                    return new BitSet();
+                }
+
+                if (candidates == null) {
+                    candidates = (BitSet) ownerIds.clone();
+                } else {
+                    candidates.and(ownerIds);
+                }
+
+                if (candidates.isEmpty()) {
+                    return candidates;
+                }
+            }
+
+            if (candidates == null) {
+                candidates = new BitSet();
+                documentsByOwner.keySet().forEach(candidates::set);
+            }
+
+            return candidates;
+        }
+
+        private void update(int ownerId, Document document) {
+            Consumer<TrigramIndex> update = index -> index.apply(ownerId, document);
+
+            lock.writeLock().lock();
+            try {
+                update.accept(this);
+                if (updatesDuringRebuild != null) {
+                    updatesDuringRebuild.add(update);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void apply(int ownerId, Document newDocument) {
+            Document oldDocument = newDocument != null ? documentsByOwner.put(ownerId, newDocument) : documentsByOwner.remove(ownerId);
+            if (oldDocument != null) {
+                removePostings(ownerId, oldDocument.getTextTrigrams(), ownerIdsByTextTrigram);
+                removePostings(ownerId, oldDocument.getTopicOrSkillTrigrams(), ownerIdsByTopicOrSkillTrigram);
+                removePostings(ownerId, Arrays.asList(oldDocument.topicOrSkillNames), ownerIdsByTopicOrSkillName);
+            }
+
+            if (newDocument != null) {
+                addPostings(ownerId, newDocument.getTextTrigrams(), ownerIdsByTextTrigram);
+                addPostings(ownerId, newDocument.getTopicOrSkillTrigrams(), ownerIdsByTopicOrSkillTrigram);
+                addPostings(ownerId, Arrays.asList(newDocument.topicOrSkillNames), ownerIdsByTopicOrSkillName);
+            }
+        }
+
+        private static <K> void addPostings(int ownerId, Collection<K> keys, Map<K, BitSet> ownerIdsByKey) {
+            for (K key : keys) {
+                ownerIdsByKey.computeIfAbsent(key, k -> new BitSet()).set(ownerId);
+            }
+        }
+
+        private static <K> void removePostings(int ownerId, Collection<K> keys, Map<K, BitSet> ownerIdsByKey) {
+            for (K key : keys) {
+                BitSet ownerIds = ownerIdsByKey.get(key);
+                if (ownerIds == null) continue;
+
+                ownerIds.clear(ownerId);
+                if (ownerIds.isEmpty()) {
+                    ownerIdsByKey.remove(key);
+                }
+            }
+        }
+
+        private void rebuild(Supplier<List<SearchableText>> textSource, Supplier<List<TopicOrSkillNameLink>> topicOrSkillNameSource) {
+            lock.writeLock().lock();
+            try {
+                updatesDuringRebuild = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            TrigramIndex rebuilt = new TrigramIndex();
+            try {
+                Map<Integer, List<String>> topicOrSkillNamesByOwner = new HashMap<>();
+                for (TopicOrSkillNameLink link : topicOrSkillNameSource.get()) {
+                    topicOrSkillNamesByOwner.computeIfAbsent(link.getOwnerId(), key -> new ArrayList<>()).add(link.getTopicOrSkillName());
+                }
+
+                for (SearchableText text : textSource.get()) {
+                    List<String> topicOrSkillNames = topicOrSkillNamesByOwner.getOrDefault(text.getId(), Collections.emptyList());
+                    rebuilt.apply(text.getId(), new Document(text.getName(), text.getObjectiveStatement(), topicOrSkillNames));
+                }
+            } catch (RuntimeException e) {
+                log.error("Unable to rebuild the team formation search index, keeping the current index", e);
+
+                lock.writeLock().lock();
+                try {
+                    updatesDuringRebuild = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                return;
+            }
+
+            lock.writeLock().lock();
+            try {
+                updatesDuringRebuild.forEach(update -> update.accept(rebuilt));
+                updatesDuringRebuild = null;
+
+                documentsByOwner = rebuilt.documentsByOwner;
+                ownerIdsByTextTrigram = rebuilt.ownerIdsByTextTrigram;
+                ownerIdsByTopicOrSkillTrigram = rebuilt.ownerIdsByTopicOrSkillTrigram;
+                ownerIdsByTopicOrSkillName = rebuilt.ownerIdsByTopicOrSkillName;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package org.hackbrooklyn.plaza.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hackbrooklyn.plaza.dto.NotificationContentDTO;
+import org.hackbrooklyn.plaza.model.NotificationOutboxEntry;
+import org.hackbrooklyn.plaza.model.NotificationOutboxEntry.Status;
+import org.hackbrooklyn.plaza.model.User;
+import org.hackbrooklyn.plaza.repository.NotificationOutboxRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sends push notifications through the notification_outbox table so that they survive restarts and are only sent if
+ * the change they notify about is committed.
+ * <p>
+ * Notifications are saved as outbox entries in the caller's transaction. Every instance of the app polls the outbox,
+ * claims a batch of due entries for a limited time, and sends them on the push delivery threads. Sent entries are
+ * deleted, while entries that couldn't be sent because of a network error or a throttled or unavailable push service
+ * are retried with exponential backoff until they run out of attempts and are marked as failed. Entries claimed by an
+ * instance that stops before finishing them are picked up again once their claim expires.
+ * <p>
+ * Notifications to every subscriber are saved as a single entry that is expanded into an entry per subscribed user
+ * when it's processed, so posting an announcement doesn't write a row per user in the request's transaction.
+ */
+@Slf4j
+@Component
+public class NotificationOutbox {
+
+    private final NotificationOutboxRepository notificationOutboxRepository;
+    private final PushNotificationUtils pushNotificationUtils;
+    private final PushDeliveryExecutor pushDeliveryExecutor;
+    private final WebPushTransport webPushTransport;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long leaseMs;
+    private final int maxAttempts;
+    private final long retryBaseDelayMs;
+    private final long retryMaxDelayMs;
+    private final Counter sentCounter;
+    private final Counter retriedCounter;
+    private final Counter failedCounter;
+
+    @Autowired
+    public NotificationOutbox(
+            NotificationOutboxRepository notificationOutboxRepository,
+            PushNotificationUtils pushNotificationUtils,
+            PushDeliveryExecutor pushDeliveryExecutor,
+            WebPushTransport webPushTransport,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${NOTIFICATION_OUTBOX_BATCH_SIZE:100}") int batchSize,
+            @Value("${NOTIFICATION_OUTBOX_LEASE_MS:120000}") long leaseMs,
+            @Value("${NOTIFICATION_OUTBOX_MAX_ATTEMPTS:8}") int maxAttempts,
+            @Value("${NOTIFICATION_OUTBOX_RETRY_BASE_DELAY_MS:5000}") long retryBaseDelayMs,
+            @Value("${NOTIFICATION_OUTBOX_RETRY_MAX_DELAY_MS:600000}") long retryMaxDelayMs
+    ) {
+        this.notificationOutboxRepository = notificationOutboxRepository;
+        this.pushNotificationUtils = pushNotificationUtils;
+        this.pushDeliveryExecutor = pushDeliveryExecutor;
+        this.webPushTransport = webPushTransport;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.leaseMs = leaseMs;
+        this.maxAttempts = maxAttempts;
+        this.retryBaseDelayMs = retryBaseDelayMs;
+        this.retryMaxDelayMs = retryMaxDelayMs;
+
+        this.sentCounter = buildEntryCounter(meterRegistry, "sent");
+        this.retriedCounter = buildEntryCounter(meterRegistry, "retried");
+        this.failedCounter = buildEntryCounter(meterRegistry, "failed");
+        Gauge.builder("notification.outbox.failed", notificationOutboxRepository, repository -> repository.countByStatus(Status.FAILED))
+                .description("Number of outbox entries that ran out of attempts")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Saves a push notification to a user to be sent once the current transaction commits.
+     *
+     * @param user                The user to send the notification to.
+     * @param notificationContent The notification's content to send.
+     */
+    public void enqueueToUser(User user, NotificationContentDTO notificationContent) {
+        enqueueToUsers(Collections.singletonList(user), notificationContent);
+    }
+
+    /**
+     * Saves a push notification to each user in a collection to be sent once the current transaction commits.
+     *
+     * @param users               The collection of users to send the notification to.
+     * @param notificationContent The notification's content to send.
+     */
+    public void enqueueToUsers(Collection<User> users, NotificationContentDTO notificationContent) {
+        if (users.isEmpty()) return;
+
+        String payload = serialize(notificationContent);
+        if (payload == null) return;
+
+        LocalDateTime now = LocalDateTime.now();
+        List<NotificationOutboxEntry> entries = new ArrayList<>(users.size());
+        for (User user : users) {
+            entries.add(buildEntry(user.getId(), payload, now));
+        }
+
+        notificationOutboxRepository.saveAll(entries);
+    }
+
+    /**
+     * Saves a push notification to every subscribed user to be sent once the current transaction commits.
+     *
+     * @param notificationContent The notification's content to send.
+     */
+    public void enqueueToAllSubscribers(NotificationContentDTO notificationContent) {
+        String payload = serialize(notificationContent);
+        if (payload == null) return;
+
+        notificationOutboxRepository.save(buildEntry(null, payload, LocalDateTime.now()));
+    }
+
+    /**
+     * Claims the outbox entries that are due and sends them.
+     */
+    @Scheduled(
+            initialDelayString = "${NOTIFICATION_OUTBOX_POLL_INTERVAL_MS:1000}",
+            fixedDelayString = "${NOTIFICATION_OUTBOX_POLL_INTERVAL_MS:1000}"
+    )
+    public void processOutbox() {
+        // Only claim as many entries as the push delivery queue has room for, so that queueing them doesn't wait on the
+        // scheduler thread that the app's other scheduled tasks also run on. Entries also wait while the push services
+        // have a full backlog, rather than being claimed only to be rejected and retried.
+        int claimLimit = Math.min(batchSize, Math.min(pushDeliveryExecutor.getRemainingCapacity(), webPushTransport.getRemainingCapacity()));
+        if (claimLimit == 0) return;
+
+        List<NotificationOutboxEntry> claimedEntries;
+        String claimToken = UUID.randomUUID().toString();
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            List<Integer> dueEntryIds = notificationOutboxRepository.findClaimableIds(Status.PENDING, now, PageRequest.of(0, claimLimit));
+            if (dueEntryIds.isEmpty()) return;
+
+            // Another instance may have claimed some of the entries in the meantime, so only process the ones this
+            // instance actually claimed
+            int claimedCount = notificationOutboxRepository.claim(claimToken, now.plus(leaseMs, ChronoUnit.MILLIS), dueEntryIds, Status.PENDING, now);
+            if (claimedCount == 0) return;
+
+            claimedEntries = notificationOutboxRepository.findAllByClaimToken(claimToken);
+        } catch (DataAccessException e) {
+            log.warn("Unable to claim notification outbox entries", e);
+            return;
+        }
+
+        for (NotificationOutboxEntry entry : claimedEntries) {
+            if (entry.getRecipientUserId() == null) {
+                expandToEverySubscribedUser(entry, claimToken);
+            } else if (!pushDeliveryExecutor.execute(() -> send(entry, claimToken))) {
+                // The queue filled up after the entries were claimed, so let them be claimed again on a later run
+                unclaim(entry, claimToken);
+            }
+        }
+    }
+
+    private void expandToEverySubscribedUser(NotificationOutboxEntry entry, String claimToken) {
+        try {
+            transactionTemplate.execute(status -> {
+                notificationOutboxRepository.insertForEverySubscribedUser(entry.getPayload(), LocalDateTime.now());
+
+                // Don't expand the entry twice if its claim expired and another instance already expanded it
+                if (notificationOutboxRepository.deleteClaimed(entry.getId(), claimToken) == 0) {
+                    status.setRollbackOnly();
+                }
+
+                return null;
+            });
+        } catch (DataAccessException e) {
+            log.warn(String.format("Unable to expand notification outbox entry ID: %s", entry.getId()), e);
+            retryLater(entry, claimToken);
+        }
+    }
+
+    private void send(NotificationOutboxEntry entry, String claimToken) {
+        byte[] payload = entry.getPayload().getBytes(StandardCharsets.UTF_8);
+
+        List<CompletableFuture<PushDeliveryOutcome>> deliveries;
+        try {
+            deliveries = pushNotificationUtils.sendPushNotificationToUser(entry.getRecipientUserId(), payload);
+        } catch (RuntimeException e) {
+            log.warn(String.format("Unable to send notification outbox entry ID: %s", entry.getId()), e);
+            retryLater(entry, claimToken);
+            return;
+        }
+
+        // Finish the entry off the push service's response threads since it goes to the database
+        CompletableFuture.allOf(deliveries.toArray(new CompletableFuture[0])).whenCompleteAsync((result, e) -> {
+            boolean retryable = e != null || deliveries.stream()
+                    .anyMatch(delivery -> delivery.join() == PushDeliveryOutcome.RETRYABLE);
+
+            if (retryable) {
+                retryLater(entry, claimToken);
+                return;
+            }
+
+            try {
+                notificationOutboxRepository.deleteClaimed(entry.getId(), claimToken);
+                sentCounter.increment();
+            } catch (DataAccessException dataAccessException) {
+                // The entry is sent again once its claim expires, replacing the notification since it has the same tag
+                log.warn(String.format("Unable to remove sent notification outbox entry ID: %s", entry.getId()), dataAccessException);
+            }
+        });
+    }
+
+    /**
+     * Releases a claimed entry to be retried after an exponential backoff with jitter, or marks it as failed if it has
+     * run out of attempts.
+     */
+    private void retryLater(NotificationOutboxEntry entry, String claimToken) {
+        // The claim already counted this attempt
+        int attempts = entry.getAttempts();
+
+        try {
+            if (attempts >= maxAttempts) {
+                log.warn(String.format("Notification outbox entry ID %s failed after %s attempts.", entry.getId(), attempts));
+                notificationOutboxRepository.releaseClaimed(entry.getId(), claimToken, Status.FAILED, LocalDateTime.now());
+                failedCounter.increment();
+                return;
+            }
+
+            long backoffMs = Math.min(retryMaxDelayMs, retryBaseDelayMs << Math.min(attempts - 1, 30));
+            long delayMs = backoffMs / 2 + ThreadLocalRandom.current().nextLong(backoffMs / 2 + 1);
+            notificationOutboxRepository.releaseClaimed(entry.getId(), claimToken, Status.PENDING, LocalDateTime.now().plus(delayMs, ChronoUnit.MILLIS));
+            retriedCounter.increment();
+        } catch (DataAccessException e) {
+            // The entry is retried once its claim expires
+            log.warn(String.format("Unable to release notification outbox entry ID: %s", entry.getId()), e);
+        }
+    }
+
+    private void unclaim(NotificationOutboxEntry entry, String claimToken) {
+        try {
+            notificationOutboxRepository.unclaim(entry.getId(), claimToken);
+        } catch (DataAccessException e) {
+            // The entry is retried once its claim expires
+            log.warn(String.format("Unable to unclaim notification outbox entry ID: %s", entry.getId()), e);
+        }
+    }
+
+    private static NotificationOutboxEntry buildEntry(Integer recipientUserId, String payload, LocalDateTime now) {
+        NotificationOutboxEntry entry = new NotificationOutboxEntry();
+        entry.setRecipientUserId(recipientUserId);
+        entry.setPayload(payload);
+        entry.setStatus(Status.PENDING);
+        entry.setNextAttemptAt(now);
+        entry.setCreatedAt(now);
+
+        return entry;
+    }
+
+    private static Counter buildEntryCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("notification.outbox.entries")
+                .description("Notification outbox entries by how processing them turned out")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private String serialize(NotificationContentDTO notificationContent) {
+        try {
+            return objectMapper.writeValueAsString(notificationContent);
+        } catch (JsonProcessingException e) {
+            log.warn("Could not serialize simple push notification.", e);
+            return null;
+        }
+    }
+}
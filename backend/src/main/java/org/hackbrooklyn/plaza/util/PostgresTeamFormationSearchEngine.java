@@ -0,0 +1,111 @@
+package org.hackbrooklyn.plaza.util;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Locale;
+
+import static org.hackbrooklyn.plaza.util.TeamFormationUtils.cleanTopicOrSkillName;
+
+/**
+ * Searches teams and participants directly in PostgreSQL, using pg_trgm indexes so that substring searches don't scan
+ * every row. Since the database is the index, there is nothing to update when teams and participants change.
+ * <p>
+ * Requires the pg_trgm extension and the following indexes:
+ * <pre>
+ * CREATE EXTENSION IF NOT EXISTS pg_trgm;
+ * CREATE INDEX team_formation_teams_name_trgm_idx ON team_formation_teams USING gin (lower(name) gin_trgm_ops);
+ * CREATE INDEX team_formation_teams_objective_statement_trgm_idx ON team_formation_teams USING gin (lower(objective_statement) gin_trgm_ops);
+ * CREATE INDEX team_formation_participants_objective_statement_trgm_idx ON team_formation_participants USING gin (lower(objective_statement) gin_trgm_ops);
+ * CREATE INDEX users_full_name_trgm_idx ON users USING gin (lower(first_name || ' ' || last_name) gin_trgm_ops);
+ * CREATE INDEX topics_and_skills_name_trgm_idx ON topics_and_skills USING gin (name gin_trgm_ops);
+ * </pre>
+ */
+@Component
+@ConditionalOnProperty(name = "TEAM_FORMATION_SEARCH_ENGINE", havingValue = "postgres")
+public class PostgresTeamFormationSearchEngine implements TeamFormationSearchEngine {
+
+    private static final String TEAM_TOPIC_OR_SKILL_QUERY =
+            "SELECT tts.team_id FROM team_formation_team_topics_and_skills tts " +
+                    "JOIN topics_and_skills tos ON tos.id = tts.topic_or_skill_id WHERE tos.name = :topicOrSkillName";
+
+    private static final String TEAM_TEXT_QUERY =
+            "SELECT t.id FROM team_formation_teams t " +
+                    "WHERE lower(t.name) LIKE :textPattern ESCAPE '\\' OR lower(t.objective_statement) LIKE :textPattern ESCAPE '\\' " +
+                    "UNION SELECT tts.team_id FROM team_formation_team_topics_and_skills tts " +
+                    "JOIN topics_and_skills tos ON tos.id = tts.topic_or_skill_id WHERE tos.name LIKE :topicOrSkillPattern ESCAPE '\\'";
+
+    private static final String PARTICIPANT_TOPIC_OR_SKILL_QUERY =
+            "SELECT pts.user_id FROM team_formation_participant_topics_and_skills pts " +
+                    "JOIN topics_and_skills tos ON tos.id = pts.topic_or_skill_id WHERE tos.name = :topicOrSkillName";
+
+    private static final String PARTICIPANT_TEXT_QUERY =
+            "SELECT p.id FROM team_formation_participants p JOIN users u ON u.id = p.user_id " +
+                    "WHERE lower(u.first_name || ' ' || u.last_name) LIKE :textPattern ESCAPE '\\' OR lower(p.objective_statement) LIKE :textPattern ESCAPE '\\' " +
+                    "UNION SELECT pts.user_id FROM team_formation_participant_topics_and_skills pts " +
+                    "JOIN topics_and_skills tos ON tos.id = pts.topic_or_skill_id WHERE tos.name LIKE :topicOrSkillPattern ESCAPE '\\'";
+
+    private final EntityManager entityManager;
+
+    @Autowired
+    public PostgresTeamFormationSearchEngine(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public BitSet searchTeams(String searchQuery) {
+        return search(searchQuery, TEAM_TOPIC_OR_SKILL_QUERY, TEAM_TEXT_QUERY);
+    }
+
+    @Override
+    public BitSet searchParticipants(String searchQuery) {
+        return search(searchQuery, PARTICIPANT_TOPIC_OR_SKILL_QUERY, PARTICIPANT_TEXT_QUERY);
+    }
+
+    @Override
+    public void updateTeam(int teamId, String name, String objectiveStatement, Collection<String> topicOrSkillNames) {
+    }
+
+    @Override
+    public void removeTeam(int teamId) {
+    }
+
+    @Override
+    public void updateParticipant(int participantId, String name, String objectiveStatement, Collection<String> topicOrSkillNames) {
+    }
+
+    @Override
+    public void removeParticipant(int participantId) {
+    }
+
+    private BitSet search(String searchQuery, String topicOrSkillQuery, String textQuery) {
+        Query query;
+        if (TeamFormationSearchEngine.isTopicOrSkillQuery(searchQuery)) {
+            query = entityManager.createNativeQuery(topicOrSkillQuery)
+                    .setParameter("topicOrSkillName", TeamFormationSearchEngine.getSearchedTopicOrSkill(searchQuery));
+        } else {
+            query = entityManager.createNativeQuery(textQuery)
+                    .setParameter("textPattern", toContainsPattern(searchQuery.toLowerCase(Locale.ROOT)))
+                    .setParameter("topicOrSkillPattern", toContainsPattern(cleanTopicOrSkillName(searchQuery)));
+        }
+
+        BitSet foundIds = new BitSet();
+        for (Object id : query.getResultList()) {
+            foundIds.set(((Number) id).intValue());
+        }
+
+        return foundIds;
+    }
+
+    /**
+     * Builds a LIKE pattern that matches the text anywhere, with the text's wildcard characters matched literally.
+     */
+    private static String toContainsPattern(String text) {
+        return "%" + text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+}
@@ -0,0 +1,133 @@
+package org.hackbrooklyn.plaza.util;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers push notifications on a dedicated, bounded pool of threads so that the number of threads sending
+ * notifications doesn't grow with the number of recipients. When the pool's queue is full, callers wait for space
+ * instead of queueing without bound, and deliveries that still can't be queued in time are rejected so that the caller
+ * can try them again later.
+ * <p>
+ * Deliveries only use a thread to look up subscriptions and hand the notifications to {@link WebPushTransport}, which
+ * sends them without blocking. On shutdown, queued deliveries are given some time to finish before the pool is stopped.
+ */
+@Slf4j
+@Component
+public class PushDeliveryExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final long shutdownTimeoutMs;
+    private final Timer queueWaitTimer;
+    private final Timer lookupTimer;
+
+    @Autowired
+    public PushDeliveryExecutor(
+            MeterRegistry meterRegistry,
+            @Value("${PUSH_DELIVERY_THREADS:4}") int threads,
+            @Value("${PUSH_DELIVERY_QUEUE_CAPACITY:1000}") int queueCapacity,
+            @Value("${PUSH_DELIVERY_ENQUEUE_TIMEOUT_MS:5000}") long enqueueTimeoutMs,
+            @Value("${PUSH_DELIVERY_SHUTDOWN_TIMEOUT_MS:30000}") long shutdownTimeoutMs
+    ) {
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "push-delivery-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, pool) -> waitForQueueSpace(runnable, pool, enqueueTimeoutMs)
+        );
+
+        this.queueWaitTimer = Timer.builder("push.delivery.queue.wait")
+                .description("Time spent waiting for a push delivery thread")
+                .register(meterRegistry);
+        this.lookupTimer = Timer.builder("push.delivery.duration")
+                .description("Time spent delivering push notifications")
+                .tag("stage", "lookup")
+                .register(meterRegistry);
+        Gauge.builder("push.delivery.queue.size", executor, pool -> pool.getQueue().size())
+                .description("Number of push deliveries waiting for a thread")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues a delivery, waiting for space in the queue if it's full.
+     *
+     * @param delivery The delivery to run on a push delivery thread.
+     * @return Whether the delivery was queued, or false if the queue stayed full and the delivery was rejected.
+     */
+    public boolean execute(Runnable delivery) {
+        long queuedAtNanos = System.nanoTime();
+
+        try {
+            executor.execute(() -> {
+                queueWaitTimer.record(System.nanoTime() - queuedAtNanos, TimeUnit.NANOSECONDS);
+                try {
+                    delivery.run();
+                } catch (RuntimeException e) {
+                    log.warn("Could not deliver push notification", e);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.warn("Rejected push delivery since {} deliveries are already queued", executor.getQueue().size());
+            return false;
+        }
+    }
+
+    /**
+     * The number of deliveries that can be queued without waiting for space in the queue.
+     */
+    public int getRemainingCapacity() {
+        return executor.getQueue().remainingCapacity();
+    }
+
+    /**
+     * The timer for looking up the subscriptions to deliver a push notification to.
+     */
+    public Timer getLookupTimer() {
+        return lookupTimer;
+    }
+
+    private static void waitForQueueSpace(Runnable runnable, ThreadPoolExecutor pool, long enqueueTimeoutMs) {
+        if (pool.isShutdown()) {
+            throw new RejectedExecutionException("Push delivery executor has been shut down");
+        }
+
+        try {
+            if (!pool.getQueue().offer(runnable, enqueueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new RejectedExecutionException("Timed out waiting for space in the push delivery queue");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutDown() throws InterruptedException {
+        executor.shutdown();
+        if (executor.awaitTermination(shutdownTimeoutMs, TimeUnit.MILLISECONDS)) return;
+
+        List<Runnable> droppedDeliveries = executor.shutdownNow();
+        log.warn("Stopped push delivery with {} deliveries still queued", droppedDeliveries.size());
+    }
+}
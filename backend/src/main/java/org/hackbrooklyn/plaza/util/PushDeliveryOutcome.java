@@ -0,0 +1,40 @@
+package org.hackbrooklyn.plaza.util;
+
+/**
+ * How a push notification delivery to a subscription turned out.
+ */
+public enum PushDeliveryOutcome {
+
+    /**
+     * The push service accepted the notification.
+     */
+    DELIVERED,
+
+    /**
+     * The push service was unavailable, throttled the notification, or couldn't be reached. The subscription is kept.
+     */
+    RETRYABLE,
+
+    /**
+     * The push service rejected the notification for a reason that isn't the subscription's fault, like the payload
+     * being too large or the VAPID keys being misconfigured. The subscription is kept.
+     */
+    REJECTED,
+
+    /**
+     * The subscription has expired, was unsubscribed, or has keys that can't be used, so it will never accept another
+     * notification and can be removed.
+     */
+    GONE;
+
+    /**
+     * Classifies a push service's response by its HTTP status code.
+     */
+    public static PushDeliveryOutcome fromStatusCode(int statusCode) {
+        if (statusCode >= 200 && statusCode < 300) return DELIVERED;
+        if (statusCode == 404 || statusCode == 410) return GONE;
+        if (statusCode == 408 || statusCode == 429 || statusCode >= 500) return RETRYABLE;
+
+        return REJECTED;
+    }
+}
@@ -1,143 +1,95 @@
 package org.hackbrooklyn.plaza.util;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import nl.martijndwars.webpush.Notification;
-import nl.martijndwars.webpush.PushService;
-import org.hackbrooklyn.plaza.dto.NotificationContentDTO;
-import org.hackbrooklyn.plaza.exception.UserNotFoundException;
 import org.hackbrooklyn.plaza.model.PushNotificationSubscription;
-import org.hackbrooklyn.plaza.model.User;
 import org.hackbrooklyn.plaza.repository.PushNotificationSubscriptionRepository;
-import org.jose4j.lang.JoseException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.io.IOException;
 import java.security.GeneralSecurityException;
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Component
 public class PushNotificationUtils {
 
     private final PushNotificationSubscriptionRepository pushNotificationSubscriptionRepository;
-    private final PushService pushService;
-    private final ObjectMapper objectMapper;
+    private final WebPushTransport webPushTransport;
+    private final PushDeliveryExecutor pushDeliveryExecutor;
+    private final PushSubscriptionKeyCache pushSubscriptionKeyCache;
+    private final PushSubscriptionPruner pushSubscriptionPruner;
 
     @Autowired
-    public PushNotificationUtils(PushNotificationSubscriptionRepository pushNotificationSubscriptionRepository, PushService pushService, ObjectMapper objectMapper) {
+    public PushNotificationUtils(PushNotificationSubscriptionRepository pushNotificationSubscriptionRepository, WebPushTransport webPushTransport, PushDeliveryExecutor pushDeliveryExecutor, PushSubscriptionKeyCache pushSubscriptionKeyCache, PushSubscriptionPruner pushSubscriptionPruner) {
         this.pushNotificationSubscriptionRepository = pushNotificationSubscriptionRepository;
-        this.pushService = pushService;
-        this.objectMapper = objectMapper;
+        this.webPushTransport = webPushTransport;
+        this.pushDeliveryExecutor = pushDeliveryExecutor;
+        this.pushSubscriptionKeyCache = pushSubscriptionKeyCache;
+        this.pushSubscriptionPruner = pushSubscriptionPruner;
     }
 
     /**
-     * Sends a push notification to a specific subscription.
+     * Sends a push notification to a specific subscription without waiting for the push service to respond. Gone
+     * subscriptions are removed once the delivery completes.
      *
      * @param subscription The subscription to send the notification to.
      * @param payload      The notification's payload in bytes.
+     * @return A future that completes with how the delivery turned out.
      */
-    public void sendPushNotificationToSubscription(PushNotificationSubscription subscription, byte[] payload) throws GeneralSecurityException, JoseException, IOException, ExecutionException, InterruptedException {
-        Notification notification = new Notification(
-                subscription.getEndpoint(),
-                subscription.getUserPublicKey(),
-                subscription.getAuthAsBytes(),
-                payload
-        );
-
-        pushService.send(notification);
-    }
+    public CompletableFuture<PushDeliveryOutcome> sendPushNotificationToSubscription(PushNotificationSubscription subscription, byte[] payload) {
+        Notification notification;
+        try {
+            PushSubscriptionKeyCache.DecodedKeys keys = pushSubscriptionKeyCache.get(subscription);
+            notification = new Notification(
+                    subscription.getEndpoint(),
+                    keys.getUserPublicKey(),
+                    keys.getAuth(),
+                    payload
+            );
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            // The subscription's keys can't be decoded, so nothing can ever be sent to it
+            log.warn(String.format("Could not decode the keys of push notification subscription ID: %s.", subscription.getId()), e);
+            pushSubscriptionPruner.recordOutcome(subscription.getId(), PushDeliveryOutcome.GONE);
+            return CompletableFuture.completedFuture(PushDeliveryOutcome.GONE);
+        }
 
-    /**
-     * Sends a push notification to all of the subscriptions associated with a user.
-     *
-     * @param user    The user to send the notification to.
-     * @param payload The notification's payload in bytes.
-     */
-    public void sendPushNotificationToUser(User user, byte[] payload) throws GeneralSecurityException, JoseException, IOException, ExecutionException, InterruptedException {
-        List<PushNotificationSubscription> subscriptions = pushNotificationSubscriptionRepository
-                .findAllBySubscribedUser(user)
-                .orElseThrow(UserNotFoundException::new);
+        return webPushTransport.send(notification).handle((statusCode, e) -> {
+            PushDeliveryOutcome outcome;
+            if (e != null) {
+                log.warn(String.format("Could not send push notification for subscription ID: %s.", subscription.getId()), e);
+                outcome = PushDeliveryOutcome.RETRYABLE;
+            } else {
+                outcome = PushDeliveryOutcome.fromStatusCode(statusCode);
+                if (outcome == PushDeliveryOutcome.RETRYABLE || outcome == PushDeliveryOutcome.REJECTED) {
+                    log.warn(String.format("Push notification for subscription ID %s failed with status %s.", subscription.getId(), statusCode));
+                }
+            }
 
-        for (PushNotificationSubscription subscription : subscriptions) {
-            sendPushNotificationToSubscription(subscription, payload);
-        }
+            pushSubscriptionPruner.recordOutcome(subscription.getId(), outcome);
+            return outcome;
+        });
     }
 
     /**
-     * Sends a push notification to all saved subscriptions in the database.
+     * Sends a push notification to all of the subscriptions associated with a user.
      *
+     * @param userId  The ID of the user to send the notification to.
      * @param payload The notification's payload in bytes.
+     * @return A future for each of the user's subscriptions that completes with how the delivery turned out.
      */
-    public void sendPushNotificationToAllSubscribers(byte[] payload) {
-        List<PushNotificationSubscription> subscriptions = pushNotificationSubscriptionRepository.findAll();
+    public List<CompletableFuture<PushDeliveryOutcome>> sendPushNotificationToUser(int userId, byte[] payload) {
+        List<PushNotificationSubscription> subscriptions = pushDeliveryExecutor.getLookupTimer().record(() ->
+                pushNotificationSubscriptionRepository.findAllBySubscribedUserId(userId)
+        );
 
+        List<CompletableFuture<PushDeliveryOutcome>> deliveries = new ArrayList<>(subscriptions.size());
         for (PushNotificationSubscription subscription : subscriptions) {
-            try {
-                sendPushNotificationToSubscription(subscription, payload);
-            } catch (Exception e) {
-                log.warn(String.format("Could not send push notification for subscription ID: %s.",
-                        subscription.getId()));
-                e.printStackTrace();
-            }
+            deliveries.add(sendPushNotificationToSubscription(subscription, payload));
         }
-    }
 
-    /**
-     * A simplified way to send a push notification to all subscribers in a separate thread.
-     *
-     * @param notificationContent The notification's content to send.
-     */
-    public void sendBackgroundSimplePushNotificationToAllSubscribers(NotificationContentDTO notificationContent) {
-        new Thread(() -> {
-            try {
-                sendPushNotificationToAllSubscribers(objectMapper.writeValueAsBytes(notificationContent));
-            } catch (Exception e) {
-                log.warn("Could not send simple push notification to all subscribers.");
-                e.printStackTrace();
-            }
-        }).start();
-    }
-
-    /**
-     * A simplified way to send a push notification to a specific user in a separate thread.
-     *
-     * @param user THe user to send the notification to.
-     * @param notificationContent The notification's content to send.
-     */
-    public void sendBackgroundSimplePushNotificationToUser(User user, NotificationContentDTO notificationContent) {
-        new Thread(() -> {
-            try {
-                sendPushNotificationToUser(user, objectMapper.writeValueAsBytes(notificationContent));
-            } catch (Exception e) {
-                log.warn(String.format("Could not send simple push notification to user with ID: %s", user.getId()));
-                e.printStackTrace();
-            }
-        }).start();
-    }
-
-    /**
-     * A simplified way to send a push notification to a collection of users in a separate thread.
-     *
-     * @param users The collection of users to send the notification to.
-     * @param notificationContent The notification's content to send.
-     */
-    public void sendBackgroundSimplePushNotificationToUsers(
-            Collection<User> users,
-            NotificationContentDTO notificationContent
-    ) {
-        new Thread(() -> {
-            try {
-                for (User user : users) {
-                    sendBackgroundSimplePushNotificationToUser(user, notificationContent);
-                }
-            } catch (Exception e) {
-                log.warn("Could not send simple push notification to users.");
-                e.printStackTrace();
-            }
-        }).start();
+        return deliveries;
     }
 }
@@ -0,0 +1,92 @@
+package org.hackbrooklyn.plaza.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import lombok.Getter;
+import org.hackbrooklyn.plaza.model.PushNotificationSubscription;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.util.Collection;
+
+/**
+ * Caches the decoded public keys and auth secrets of push notification subscriptions so that sending a notification
+ * to a subscription doesn't decode its keys every time.
+ * <p>
+ * Entries are keyed by subscription ID and only used while the subscription's encoded keys are unchanged, so a stale
+ * entry is never used to encrypt a notification. Deleted subscriptions should still be removed with
+ * {@link #invalidateAll(Collection)} so that they don't take up space.
+ */
+@Component
+public class PushSubscriptionKeyCache {
+
+    private final Cache<Integer, DecodedKeys> cache;
+
+    @Autowired
+    public PushSubscriptionKeyCache(MeterRegistry meterRegistry, @Value("${PUSH_SUBSCRIPTION_KEY_CACHE_MAX_SIZE:100000}") long maxSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+
+        // Exposes hit, miss, eviction, and size metrics under cache.* with the tag cache=pushSubscriptionKeys
+        GuavaCacheMetrics.monitor(meterRegistry, cache, "pushSubscriptionKeys");
+    }
+
+    /**
+     * Gets the decoded keys of a subscription, decoding them if they aren't already cached.
+     *
+     * @param subscription The subscription to get the keys of.
+     * @return The subscription's decoded public key and auth secret.
+     */
+    public DecodedKeys get(PushNotificationSubscription subscription) throws GeneralSecurityException {
+        DecodedKeys cachedKeys = cache.getIfPresent(subscription.getId());
+        if (cachedKeys != null && cachedKeys.isDecodedFrom(subscription)) {
+            return cachedKeys;
+        }
+
+        DecodedKeys decodedKeys = new DecodedKeys(
+                subscription.getKey(),
+                subscription.getAuth(),
+                subscription.getUserPublicKey(),
+                subscription.getAuthAsBytes()
+        );
+        cache.put(subscription.getId(), decodedKeys);
+
+        return decodedKeys;
+    }
+
+    /**
+     * Removes the keys of deleted subscriptions from the cache.
+     *
+     * @param subscriptionIds The IDs of the deleted subscriptions.
+     */
+    public void invalidateAll(Collection<Integer> subscriptionIds) {
+        cache.invalidateAll(subscriptionIds);
+    }
+
+    @Getter
+    public static class DecodedKeys {
+
+        private final String encodedKey;
+        private final String encodedAuth;
+        private final PublicKey userPublicKey;
+        private final byte[] auth;
+
+        private DecodedKeys(String encodedKey, String encodedAuth, PublicKey userPublicKey, byte[] auth) {
+            this.encodedKey = encodedKey;
+            this.encodedAuth = encodedAuth;
+            this.userPublicKey = userPublicKey;
+            this.auth = auth;
+        }
+
+        private boolean isDecodedFrom(PushNotificationSubscription subscription) {
+            return encodedKey.equals(subscription.getKey()) && encodedAuth.equals(subscription.getAuth());
+        }
+    }
+}
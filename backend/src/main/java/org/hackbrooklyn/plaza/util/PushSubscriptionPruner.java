@@ -0,0 +1,110 @@
+package org.hackbrooklyn.plaza.util;
+
+import com.google.common.collect.Lists;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hackbrooklyn.plaza.repository.PushNotificationSubscriptionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of how push notification deliveries turn out and removes the subscriptions that are gone, so that later
+ * notifications aren't sent to them again.
+ * <p>
+ * Gone subscriptions are collected as deliveries complete and deleted in batches on a schedule instead of one at a
+ * time, since a notification sent to every subscriber can find many of them at once.
+ */
+@Slf4j
+@Component
+public class PushSubscriptionPruner {
+
+    private final PushNotificationSubscriptionRepository pushNotificationSubscriptionRepository;
+    private final PushSubscriptionKeyCache pushSubscriptionKeyCache;
+    private final int batchSize;
+    private final Set<Integer> goneSubscriptionIds = ConcurrentHashMap.newKeySet();
+    private final AtomicLong removedSubscriptions = new AtomicLong();
+    private final Map<PushDeliveryOutcome, AtomicLong> outcomeCounts = new EnumMap<>(PushDeliveryOutcome.class);
+    private final Map<PushDeliveryOutcome, Counter> outcomeCounters = new EnumMap<>(PushDeliveryOutcome.class);
+
+    @Autowired
+    public PushSubscriptionPruner(
+            PushNotificationSubscriptionRepository pushNotificationSubscriptionRepository,
+            PushSubscriptionKeyCache pushSubscriptionKeyCache,
+            MeterRegistry meterRegistry,
+            @Value("${PUSH_SUBSCRIPTION_PRUNE_BATCH_SIZE:500}") int batchSize
+    ) {
+        this.pushNotificationSubscriptionRepository = pushNotificationSubscriptionRepository;
+        this.pushSubscriptionKeyCache = pushSubscriptionKeyCache;
+        this.batchSize = batchSize;
+
+        for (PushDeliveryOutcome outcome : PushDeliveryOutcome.values()) {
+            outcomeCounts.put(outcome, new AtomicLong());
+            outcomeCounters.put(outcome, Counter.builder("push.delivery.outcomes")
+                    .description("Push notification deliveries by how they turned out")
+                    .tag("outcome", outcome.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Records how a delivery to a subscription turned out, marking the subscription for removal if it's gone.
+     *
+     * @param subscriptionId The ID of the subscription the notification was sent to.
+     * @param outcome        How the delivery turned out.
+     */
+    public void recordOutcome(int subscriptionId, PushDeliveryOutcome outcome) {
+        outcomeCounts.get(outcome).incrementAndGet();
+        outcomeCounters.get(outcome).increment();
+
+        if (outcome == PushDeliveryOutcome.GONE) {
+            goneSubscriptionIds.add(subscriptionId);
+        }
+    }
+
+    /**
+     * Deletes the subscriptions found to be gone since the last time this ran.
+     */
+    @Scheduled(
+            initialDelayString = "${PUSH_SUBSCRIPTION_PRUNE_INTERVAL_MS:60000}",
+            fixedDelayString = "${PUSH_SUBSCRIPTION_PRUNE_INTERVAL_MS:60000}"
+    )
+    public void prune() {
+        if (goneSubscriptionIds.isEmpty()) return;
+
+        List<Integer> subscriptionIds = new ArrayList<>(goneSubscriptionIds);
+        for (List<Integer> batch : Lists.partition(subscriptionIds, batchSize)) {
+            try {
+                int removedCount = pushNotificationSubscriptionRepository.deleteAllByIdIn(batch);
+                removedSubscriptions.addAndGet(removedCount);
+                pushSubscriptionKeyCache.invalidateAll(batch);
+                goneSubscriptionIds.removeAll(batch);
+            } catch (DataAccessException e) {
+                // Keep the rest of the gone subscriptions for the next run
+                log.warn("Unable to remove gone push notification subscriptions", e);
+                return;
+            }
+        }
+
+        log.info(String.format("Removed %s gone push notification subscriptions.", subscriptionIds.size()));
+    }
+
+    public int getPendingRemovalCount() {
+        return goneSubscriptionIds.size();
+    }
+
+    public long getRemovedCount() {
+        return removedSubscriptions.get();
+    }
+
+    public long getOutcomeCount(PushDeliveryOutcome outcome) {
+        return outcomeCounts.get(outcome).get();
+    }
+}
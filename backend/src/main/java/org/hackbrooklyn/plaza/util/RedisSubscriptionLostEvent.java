@@ -0,0 +1,21 @@
+package org.hackbrooklyn.plaza.util;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when the Redis pub/sub subscription fails, such as when the connection to Redis drops. Messages published
+ * until the subscription is restored are never received.
+ */
+public class RedisSubscriptionLostEvent extends ApplicationEvent {
+
+    private final Throwable cause;
+
+    public RedisSubscriptionLostEvent(Object source, Throwable cause) {
+        super(source);
+        this.cause = cause;
+    }
+
+    public Throwable getCause() {
+        return cause;
+    }
+}
@@ -0,0 +1,166 @@
+package org.hackbrooklyn.plaza.util;
+
+import com.google.common.collect.Lists;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.hackbrooklyn.plaza.util.TeamFormationTopicIndex.Ranking;
+
+/**
+ * Stores team formation recommendations in Redis sorted sets, one per participant or team, so that every instance of
+ * the app shares them. Reading a page of recommendations is a single ZREVRANGE.
+ * <p>
+ * If Redis can't be reached, reads act as if nothing is stored so that recommendations are computed on the spot, and
+ * writes are skipped.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "TEAM_FORMATION_RECOMMENDATION_STORE", havingValue = "redis")
+public class RedisTeamFormationRecommendationStore implements TeamFormationRecommendationStore {
+
+    // KEYS = the sorted sets to update, ARGV[1] = recommended ID, ARGV[2] = max size, ARGV[3...] = score for each key
+    // Sorted sets that don't exist are skipped so that they aren't mistaken for complete recommendations
+    private static final RedisScript<Long> UPDATE_IF_PRESENT_SCRIPT = new DefaultRedisScript<>(
+            "local member = ARGV[1]\n" +
+                    "local maxSize = tonumber(ARGV[2])\n" +
+                    "for i, key in ipairs(KEYS) do\n" +
+                    "  if redis.call('EXISTS', key) == 1 then\n" +
+                    "    local score = tonumber(ARGV[i + 2])\n" +
+                    "    if score > 0 then\n" +
+                    "      redis.call('ZADD', key, score, member)\n" +
+                    "      redis.call('ZREMRANGEBYRANK', key, 0, -(maxSize + 1))\n" +
+                    "    else\n" +
+                    "      redis.call('ZREM', key, member)\n" +
+                    "    end\n" +
+                    "  end\n" +
+                    "end\n" +
+                    "return 0",
+            Long.class
+    );
+
+    // Stored in place of an empty ranking so that it's cached instead of being mistaken for nothing being stored, with a
+    // score below every real recommendation so that it's the first to be trimmed
+    private static final String EMPTY_MARKER = "empty";
+    private static final double EMPTY_MARKER_SCORE = -1;
+
+    // The most sorted sets to update in one script, so that a single update doesn't block Redis for long
+    private static final int UPDATE_BATCH_SIZE = 500;
+
+    @Value("${REDIS_TEAM_FORMATION_RECOMMENDATIONS_NAMESPACE:teamformationrecs}")
+    private String REDIS_TEAM_FORMATION_RECOMMENDATIONS_NAMESPACE;
+
+    private final StringRedisTemplate redisTemplate;
+    private final long ttlMs;
+
+    @Autowired
+    public RedisTeamFormationRecommendationStore(
+            StringRedisTemplate redisTemplate,
+            @Value("${TEAM_FORMATION_RECOMMENDATIONS_TTL_MS:600000}") long ttlMs
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.ttlMs = ttlMs;
+    }
+
+    @Override
+    public Ranking get(Kind kind, int ownerId) {
+        Set<TypedTuple<String>> recommendations;
+        try {
+            recommendations = redisTemplate.opsForZSet().reverseRangeWithScores(getKeyName(kind, ownerId), 0, -1);
+        } catch (DataAccessException e) {
+            log.error("Unable to get team formation recommendations from Redis", e);
+            return null;
+        }
+
+        if (recommendations == null || recommendations.isEmpty()) return null;
+
+        int[] ids = new int[recommendations.size()];
+        double[] scores = new double[recommendations.size()];
+        int i = 0;
+        for (TypedTuple<String> recommendation : recommendations) {
+            if (EMPTY_MARKER.equals(recommendation.getValue())) continue;
+
+            ids[i] = Integer.parseInt(Objects.requireNonNull(recommendation.getValue()));
+            scores[i++] = Objects.requireNonNull(recommendation.getScore());
+        }
+
+        return new Ranking(Arrays.copyOf(ids, i), Arrays.copyOf(scores, i));
+    }
+
+    @Override
+    public void put(Kind kind, int ownerId, Ranking recommendations) {
+        String key = getKeyName(kind, ownerId);
+        Set<TypedTuple<String>> tuples = new HashSet<>(recommendations.getIds().length);
+        for (int i = 0; i < recommendations.getIds().length; i++) {
+            tuples.add(new DefaultTypedTuple<>(String.valueOf(recommendations.getIds()[i]), recommendations.getScores()[i]));
+        }
+        if (tuples.isEmpty()) {
+            tuples.add(new DefaultTypedTuple<>(EMPTY_MARKER, EMPTY_MARKER_SCORE));
+        }
+
+        try {
+            // Replace the sorted set in a transaction so that readers never see it half-written
+            redisTemplate.execute(new SessionCallback<List<Object>>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public List<Object> execute(RedisOperations operations) throws DataAccessException {
+                    operations.multi();
+                    operations.delete(key);
+                    operations.opsForZSet().add(key, tuples);
+                    operations.expire(key, ttlMs, TimeUnit.MILLISECONDS);
+                    return operations.exec();
+                }
+            });
+        } catch (DataAccessException e) {
+            log.error("Unable to store team formation recommendations in Redis", e);
+        }
+    }
+
+    @Override
+    public void updateIfPresent(Kind kind, int recommendedId, Map<Integer, Double> scoresByOwnerId, int maxSize) {
+        List<Integer> ownerIds = new ArrayList<>(scoresByOwnerId.keySet());
+        for (List<Integer> ownerIdBatch : Lists.partition(ownerIds, UPDATE_BATCH_SIZE)) {
+            List<String> keys = new ArrayList<>(ownerIdBatch.size());
+            Object[] args = new Object[ownerIdBatch.size() + 2];
+            args[0] = String.valueOf(recommendedId);
+            args[1] = String.valueOf(maxSize);
+            for (int i = 0; i < ownerIdBatch.size(); i++) {
+                keys.add(getKeyName(kind, ownerIdBatch.get(i)));
+                args[i + 2] = String.valueOf(scoresByOwnerId.get(ownerIdBatch.get(i)));
+            }
+
+            try {
+                redisTemplate.execute(UPDATE_IF_PRESENT_SCRIPT, keys, args);
+            } catch (DataAccessException e) {
+                log.error("Unable to update team formation recommendations in Redis", e);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void remove(Kind kind, int ownerId) {
+        try {
+            redisTemplate.delete(getKeyName(kind, ownerId));
+        } catch (DataAccessException e) {
+            log.error("Unable to remove team formation recommendations from Redis", e);
+        }
+    }
+
+    private String getKeyName(Kind kind, int ownerId) {
+        return String.format("%s:%s:%s", REDIS_TEAM_FORMATION_RECOMMENDATIONS_NAMESPACE, kind.getKeyName(), ownerId);
+    }
+}
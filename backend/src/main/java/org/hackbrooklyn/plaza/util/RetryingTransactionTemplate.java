@@ -0,0 +1,64 @@
+package org.hackbrooklyn.plaza.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hackbrooklyn.plaza.exception.DataConflictException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Consumer;
+
+/**
+ * Runs actions in a transaction, retrying them a limited number of times when the transaction fails because another
+ * transaction changed the same rows first, such as a versioned entity being saved after it was changed elsewhere.
+ * <p>
+ * The entity manager is cleared when a transaction rolls back, so every attempt reads the current data. Actions that
+ * join a transaction that is already active are only run once, since the outer transaction can't be retried from here.
+ */
+@Slf4j
+@Component
+public class RetryingTransactionTemplate {
+
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+
+    @Autowired
+    public RetryingTransactionTemplate(
+            PlatformTransactionManager transactionManager,
+            @Value("${TRANSACTION_CONFLICT_MAX_ATTEMPTS:3}") int maxAttempts
+    ) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Runs an action in a transaction, retrying it if it conflicts with another transaction.
+     *
+     * @param action The action to run, which may be run more than once.
+     * @throws DataConflictException If the action still conflicts after the last attempt.
+     */
+    public void executeWithoutResult(Consumer<TransactionStatus> action) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            transactionTemplate.executeWithoutResult(action);
+            return;
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(action);
+                return;
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw new DataConflictException(e);
+                }
+
+                log.debug("Transaction conflicted with another transaction, retrying (attempt {} of {}) - {}", attempt, maxAttempts, e.getMessage());
+            }
+        }
+    }
+}
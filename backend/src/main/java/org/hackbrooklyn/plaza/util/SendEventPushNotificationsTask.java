@@ -19,7 +19,7 @@ import java.util.stream.Collectors;
 public class SendEventPushNotificationsTask extends TimerTask {
 
     private final Event event;
-    private final PushNotificationUtils pushNotificationUtils;
+    private final NotificationOutbox notificationOutbox;
     private final EventRepository eventRepository;
     private final SavedEventRepository savedEventRepository;
 
@@ -62,6 +62,6 @@ public class SendEventPushNotificationsTask extends TimerTask {
                 .map(UsersOnly::getUser)
                 .collect(Collectors.toSet());
 
-        pushNotificationUtils.sendBackgroundSimplePushNotificationToUsers(savedEventUsers, notification);
+        notificationOutbox.enqueueToUsers(savedEventUsers, notification);
     }
 }
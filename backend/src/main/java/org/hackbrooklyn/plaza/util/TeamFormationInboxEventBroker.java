@@ -0,0 +1,269 @@
+package org.hackbrooklyn.plaza.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hackbrooklyn.plaza.dto.TeamFormationInboxEventDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streams team formation inbox changes to connected participants with server-sent events.
+ * <p>
+ * Events are published to a Redis channel that every instance of the app listens on, so an event is delivered to a
+ * participant no matter which instance they're connected to. Each connection buffers a limited number of events while
+ * they're being sent. A connection that falls too far behind is closed, and the client is expected to reconnect and
+ * reload its inbox.
+ */
+@Slf4j
+@Component
+public class TeamFormationInboxEventBroker implements MessageListener {
+
+    private static final String INBOX_EVENT_NAME = "inbox";
+
+    @Value("${REDIS_TEAM_FORMATION_INBOX_CHANNEL:teamformation-inbox}")
+    private String REDIS_TEAM_FORMATION_INBOX_CHANNEL;
+
+    @Value("${TEAM_FORMATION_INBOX_EVENTS_TIMEOUT_MS:1800000}")
+    private long TEAM_FORMATION_INBOX_EVENTS_TIMEOUT_MS;
+
+    @Value("${TEAM_FORMATION_INBOX_EVENTS_BUFFER_SIZE:32}")
+    private int TEAM_FORMATION_INBOX_EVENTS_BUFFER_SIZE;
+
+    @Value("${TEAM_FORMATION_INBOX_EVENTS_MAX_CONNECTIONS_PER_PARTICIPANT:5}")
+    private int TEAM_FORMATION_INBOX_EVENTS_MAX_CONNECTIONS_PER_PARTICIPANT;
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService senderExecutor;
+
+    private final Map<Integer, Queue<Connection>> connectionsByParticipantId = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TeamFormationInboxEventBroker(
+            StringRedisTemplate redisTemplate,
+            RedisMessageListenerContainer redisMessageListenerContainer,
+            ObjectMapper objectMapper,
+            @Value("${TEAM_FORMATION_INBOX_EVENTS_SENDER_THREADS:2}") int senderThreads
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.redisMessageListenerContainer = redisMessageListenerContainer;
+        this.objectMapper = objectMapper;
+        this.senderExecutor = Executors.newFixedThreadPool(senderThreads);
+    }
+
+    @PostConstruct
+    private void initialize() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(REDIS_TEAM_FORMATION_INBOX_CHANNEL));
+    }
+
+    @PreDestroy
+    private void shutDown() {
+        connectionsByParticipantId.values().forEach(connections -> connections.forEach(this::close));
+        senderExecutor.shutdown();
+    }
+
+    /**
+     * Opens a stream of inbox events for a participant.
+     *
+     * @param participantId The ID of the participant to stream events to.
+     * @return The emitter to return from the controller.
+     */
+    public SseEmitter subscribe(int participantId) {
+        SseEmitter emitter = new SseEmitter(TEAM_FORMATION_INBOX_EVENTS_TIMEOUT_MS);
+        Connection connection = new Connection(participantId, emitter, new ArrayBlockingQueue<>(TEAM_FORMATION_INBOX_EVENTS_BUFFER_SIZE));
+
+        emitter.onCompletion(() -> remove(connection));
+        emitter.onTimeout(() -> close(connection));
+        emitter.onError(e -> close(connection));
+
+        // Add the connection in the same step as looking up the participant's connections so that it can't be added to a
+        // queue that a closing connection has just removed from the map
+        List<Connection> oldestConnections = new ArrayList<>();
+        connectionsByParticipantId.compute(participantId, (key, participantConnections) -> {
+            Queue<Connection> connections = participantConnections != null ? participantConnections : new ConcurrentLinkedQueue<>();
+            connections.add(connection);
+
+            // Close the participant's oldest connections, such as from tabs that have been left open, once they have too many
+            while (connections.size() > TEAM_FORMATION_INBOX_EVENTS_MAX_CONNECTIONS_PER_PARTICIPANT) {
+                Connection oldestConnection = connections.poll();
+                if (oldestConnection != null) {
+                    oldestConnections.add(oldestConnection);
+                }
+            }
+
+            return connections;
+        });
+
+        // Closing a connection updates the map, so it can't be done while computing the entry
+        oldestConnections.forEach(this::close);
+
+        // Let the client know that the stream is open before any events happen
+        enqueue(connection, SseEmitter.event().comment("connected"));
+
+        return emitter;
+    }
+
+    /**
+     * Publishes an inbox event to the given participants on every instance of the app.
+     *
+     * @param event          The event to publish.
+     * @param participantIds The IDs of the participants to send the event to.
+     */
+    public void publish(TeamFormationInboxEventDTO event, Collection<Integer> participantIds) {
+        if (participantIds.isEmpty()) return;
+
+        try {
+            String message = objectMapper.writeValueAsString(new InboxEventMessage(new ArrayList<>(participantIds), event));
+            redisTemplate.convertAndSend(REDIS_TEAM_FORMATION_INBOX_CHANNEL, message);
+        } catch (Exception e) {
+            // Participants connected to this instance can still be reached
+            log.warn("Unable to publish team formation inbox event to Redis, only delivering it locally", e);
+            deliver(event, participantIds);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        InboxEventMessage inboxEventMessage;
+        try {
+            inboxEventMessage = objectMapper.readValue(message.getBody(), InboxEventMessage.class);
+        } catch (IOException e) {
+            log.warn("Ignoring malformed team formation inbox event - {}", e.getMessage());
+            return;
+        }
+
+        deliver(inboxEventMessage.getEvent(), inboxEventMessage.getParticipantIds());
+    }
+
+    /**
+     * Sends a comment to every open connection so that proxies don't close idle connections and so that connections
+     * that the client has gone away from are found and closed.
+     */
+    @Scheduled(
+            initialDelayString = "${TEAM_FORMATION_INBOX_EVENTS_HEARTBEAT_INTERVAL_MS:15000}",
+            fixedDelayString = "${TEAM_FORMATION_INBOX_EVENTS_HEARTBEAT_INTERVAL_MS:15000}"
+    )
+    public void sendHeartbeats() {
+        for (Queue<Connection> participantConnections : connectionsByParticipantId.values()) {
+            for (Connection connection : participantConnections) {
+                enqueue(connection, SseEmitter.event().comment("heartbeat"));
+            }
+        }
+    }
+
+    private void deliver(TeamFormationInboxEventDTO event, Collection<Integer> participantIds) {
+        for (int participantId : participantIds) {
+            Queue<Connection> participantConnections = connectionsByParticipantId.get(participantId);
+            if (participantConnections == null) continue;
+
+            for (Connection connection : participantConnections) {
+                enqueue(connection, SseEmitter.event().name(INBOX_EVENT_NAME).data(event, MediaType.APPLICATION_JSON));
+            }
+        }
+    }
+
+    private void enqueue(Connection connection, SseEmitter.SseEventBuilder event) {
+        if (connection.closed.get()) return;
+
+        if (!connection.buffer.offer(event)) {
+            log.debug("Closing team formation inbox event stream for participant {} since its buffer is full", connection.participantId);
+            close(connection);
+            return;
+        }
+
+        scheduleSend(connection);
+    }
+
+    private void scheduleSend(Connection connection) {
+        // Only one thread sends to a connection at a time so that its events stay in order
+        if (connection.sending.compareAndSet(false, true)) {
+            try {
+                senderExecutor.execute(() -> send(connection));
+            } catch (RejectedExecutionException e) {
+                connection.sending.set(false);
+                close(connection);
+            }
+        }
+    }
+
+    private void send(Connection connection) {
+        try {
+            SseEmitter.SseEventBuilder event;
+            while (!connection.closed.get() && (event = connection.buffer.poll()) != null) {
+                connection.emitter.send(event);
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The client has gone away or the emitter has already completed
+            close(connection);
+        } finally {
+            connection.sending.set(false);
+        }
+
+        // Pick up any events that were buffered after the loop finished but before the flag was cleared
+        if (!connection.closed.get() && !connection.buffer.isEmpty()) {
+            scheduleSend(connection);
+        }
+    }
+
+    private void close(Connection connection) {
+        if (!connection.closed.compareAndSet(false, true)) return;
+
+        remove(connection);
+        connection.buffer.clear();
+        try {
+            connection.emitter.complete();
+        } catch (Exception e) {
+            log.debug("Unable to complete team formation inbox event stream - {}", e.getMessage());
+        }
+    }
+
+    private void remove(Connection connection) {
+        connection.closed.set(true);
+        connectionsByParticipantId.computeIfPresent(connection.participantId, (key, participantConnections) -> {
+            participantConnections.remove(connection);
+            return participantConnections.isEmpty() ? null : participantConnections;
+        });
+    }
+
+    @RequiredArgsConstructor
+    private static class Connection {
+
+        private final int participantId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> buffer;
+        private final AtomicBoolean sending = new AtomicBoolean(false);
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+    }
+
+    /**
+     * An inbox event along with who to send it to, as published to Redis.
+     */
+    @Data
+    @AllArgsConstructor
+    @RequiredArgsConstructor
+    static class InboxEventMessage {
+
+        private List<Integer> participantIds;
+        private TeamFormationInboxEventDTO event;
+    }
+}
@@ -0,0 +1,476 @@
+package org.hackbrooklyn.plaza.util;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Suggests teams for participants that aren't in a team yet, so that organizers don't have to match the participants
+ * left over near the end of team formation by hand.
+ * <p>
+ * Each participant is scored against each team with open spots. Most of the score is the Jaccard similarity between
+ * their interested topics and skills, with each topic or skill weighted by its inverse document frequency in the same
+ * way as TeamFormationTopicIndex. The rest of the score is a bonus for bringing a specialization that nobody on the team
+ * has yet. Pairs are then assigned greedily from the highest score to the lowest, with each participant getting at most
+ * one team and each team getting at most as many participants as it has open spots.
+ * <p>
+ * Participants are scored in parallel on a fork-join pool. Only each participant's best candidate teams are kept so that
+ * memory stays linear in the number of participants, and participants whose candidate teams all fill up before they're
+ * assigned are scored again against the teams that still have open spots in another round.
+ */
+@Slf4j
+@Component
+public class TeamFormationMatcher {
+
+    // The number of participants below which a scoring task is run directly instead of being split further
+    private static final int SCORING_TASK_THRESHOLD = 64;
+
+    private final ForkJoinPool forkJoinPool;
+    private final int candidatesPerParticipant;
+    private final double specializationWeight;
+
+    @Autowired
+    public TeamFormationMatcher(
+            @Value("${TEAM_FORMATION_MATCHING_PARALLELISM:0}") int parallelism,
+            @Value("${TEAM_FORMATION_MATCHING_CANDIDATES_PER_PARTICIPANT:10}") int candidatesPerParticipant,
+            @Value("${TEAM_FORMATION_MATCHING_SPECIALIZATION_WEIGHT:0.25}") double specializationWeight
+    ) {
+        this.forkJoinPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.candidatesPerParticipant = Math.max(candidatesPerParticipant, 1);
+        this.specializationWeight = Math.min(Math.max(specializationWeight, 0), 1);
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        forkJoinPool.shutdown();
+    }
+
+    /**
+     * Matches participants to teams.
+     *
+     * @param participants  The participants to find teams for. Each participant's open spots are ignored.
+     * @param teams         The teams with open spots.
+     * @param excludedPairs The pairs that can't be matched, such as a team that already invited the participant, as
+     *                      returned by {@link #getPairKey(int, int)}.
+     * @return The matches, from the highest score to the lowest.
+     */
+    public Result match(List<Candidate> participants, List<Candidate> teams, Set<Long> excludedPairs) {
+        long scoringStartTime = System.nanoTime();
+        Pool pool = new Pool(participants, teams, excludedPairs);
+
+        int[] remainingSpots = new int[teams.size()];
+        for (int team = 0; team < teams.size(); team++) {
+            remainingSpots[team] = teams.get(team).getOpenSpots();
+        }
+
+        int[] assignedTeams = new int[participants.size()];
+        double[] assignedScores = new double[participants.size()];
+        Arrays.fill(assignedTeams, -1);
+
+        int[] pendingParticipants = new int[participants.size()];
+        for (int participant = 0; participant < pendingParticipants.length; participant++) {
+            pendingParticipants[participant] = participant;
+        }
+
+        long scoringNanos = 0;
+        long assignmentNanos = 0;
+        int rounds = 0;
+        while (pendingParticipants.length > 0) {
+            int[] openTeams = getOpenTeams(remainingSpots);
+            if (openTeams.length == 0) break;
+
+            rounds++;
+            int slots = Math.min(candidatesPerParticipant, openTeams.length);
+            Candidates candidates = new Candidates(pendingParticipants, slots);
+            forkJoinPool.invoke(new ScoringTask(pool, openTeams, candidates, 0, pendingParticipants.length));
+
+            long assignmentStartTime = System.nanoTime();
+            scoringNanos += assignmentStartTime - scoringStartTime;
+
+            boolean assignedAny = false;
+            for (int slot : candidates.sortSlotsByScore(pool)) {
+                int participant = pendingParticipants[slot / slots];
+                int team = candidates.teams[slot];
+                if (assignedTeams[participant] < 0 && remainingSpots[team] > 0) {
+                    assignedTeams[participant] = team;
+                    assignedScores[participant] = candidates.scores[slot];
+                    remainingSpots[team]--;
+                    assignedAny = true;
+                }
+            }
+
+            // Participants without any candidates left won't get any in later rounds either, since teams only fill up
+            int[] stillPending = new int[pendingParticipants.length];
+            int stillPendingCount = 0;
+            for (int i = 0; i < pendingParticipants.length; i++) {
+                int participant = pendingParticipants[i];
+                if (assignedTeams[participant] < 0 && candidates.counts[i] > 0) {
+                    stillPending[stillPendingCount++] = participant;
+                }
+            }
+            pendingParticipants = Arrays.copyOf(stillPending, stillPendingCount);
+
+            scoringStartTime = System.nanoTime();
+            assignmentNanos += scoringStartTime - assignmentStartTime;
+
+            if (!assignedAny) break;
+        }
+
+        List<Match> matches = new ArrayList<>();
+        for (int participant = 0; participant < assignedTeams.length; participant++) {
+            int team = assignedTeams[participant];
+            if (team < 0) continue;
+
+            matches.add(new Match(
+                    participants.get(participant).getId(),
+                    teams.get(team).getId(),
+                    assignedScores[participant],
+                    pool.countSharedTopicsAndSkills(participant, team),
+                    pool.bringsNewSpecialization(participant, team)
+            ));
+        }
+        matches.sort(Comparator.comparingDouble(Match::getScore).reversed());
+
+        log.debug("Matched {} of {} participants to {} teams in {} rounds", matches.size(), participants.size(), teams.size(), rounds);
+
+        return new Result(matches, rounds, scoringNanos, assignmentNanos);
+    }
+
+    /**
+     * Gets the key of a team and participant pair that can be excluded from matching.
+     */
+    public static long getPairKey(int teamId, int participantId) {
+        return ((long) teamId << 32) | (participantId & 0xFFFFFFFFL);
+    }
+
+    private static int[] getOpenTeams(int[] remainingSpots) {
+        int openTeamCount = 0;
+        for (int spots : remainingSpots) {
+            if (spots > 0) openTeamCount++;
+        }
+
+        int[] openTeams = new int[openTeamCount];
+        int i = 0;
+        for (int team = 0; team < remainingSpots.length; team++) {
+            if (remainingSpots[team] > 0) openTeams[i++] = team;
+        }
+
+        return openTeams;
+    }
+
+    /**
+     * A participant or team to be matched.
+     */
+    @Getter
+    public static class Candidate {
+
+        private final int id;
+        private final Collection<Integer> topicOrSkillIds;
+        private final Collection<String> specializations;
+        private final int openSpots;
+
+        /**
+         * @param id               The ID of the participant or team.
+         * @param topicOrSkillIds  The IDs of the participant's or team's interested topics and skills.
+         * @param specializations  The participant's specialization, or the specializations of the team's members.
+         * @param openSpots        The number of participants that can still join the team, or 0 for a participant.
+         */
+        public Candidate(int id, Collection<Integer> topicOrSkillIds, Collection<String> specializations, int openSpots) {
+            this.id = id;
+            this.topicOrSkillIds = topicOrSkillIds;
+            this.specializations = specializations;
+            this.openSpots = openSpots;
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Match {
+
+        private final int participantId;
+        private final int teamId;
+        private final double score;
+        private final int sharedTopicsAndSkills;
+        private final boolean newSpecialization;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Result {
+
+        private final List<Match> matches;
+        private final int rounds;
+        private final long scoringNanos;
+        private final long assignmentNanos;
+    }
+
+    /**
+     * The participants and teams being matched, with their topics, skills, and specializations renumbered densely so
+     * that scoring only works with sorted primitive arrays.
+     */
+    private class Pool {
+
+        private final int[] participantIds;
+        private final int[] teamIds;
+        private final int[][] participantTopics;
+        private final int[][] teamTopics;
+        private final double[] participantTopicWeights;
+        private final double[] teamTopicWeights;
+        private final int[][] participantSpecializations;
+        private final int[][] teamSpecializations;
+        private final int[][] excludedTeams;
+        private final double[] weights;
+
+        private Pool(List<Candidate> participants, List<Candidate> teams, Set<Long> excludedPairs) {
+            Map<Integer, Integer> denseTopicIds = new HashMap<>();
+            Map<String, Integer> denseSpecializationIds = new HashMap<>();
+
+            participantIds = new int[participants.size()];
+            participantTopics = new int[participants.size()][];
+            participantSpecializations = new int[participants.size()][];
+            for (int i = 0; i < participants.size(); i++) {
+                Candidate participant = participants.get(i);
+                participantIds[i] = participant.getId();
+                participantTopics[i] = toDenseIds(participant.getTopicOrSkillIds(), denseTopicIds);
+                participantSpecializations[i] = toDenseIds(normalize(participant.getSpecializations()), denseSpecializationIds);
+            }
+
+            Map<Integer, Integer> teamIndexes = new HashMap<>();
+            teamIds = new int[teams.size()];
+            teamTopics = new int[teams.size()][];
+            teamSpecializations = new int[teams.size()][];
+            for (int i = 0; i < teams.size(); i++) {
+                Candidate team = teams.get(i);
+                teamIds[i] = team.getId();
+                teamTopics[i] = toDenseIds(team.getTopicOrSkillIds(), denseTopicIds);
+                teamSpecializations[i] = toDenseIds(normalize(team.getSpecializations()), denseSpecializationIds);
+                teamIndexes.put(team.getId(), i);
+            }
+
+            // Smoothed inverse document frequency over everyone being matched, as in TeamFormationTopicIndex
+            int[] documentFrequencies = new int[denseTopicIds.size()];
+            for (int[] topics : participantTopics) {
+                for (int topic : topics) documentFrequencies[topic]++;
+            }
+            for (int[] topics : teamTopics) {
+                for (int topic : topics) documentFrequencies[topic]++;
+            }
+            int documentCount = participants.size() + teams.size();
+            weights = new double[documentFrequencies.length];
+            for (int topic = 0; topic < weights.length; topic++) {
+                weights[topic] = Math.log((1.0 + documentCount) / (1.0 + documentFrequencies[topic])) + 1;
+            }
+
+            participantTopicWeights = sumWeights(participantTopics);
+            teamTopicWeights = sumWeights(teamTopics);
+
+            Map<Integer, Integer> participantIndexes = new HashMap<>();
+            for (int i = 0; i < participantIds.length; i++) {
+                participantIndexes.put(participantIds[i], i);
+            }
+            Map<Integer, List<Integer>> excludedTeamLists = new HashMap<>();
+            for (long pair : excludedPairs) {
+                Integer participant = participantIndexes.get((int) pair);
+                Integer team = teamIndexes.get((int) (pair >>> 32));
+                if (participant != null && team != null) {
+                    excludedTeamLists.computeIfAbsent(participant, key -> new ArrayList<>()).add(team);
+                }
+            }
+            excludedTeams = new int[participants.size()][];
+            excludedTeamLists.forEach((participant, excluded) ->
+                    excludedTeams[participant] = excluded.stream().mapToInt(Integer::intValue).sorted().toArray());
+        }
+
+        private double score(int participant, int team) {
+            int[] excluded = excludedTeams[participant];
+            if (excluded != null && Arrays.binarySearch(excluded, team) >= 0) return -1;
+
+            double intersectionWeight = 0;
+            int[] topics = participantTopics[participant];
+            int[] otherTopics = teamTopics[team];
+            for (int i = 0, j = 0; i < topics.length && j < otherTopics.length; ) {
+                if (topics[i] < otherTopics[j]) {
+                    i++;
+                } else if (topics[i] > otherTopics[j]) {
+                    j++;
+                } else {
+                    intersectionWeight += weights[topics[i]];
+                    i++;
+                    j++;
+                }
+            }
+
+            double unionWeight = participantTopicWeights[participant] + teamTopicWeights[team] - intersectionWeight;
+            double similarity = unionWeight > 0 ? intersectionWeight / unionWeight : 0;
+
+            return (1 - specializationWeight) * similarity
+                    + (bringsNewSpecialization(participant, team) ? specializationWeight : 0);
+        }
+
+        private int countSharedTopicsAndSkills(int participant, int team) {
+            int shared = 0;
+            for (int topic : participantTopics[participant]) {
+                if (Arrays.binarySearch(teamTopics[team], topic) >= 0) shared++;
+            }
+
+            return shared;
+        }
+
+        private boolean bringsNewSpecialization(int participant, int team) {
+            for (int specialization : participantSpecializations[participant]) {
+                if (Arrays.binarySearch(teamSpecializations[team], specialization) < 0) return true;
+            }
+
+            return false;
+        }
+
+        private double[] sumWeights(int[][] ownerTopics) {
+            double[] sums = new double[ownerTopics.length];
+            for (int owner = 0; owner < ownerTopics.length; owner++) {
+                for (int topic : ownerTopics[owner]) {
+                    sums[owner] += weights[topic];
+                }
+            }
+
+            return sums;
+        }
+
+        private <T> int[] toDenseIds(Collection<T> values, Map<T, Integer> denseIds) {
+            return values.stream()
+                    .mapToInt(value -> denseIds.computeIfAbsent(value, key -> denseIds.size()))
+                    .distinct()
+                    .sorted()
+                    .toArray();
+        }
+
+        // Specializations are free text, so differences in case and spacing are ignored
+        private List<String> normalize(Collection<String> specializations) {
+            List<String> normalized = new ArrayList<>(specializations.size());
+            for (String specialization : specializations) {
+                if (specialization == null || specialization.trim().isEmpty()) continue;
+
+                normalized.add(specialization.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT));
+            }
+
+            return normalized;
+        }
+    }
+
+    /**
+     * The best candidate teams of each participant in a round, kept in a fixed number of slots per participant that are
+     * sorted from the highest score to the lowest. Each scoring task only writes to the slots of its own participants.
+     */
+    private static class Candidates {
+
+        private final int[] participants;
+        private final int slotsPerParticipant;
+        private final int[] teams;
+        private final double[] scores;
+        private final int[] counts;
+
+        private Candidates(int[] participants, int slotsPerParticipant) {
+            this.participants = participants;
+            this.slotsPerParticipant = slotsPerParticipant;
+            this.teams = new int[participants.length * slotsPerParticipant];
+            this.scores = new double[participants.length * slotsPerParticipant];
+            this.counts = new int[participants.length];
+        }
+
+        private void offer(int participantSlot, int team, double score) {
+            int start = participantSlot * slotsPerParticipant;
+            int count = counts[participantSlot];
+            if (count == slotsPerParticipant && score <= scores[start + count - 1]) return;
+
+            // Insertion sort into the participant's slots, dropping the lowest score once they're full
+            int position = Math.min(count, slotsPerParticipant - 1);
+            while (position > 0 && scores[start + position - 1] < score) {
+                teams[start + position] = teams[start + position - 1];
+                scores[start + position] = scores[start + position - 1];
+                position--;
+            }
+            teams[start + position] = team;
+            scores[start + position] = score;
+            counts[participantSlot] = Math.min(count + 1, slotsPerParticipant);
+        }
+
+        /**
+         * Gets the filled slots from the highest score to the lowest, with ties going to the lower participant and team
+         * IDs so that the same input always gives the same matches.
+         */
+        private Integer[] sortSlotsByScore(Pool pool) {
+            List<Integer> filledSlots = new ArrayList<>();
+            for (int participantSlot = 0; participantSlot < counts.length; participantSlot++) {
+                int start = participantSlot * slotsPerParticipant;
+                for (int slot = start; slot < start + counts[participantSlot]; slot++) {
+                    filledSlots.add(slot);
+                }
+            }
+
+            Integer[] sortedSlots = filledSlots.toArray(new Integer[0]);
+            Arrays.sort(sortedSlots, (a, b) -> {
+                int byScore = Double.compare(scores[b], scores[a]);
+                if (byScore != 0) return byScore;
+
+                int byParticipant = Integer.compare(a / slotsPerParticipant, b / slotsPerParticipant);
+                if (byParticipant != 0) return byParticipant;
+
+                return Integer.compare(pool.teamIds[teams[a]], pool.teamIds[teams[b]]);
+            });
+
+            return sortedSlots;
+        }
+    }
+
+    /**
+     * Scores a range of the pending participants against every open team, splitting the range in half until it's
+     * small enough to score directly.
+     */
+    private static class ScoringTask extends RecursiveAction {
+
+        private final Pool pool;
+        private final int[] openTeams;
+        private final Candidates candidates;
+        private final int from;
+        private final int to;
+
+        private ScoringTask(Pool pool, int[] openTeams, Candidates candidates, int from, int to) {
+            this.pool = pool;
+            this.openTeams = openTeams;
+            this.candidates = candidates;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SCORING_TASK_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(
+                        new ScoringTask(pool, openTeams, candidates, from, middle),
+                        new ScoringTask(pool, openTeams, candidates, middle, to)
+                );
+                return;
+            }
+
+            for (int participantSlot = from; participantSlot < to; participantSlot++) {
+                int participant = candidates.participants[participantSlot];
+                for (int team : openTeams) {
+                    double score = pool.score(participant, team);
+
+                    // Teams that have nothing in common with the participant aren't worth suggesting
+                    if (score > 0) {
+                        candidates.offer(participantSlot, team, score);
+                    }
+                }
+            }
+        }
+    }
+}
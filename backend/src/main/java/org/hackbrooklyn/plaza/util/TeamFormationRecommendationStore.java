@@ -0,0 +1,61 @@
+package org.hackbrooklyn.plaza.util;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Map;
+
+import static org.hackbrooklyn.plaza.util.TeamFormationTopicIndex.Ranking;
+
+/**
+ * Stores the precomputed team formation recommendations of each participant and team, so that personalized browsing
+ * only has to read them instead of ranking every candidate on each request.
+ * <p>
+ * Recommendations expire some time after they were last computed in full, after which they're computed again the next
+ * time they're needed. Until then, single recommendations are updated in place as teams and participants change.
+ */
+public interface TeamFormationRecommendationStore {
+
+    /**
+     * Gets the stored recommendations of a participant or team.
+     *
+     * @param kind    What is being recommended.
+     * @param ownerId The ID of the participant or team that the recommendations are for.
+     * @return The recommended IDs and their scores from the highest score to the lowest, or null if there are none stored.
+     */
+    Ranking get(Kind kind, int ownerId);
+
+    /**
+     * Replaces the stored recommendations of a participant or team and restarts their expiration.
+     *
+     * @param kind            What is being recommended.
+     * @param ownerId         The ID of the participant or team that the recommendations are for.
+     * @param recommendations The recommended IDs and their scores from the highest score to the lowest.
+     */
+    void put(Kind kind, int ownerId, Ranking recommendations);
+
+    /**
+     * Updates the score of a single recommended team or participant in the stored recommendations of many owners. Owners
+     * without stored recommendations are skipped, since their recommendations will be computed in full when needed.
+     *
+     * @param kind             What is being recommended.
+     * @param recommendedId    The ID of the recommended team or participant.
+     * @param scoresByOwnerId  The new score for each owner, where a score of 0 removes the recommendation.
+     * @param maxSize          The most recommendations to keep for each owner.
+     */
+    void updateIfPresent(Kind kind, int recommendedId, Map<Integer, Double> scoresByOwnerId, int maxSize);
+
+    void remove(Kind kind, int ownerId);
+
+    @Getter
+    @RequiredArgsConstructor
+    enum Kind {
+        // Teams recommended to a participant
+        TEAMS("teams"),
+
+        // Participants recommended to a team
+        PARTICIPANTS("participants");
+
+        private final String keyName;
+    }
+}
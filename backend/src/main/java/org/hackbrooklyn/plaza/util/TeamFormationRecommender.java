@@ -0,0 +1,183 @@
+package org.hackbrooklyn.plaza.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.hackbrooklyn.plaza.util.TeamFormationRecommendationStore.Kind;
+import static org.hackbrooklyn.plaza.util.TeamFormationTopicIndex.Ranking;
+
+/**
+ * Keeps the personalized team formation recommendations of each participant and team, which are the teams or
+ * participants with the most relevant topics and skills as ranked by TeamFormationTopicIndex.
+ * <p>
+ * A participant's or team's recommendations are computed in full the first time they're needed and kept in the
+ * recommendation store until they expire. When a team or participant changes, their own recommendations are recomputed
+ * and their score is updated in the stored recommendations of everyone they share a topic or skill with. This is done in
+ * the background so that it doesn't slow down the request making the change.
+ * <p>
+ * Stored recommendations can include teams and participants that have since been hidden or deleted, so callers should
+ * filter them against the teams and participants that are currently visible.
+ */
+@Slf4j
+@Component
+public class TeamFormationRecommender {
+
+    private final TeamFormationTopicIndex teamFormationTopicIndex;
+    private final TeamFormationRecommendationStore teamFormationRecommendationStore;
+    private final int recommendationsPerOwner;
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor();
+
+    @Autowired
+    public TeamFormationRecommender(
+            TeamFormationTopicIndex teamFormationTopicIndex,
+            TeamFormationRecommendationStore teamFormationRecommendationStore,
+            @Value("${TEAM_FORMATION_RECOMMENDATIONS_PER_OWNER:100}") int recommendationsPerOwner
+    ) {
+        this.teamFormationTopicIndex = teamFormationTopicIndex;
+        this.teamFormationRecommendationStore = teamFormationRecommendationStore;
+        this.recommendationsPerOwner = recommendationsPerOwner;
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        refreshExecutor.shutdown();
+    }
+
+    /**
+     * Gets the teams recommended to a participant.
+     *
+     * @return The IDs of the recommended teams, from the most relevant to the least.
+     */
+    public int[] getRecommendedTeamIds(int participantId) {
+        Ranking recommendations = teamFormationRecommendationStore.get(Kind.TEAMS, participantId);
+        if (recommendations == null) {
+            recommendations = computeRecommendedTeams(participantId);
+            teamFormationRecommendationStore.put(Kind.TEAMS, participantId, recommendations);
+        }
+
+        return recommendations.getIds();
+    }
+
+    /**
+     * Gets the participants recommended to a team.
+     *
+     * @return The IDs of the recommended participants, from the most relevant to the least.
+     */
+    public int[] getRecommendedParticipantIds(int teamId) {
+        Ranking recommendations = teamFormationRecommendationStore.get(Kind.PARTICIPANTS, teamId);
+        if (recommendations == null) {
+            recommendations = computeRecommendedParticipants(teamId);
+            teamFormationRecommendationStore.put(Kind.PARTICIPANTS, teamId, recommendations);
+        }
+
+        return recommendations.getIds();
+    }
+
+    /**
+     * Refreshes the recommendations affected by a team's change once the topic index has the change.
+     */
+    public void refreshTeam(int teamId) {
+        refreshInBackground(() -> {
+            teamFormationRecommendationStore.put(Kind.PARTICIPANTS, teamId, computeRecommendedParticipants(teamId));
+
+            List<Integer> topicOrSkillIds = teamFormationTopicIndex.getTeamTopicOrSkillIds(teamId);
+            boolean visible = teamFormationTopicIndex.isTeamVisible(teamId);
+            BitSet teamIdOnly = new BitSet();
+            teamIdOnly.set(teamId);
+
+            // Score the team the same way it would be scored when recommending teams to each participant
+            Map<Integer, Double> scoresByParticipantId = new HashMap<>();
+            BitSet participantIds = findVisibleParticipants(topicOrSkillIds);
+            for (int participantId = participantIds.nextSetBit(0); participantId >= 0; participantId = participantIds.nextSetBit(participantId + 1)) {
+                double score = 0;
+                if (visible) {
+                    List<Integer> participantTopicOrSkillIds = teamFormationTopicIndex.getParticipantTopicOrSkillIds(participantId);
+                    score = getOnlyScore(teamFormationTopicIndex.rankTeamsWithScores(teamIdOnly, participantTopicOrSkillIds, 1));
+                }
+
+                scoresByParticipantId.put(participantId, score);
+            }
+
+            teamFormationRecommendationStore.updateIfPresent(Kind.TEAMS, teamId, scoresByParticipantId, recommendationsPerOwner);
+        });
+    }
+
+    public void removeTeam(int teamId) {
+        refreshInBackground(() -> teamFormationRecommendationStore.remove(Kind.PARTICIPANTS, teamId));
+    }
+
+    /**
+     * Refreshes the recommendations affected by a participant's change once the topic index has the change.
+     */
+    public void refreshParticipant(int participantId) {
+        refreshInBackground(() -> {
+            teamFormationRecommendationStore.put(Kind.TEAMS, participantId, computeRecommendedTeams(participantId));
+
+            List<Integer> topicOrSkillIds = teamFormationTopicIndex.getParticipantTopicOrSkillIds(participantId);
+            boolean visible = teamFormationTopicIndex.isParticipantVisible(participantId);
+            BitSet participantIdOnly = new BitSet();
+            participantIdOnly.set(participantId);
+
+            // Score the participant the same way they would be scored when recommending participants to each team
+            Map<Integer, Double> scoresByTeamId = new HashMap<>();
+            BitSet teamIds = findVisibleTeams(topicOrSkillIds);
+            for (int teamId = teamIds.nextSetBit(0); teamId >= 0; teamId = teamIds.nextSetBit(teamId + 1)) {
+                double score = 0;
+                if (visible) {
+                    List<Integer> teamTopicOrSkillIds = teamFormationTopicIndex.getTeamTopicOrSkillIds(teamId);
+                    score = getOnlyScore(teamFormationTopicIndex.rankParticipantsWithScores(participantIdOnly, teamTopicOrSkillIds, 1));
+                }
+
+                scoresByTeamId.put(teamId, score);
+            }
+
+            teamFormationRecommendationStore.updateIfPresent(Kind.PARTICIPANTS, participantId, scoresByTeamId, recommendationsPerOwner);
+        });
+    }
+
+    private Ranking computeRecommendedTeams(int participantId) {
+        List<Integer> topicOrSkillIds = teamFormationTopicIndex.getParticipantTopicOrSkillIds(participantId);
+        return teamFormationTopicIndex.rankTeamsWithScores(findVisibleTeams(topicOrSkillIds), topicOrSkillIds, recommendationsPerOwner);
+    }
+
+    private Ranking computeRecommendedParticipants(int teamId) {
+        List<Integer> topicOrSkillIds = teamFormationTopicIndex.getTeamTopicOrSkillIds(teamId);
+        return teamFormationTopicIndex.rankParticipantsWithScores(findVisibleParticipants(topicOrSkillIds), topicOrSkillIds, recommendationsPerOwner);
+    }
+
+    // Without any topics or skills, every visible team or participant is found and ranked with a score of 0, like
+    // personalized browsing did before recommendations were precomputed
+    private BitSet findVisibleTeams(List<Integer> topicOrSkillIds) {
+        return teamFormationTopicIndex.findVisibleTeams(topicOrSkillIds);
+    }
+
+    private BitSet findVisibleParticipants(List<Integer> topicOrSkillIds) {
+        return teamFormationTopicIndex.findVisibleParticipants(topicOrSkillIds);
+    }
+
+    private static double getOnlyScore(Ranking ranking) {
+        return ranking.getScores().length > 0 ? ranking.getScores()[0] : 0;
+    }
+
+    private void refreshInBackground(Runnable refresh) {
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    refresh.run();
+                } catch (RuntimeException e) {
+                    log.error("Unable to refresh team formation recommendations", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Skipped refreshing team formation recommendations while shutting down");
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.hackbrooklyn.plaza.util;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * Finds the teams and participants matching a free-text search query in the team formation browser.
+ * <p>
+ * A query starting with "tos:" is an exact, case-sensitive search for an interested topic or skill. Any other query is
+ * matched case-insensitively against the team's or participant's name, objective statement, and interested topics and
+ * skills. Matches are found regardless of whether the team or participant is visible in the browser.
+ */
+public interface TeamFormationSearchEngine {
+
+    /**
+     * Finds the teams matching a search query.
+     *
+     * @param searchQuery The search query as provided by the user.
+     * @return A new bitset of the found team IDs that the caller is free to modify.
+     */
+    BitSet searchTeams(String searchQuery);
+
+    /**
+     * Finds the participants matching a search query.
+     *
+     * @param searchQuery The search query as provided by the user.
+     * @return A new bitset of the found participant IDs that the caller is free to modify.
+     */
+    BitSet searchParticipants(String searchQuery);
+
+    /**
+     * Updates the searchable text of a team once it has been saved.
+     *
+     * @param teamId             The ID of the team.
+     * @param name               The team's name.
+     * @param objectiveStatement The team's objective statement.
+     * @param topicOrSkillNames  The names of the team's interested topics and skills.
+     */
+    void updateTeam(int teamId, String name, String objectiveStatement, Collection<String> topicOrSkillNames);
+
+    void removeTeam(int teamId);
+
+    /**
+     * Updates the searchable text of a participant once they have been saved.
+     *
+     * @param participantId      The ID of the participant.
+     * @param name               The participant's first and last name separated by a space.
+     * @param objectiveStatement The participant's objective statement.
+     * @param topicOrSkillNames  The names of the participant's interested topics and skills.
+     */
+    void updateParticipant(int participantId, String name, String objectiveStatement, Collection<String> topicOrSkillNames);
+
+    void removeParticipant(int participantId);
+
+    /**
+     * Checks whether a search query uses the tos: operator for an exact topic or skill search.
+     */
+    static boolean isTopicOrSkillQuery(String searchQuery) {
+        return searchQuery.startsWith("tos:");
+    }
+
+    /**
+     * Gets the topic or skill name searched for with the tos: operator, exactly as provided.
+     */
+    static String getSearchedTopicOrSkill(String searchQuery) {
+        return searchQuery.substring(4);
+    }
+}
@@ -0,0 +1,215 @@
+package org.hackbrooklyn.plaza.util;
+
+import org.hackbrooklyn.plaza.dto.TeamFormationParticipantSummaryDTO;
+import org.hackbrooklyn.plaza.dto.TeamFormationTeamSummaryDTO;
+import org.hackbrooklyn.plaza.dto.UserFullNameDTO;
+import org.hackbrooklyn.plaza.model.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.*;
+import javax.persistence.metamodel.SetAttribute;
+import javax.persistence.metamodel.SingularAttribute;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Loads the teams and participants shown in the team formation browser as flat read models.
+ * <p>
+ * Serializing the entities directly loads each team's members and each team's and participant's topics and skills one
+ * row at a time. Here every association is instead loaded for the whole page at once, so a page always takes the same
+ * number of queries no matter how many results are on it.
+ */
+@Component
+public class TeamFormationSummaryLoader {
+
+    private final EntityManager entityManager;
+
+    @Autowired
+    public TeamFormationSummaryLoader(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Loads teams along with their members in four queries.
+     *
+     * @param teamIds The IDs of the teams to load.
+     * @return The found teams in the same order as their IDs.
+     */
+    public List<TeamFormationTeamSummaryDTO> loadTeams(List<Integer> teamIds) {
+        if (teamIds.isEmpty()) return new ArrayList<>();
+
+        Map<Integer, TeamFormationTeamSummaryDTO> teamsById = findTeams(teamIds);
+        Map<Integer, TeamFormationParticipantSummaryDTO> membersById = findParticipants(ParticipantFilter.BY_TEAM_ID, teamIds);
+        linkMembersToTeams(membersById.values(), teamsById);
+
+        addTopicOrSkillNames(teamsById, membersById);
+
+        return teamIds.stream()
+                .map(teamsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Loads participants along with their teams and their teams' members in at most five queries.
+     *
+     * @param participantIds The IDs of the participants to load.
+     * @return The found participants in the same order as their IDs.
+     */
+    public List<TeamFormationParticipantSummaryDTO> loadParticipants(List<Integer> participantIds) {
+        if (participantIds.isEmpty()) return new ArrayList<>();
+
+        Map<Integer, TeamFormationParticipantSummaryDTO> participantsById = findParticipants(ParticipantFilter.BY_ID, participantIds);
+        Set<Integer> teamIds = participantsById.values().stream()
+                .map(participant -> participant.getTeam() != null ? participant.getTeam().getId() : null)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+
+        Map<Integer, TeamFormationTeamSummaryDTO> teamsById = new HashMap<>();
+        Map<Integer, TeamFormationParticipantSummaryDTO> allParticipantsById = new HashMap<>(participantsById);
+        if (!teamIds.isEmpty()) {
+            teamsById = findTeams(teamIds);
+
+            // Reuse the participants that were already loaded so that each participant is only serialized once
+            findParticipants(ParticipantFilter.BY_TEAM_ID, teamIds).forEach(allParticipantsById::putIfAbsent);
+            linkMembersToTeams(allParticipantsById.values(), teamsById);
+        }
+
+        addTopicOrSkillNames(teamsById, allParticipantsById);
+
+        return participantIds.stream()
+                .map(participantsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private Map<Integer, TeamFormationTeamSummaryDTO> findTeams(Collection<Integer> teamIds) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<TeamFormationTeam> teams = query.from(TeamFormationTeam.class);
+        Join<TeamFormationTeam, TeamFormationParticipant> leader = teams.join(TeamFormationTeam_.leader, JoinType.LEFT);
+
+        Path<Integer> id = teams.get(TeamFormationTeam_.id);
+        Path<String> name = teams.get(TeamFormationTeam_.name);
+        Path<Integer> size = teams.get(TeamFormationTeam_.size);
+        Path<Integer> leaderId = leader.get(TeamFormationParticipant_.id);
+        Path<String> objectiveStatement = teams.get(TeamFormationTeam_.objectiveStatement);
+        Path<Boolean> visibleInBrowser = teams.get(TeamFormationTeam_.visibleInBrowser);
+
+        query.multiselect(id, name, size, leaderId, objectiveStatement, visibleInBrowser);
+        query.where(id.in(teamIds));
+
+        Map<Integer, TeamFormationTeamSummaryDTO> teamsById = new HashMap<>();
+        for (Tuple row : entityManager.createQuery(query).getResultList()) {
+            TeamFormationTeamSummaryDTO team = new TeamFormationTeamSummaryDTO();
+            team.setId(row.get(id));
+            team.setName(row.get(name));
+            team.setSize(row.get(size));
+            team.setLeader(row.get(leaderId));
+            team.setObjectiveStatement(row.get(objectiveStatement));
+            team.setVisibleInBrowser(row.get(visibleInBrowser));
+
+            teamsById.put(team.getId(), team);
+        }
+
+        return teamsById;
+    }
+
+    private Map<Integer, TeamFormationParticipantSummaryDTO> findParticipants(ParticipantFilter filter, Collection<Integer> ids) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<TeamFormationParticipant> participants = query.from(TeamFormationParticipant.class);
+        Join<TeamFormationParticipant, User> user = participants.join(TeamFormationParticipant_.user);
+        Join<TeamFormationParticipant, TeamFormationTeam> team = participants.join(TeamFormationParticipant_.team, JoinType.LEFT);
+
+        Path<Integer> id = participants.get(TeamFormationParticipant_.id);
+        Path<String> firstName = user.get(User_.firstName);
+        Path<String> lastName = user.get(User_.lastName);
+        Path<Integer> teamId = team.get(TeamFormationTeam_.id);
+        Path<String> specialization = participants.get(TeamFormationParticipant_.specialization);
+        Path<String> objectiveStatement = participants.get(TeamFormationParticipant_.objectiveStatement);
+        Path<String> contactInfo = participants.get(TeamFormationParticipant_.contactInfo);
+        Path<Boolean> visibleInBrowser = participants.get(TeamFormationParticipant_.visibleInBrowser);
+
+        query.multiselect(id, firstName, lastName, teamId, specialization, objectiveStatement, contactInfo, visibleInBrowser);
+        query.where((filter == ParticipantFilter.BY_TEAM_ID ? teamId : id).in(ids));
+        query.orderBy(cb.asc(id));
+
+        // Keep the participants in ID order so that team members are always listed in the same order
+        Map<Integer, TeamFormationParticipantSummaryDTO> participantsById = new LinkedHashMap<>();
+        for (Tuple row : entityManager.createQuery(query).getResultList()) {
+            TeamFormationParticipantSummaryDTO participant = new TeamFormationParticipantSummaryDTO();
+            participant.setId(row.get(id));
+            participant.setUser(new UserFullNameDTO(row.get(firstName), row.get(lastName)));
+            participant.setSpecialization(row.get(specialization));
+            participant.setObjectiveStatement(row.get(objectiveStatement));
+            participant.setContactInfo(row.get(contactInfo));
+            participant.setVisibleInBrowser(row.get(visibleInBrowser));
+
+            // Only the team's ID is known until the teams are loaded
+            Integer participantTeamId = row.get(teamId);
+            if (participantTeamId != null) {
+                TeamFormationTeamSummaryDTO unloadedTeam = new TeamFormationTeamSummaryDTO();
+                unloadedTeam.setId(participantTeamId);
+                participant.setTeam(unloadedTeam);
+            }
+
+            participantsById.put(participant.getId(), participant);
+        }
+
+        return participantsById;
+    }
+
+    private static void linkMembersToTeams(Collection<TeamFormationParticipantSummaryDTO> participants, Map<Integer, TeamFormationTeamSummaryDTO> teamsById) {
+        for (TeamFormationParticipantSummaryDTO participant : participants) {
+            if (participant.getTeam() == null) continue;
+
+            TeamFormationTeamSummaryDTO team = teamsById.get(participant.getTeam().getId());
+            participant.setTeam(team);
+            if (team != null) {
+                team.getMembers().add(participant);
+            }
+        }
+    }
+
+    private void addTopicOrSkillNames(Map<Integer, TeamFormationTeamSummaryDTO> teamsById, Map<Integer, TeamFormationParticipantSummaryDTO> participantsById) {
+        if (!teamsById.isEmpty()) {
+            findTopicOrSkillNames(TeamFormationTeam.class, TeamFormationTeam_.id, TeamFormationTeam_.interestedTopicsAndSkills, teamsById.keySet())
+                    .forEach((teamId, names) -> teamsById.get(teamId).setInterestedTopicsAndSkills(names));
+        }
+
+        if (!participantsById.isEmpty()) {
+            findTopicOrSkillNames(TeamFormationParticipant.class, TeamFormationParticipant_.id, TeamFormationParticipant_.interestedTopicsAndSkills, participantsById.keySet())
+                    .forEach((participantId, names) -> participantsById.get(participantId).setInterestedTopicsAndSkills(names));
+        }
+    }
+
+    private <T> Map<Integer, List<String>> findTopicOrSkillNames(Class<T> ownerClass, SingularAttribute<T, Integer> idAttribute, SetAttribute<T, TopicOrSkill> topicsAndSkillsAttribute, Collection<Integer> ownerIds) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<T> owners = query.from(ownerClass);
+        Join<T, TopicOrSkill> topicsAndSkills = owners.join(topicsAndSkillsAttribute);
+
+        Path<Integer> ownerId = owners.get(idAttribute);
+        Path<String> name = topicsAndSkills.get(TopicOrSkill_.name);
+
+        query.multiselect(ownerId, name);
+        query.where(ownerId.in(ownerIds));
+        query.orderBy(cb.asc(name));
+
+        Map<Integer, List<String>> namesByOwner = new HashMap<>();
+        for (Tuple row : entityManager.createQuery(query).getResultList()) {
+            namesByOwner.computeIfAbsent(row.get(ownerId), key -> new ArrayList<>()).add(row.get(name));
+        }
+
+        return namesByOwner;
+    }
+
+    private enum ParticipantFilter {
+        BY_ID,
+        BY_TEAM_ID
+    }
+}
@@ -0,0 +1,495 @@
+package org.hackbrooklyn.plaza.util;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hackbrooklyn.plaza.repository.TeamFormationParticipantRepository;
+import org.hackbrooklyn.plaza.repository.TeamFormationTeamRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import static org.hackbrooklyn.plaza.repository.TopicOrSkillRepository.TopicOrSkillLink;
+
+/**
+ * An in-memory inverted index from each topic or skill to the teams and participants interested in it, used to find
+ * personalized results without joining through the topic and skill tables.
+ * <p>
+ * IDs are kept in bitsets, which stay small since team and participant IDs are generated sequentially. The index is
+ * updated as teams and participants change and is rebuilt from the database on a schedule, which also picks up changes
+ * made by other instances of the app.
+ * <p>
+ * The index also ranks teams and participants by relevance, scored as the Jaccard similarity between their topics and
+ * skills and the topics and skills being matched, with each topic or skill weighted by its inverse document frequency.
+ * Rare topics and skills therefore count for more than ones that nearly everyone is interested in.
+ */
+@Slf4j
+@Component
+public class TeamFormationTopicIndex {
+
+    private final TeamFormationTeamRepository teamFormationTeamRepository;
+    private final TeamFormationParticipantRepository teamFormationParticipantRepository;
+
+    private final Postings teams = new Postings();
+    private final Postings participants = new Postings();
+
+    @Autowired
+    public TeamFormationTopicIndex(TeamFormationTeamRepository teamFormationTeamRepository, TeamFormationParticipantRepository teamFormationParticipantRepository) {
+        this.teamFormationTeamRepository = teamFormationTeamRepository;
+        this.teamFormationParticipantRepository = teamFormationParticipantRepository;
+    }
+
+    @PostConstruct
+    @Scheduled(
+            initialDelayString = "${TEAM_FORMATION_INDEX_REBUILD_INTERVAL_MS:600000}",
+            fixedDelayString = "${TEAM_FORMATION_INDEX_REBUILD_INTERVAL_MS:600000}"
+    )
+    public void rebuild() {
+        teams.rebuild(
+                teamFormationTeamRepository::findAllTopicOrSkillLinks,
+                teamFormationTeamRepository::findAllVisibleIds
+        );
+        participants.rebuild(
+                teamFormationParticipantRepository::findAllTopicOrSkillLinks,
+                teamFormationParticipantRepository::findAllVisibleIds
+        );
+    }
+
+    public void updateTeam(int teamId, boolean visibleInBrowser, Collection<Integer> topicOrSkillIds) {
+        teams.update(teamId, visibleInBrowser, topicOrSkillIds);
+    }
+
+    public void removeTeam(int teamId) {
+        teams.update(teamId, false, Collections.emptyList());
+    }
+
+    public void updateParticipant(int participantId, boolean visibleInBrowser, Collection<Integer> topicOrSkillIds) {
+        participants.update(participantId, visibleInBrowser, topicOrSkillIds);
+    }
+
+    public void removeParticipant(int participantId) {
+        participants.update(participantId, false, Collections.emptyList());
+    }
+
+    /**
+     * Finds the teams that are visible in the browser and are interested in any of the given topics and skills.
+     *
+     * @param topicOrSkillIds The IDs of the topics and skills to look for, or an empty collection to find every visible team.
+     * @return A new bitset of the found team IDs that the caller is free to modify.
+     */
+    public BitSet findVisibleTeams(Collection<Integer> topicOrSkillIds) {
+        return teams.findVisible(topicOrSkillIds);
+    }
+
+    /**
+     * Finds the participants that are visible in the browser and are interested in any of the given topics and skills.
+     *
+     * @param topicOrSkillIds The IDs of the topics and skills to look for, or an empty collection to find every visible participant.
+     * @return A new bitset of the found participant IDs that the caller is free to modify.
+     */
+    public BitSet findVisibleParticipants(Collection<Integer> topicOrSkillIds) {
+        return participants.findVisible(topicOrSkillIds);
+    }
+
+    /**
+     * Ranks teams by how relevant their interested topics and skills are to the given topics and skills.
+     *
+     * @param teamIds         The IDs of the teams to rank.
+     * @param topicOrSkillIds The IDs of the topics and skills to match against.
+     * @param limit           The maximum number of teams to return.
+     * @return The IDs of the most relevant teams, from the most relevant to the least. Teams with the same score are
+     * ordered from the most recently created.
+     */
+    public int[] rankTeams(BitSet teamIds, Collection<Integer> topicOrSkillIds, int limit) {
+        return teams.rank(teamIds, topicOrSkillIds, limit).getIds();
+    }
+
+    /**
+     * Ranks teams like {@link #rankTeams(BitSet, Collection, int)}, keeping the score of each ranked team.
+     */
+    public Ranking rankTeamsWithScores(BitSet teamIds, Collection<Integer> topicOrSkillIds, int limit) {
+        return teams.rank(teamIds, topicOrSkillIds, limit);
+    }
+
+    /**
+     * Ranks participants by how relevant their interested topics and skills are to the given topics and skills.
+     *
+     * @param participantIds  The IDs of the participants to rank.
+     * @param topicOrSkillIds The IDs of the topics and skills to match against.
+     * @param limit           The maximum number of participants to return.
+     * @return The IDs of the most relevant participants, from the most relevant to the least. Participants with the same
+     * score are ordered from the most recently created.
+     */
+    public int[] rankParticipants(BitSet participantIds, Collection<Integer> topicOrSkillIds, int limit) {
+        return participants.rank(participantIds, topicOrSkillIds, limit).getIds();
+    }
+
+    /**
+     * Ranks participants like {@link #rankParticipants(BitSet, Collection, int)}, keeping the score of each ranked
+     * participant.
+     */
+    public Ranking rankParticipantsWithScores(BitSet participantIds, Collection<Integer> topicOrSkillIds, int limit) {
+        return participants.rank(participantIds, topicOrSkillIds, limit);
+    }
+
+    public boolean isTeamVisible(int teamId) {
+        return teams.isVisible(teamId);
+    }
+
+    public boolean isParticipantVisible(int participantId) {
+        return participants.isVisible(participantId);
+    }
+
+    /**
+     * Gets the IDs of the topics and skills a team is interested in, as of the last time it was indexed.
+     */
+    public List<Integer> getTeamTopicOrSkillIds(int teamId) {
+        return teams.getTopicOrSkillIds(teamId);
+    }
+
+    /**
+     * Gets the IDs of the topics and skills a participant is interested in, as of the last time they were indexed.
+     */
+    public List<Integer> getParticipantTopicOrSkillIds(int participantId) {
+        return participants.getTopicOrSkillIds(participantId);
+    }
+
+    /**
+     * Gets a page of IDs from a bitset, from the highest ID to the lowest so that the most recently created come first.
+     *
+     * @param ids     The IDs to page through.
+     * @param page    The page to get, starting at 1. Ignored if afterId is provided.
+     * @param limit   The maximum number of IDs on a page.
+     * @param afterId Only get IDs lower than this ID, or null to use the page number instead.
+     * @return The IDs on the page in descending order.
+     */
+    public static List<Integer> getPageDescending(BitSet ids, int page, int limit, Integer afterId) {
+        int id = afterId != null ? ids.previousSetBit(afterId - 1) : ids.length() - 1;
+        if (afterId == null) {
+            for (int skipped = 0; skipped < (page - 1) * limit && id >= 0; skipped++) {
+                id = ids.previousSetBit(id - 1);
+            }
+        }
+
+        List<Integer> pageIds = new ArrayList<>(limit);
+        for (; id >= 0 && pageIds.size() < limit; id = ids.previousSetBit(id - 1)) {
+            pageIds.add(id);
+        }
+
+        return pageIds;
+    }
+
+    /**
+     * The index for one kind of owner, either teams or participants.
+     */
+    private static class Postings {
+
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private Map<Integer, BitSet> ownerIdsByTopicOrSkill = new HashMap<>();
+        private Map<Integer, int[]> topicOrSkillIdsByOwner = new HashMap<>();
+        private BitSet visibleOwnerIds = new BitSet();
+
+        // Updates made while a rebuild is reading from the database, replayed onto the rebuilt index before it is used
+        private List<Consumer<Postings>> updatesDuringRebuild = null;
+
+        private BitSet findVisible(Collection<Integer> topicOrSkillIds) {
+            lock.readLock().lock();
+            try {
+                if (topicOrSkillIds.isEmpty()) {
+                    return (BitSet) visibleOwnerIds.clone();
+                }
+
+                BitSet foundOwnerIds = new BitSet();
+                for (int topicOrSkillId : topicOrSkillIds) {
+                    BitSet interestedOwnerIds = ownerIdsByTopicOrSkill.get(topicOrSkillId);
+                    if (interestedOwnerIds != null) {
+                        foundOwnerIds.or(interestedOwnerIds);
+                    }
+                }
+                foundOwnerIds.and(visibleOwnerIds);
+
+                return foundOwnerIds;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private boolean isVisible(int ownerId) {
+            lock.readLock().lock();
+            try {
+                return visibleOwnerIds.get(ownerId);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private List<Integer> getTopicOrSkillIds(int ownerId) {
+            lock.readLock().lock();
+            try {
+                int[] ownerTopicOrSkillIds = topicOrSkillIdsByOwner.get(ownerId);
+                if (ownerTopicOrSkillIds == null) return Collections.emptyList();
+
+                List<Integer> topicOrSkillIds = new ArrayList<>(ownerTopicOrSkillIds.length);
+                for (int topicOrSkillId : ownerTopicOrSkillIds) {
+                    topicOrSkillIds.add(topicOrSkillId);
+                }
+
+                return topicOrSkillIds;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private Ranking rank(BitSet candidateOwnerIds, Collection<Integer> topicOrSkillIds, int limit) {
+            lock.readLock().lock();
+            try {
+                // Weights are only computed for the topics and skills that come up while scoring
+                Map<Integer, Double> weights = new HashMap<>();
+                Set<Integer> matchedTopicOrSkillIds = new HashSet<>(topicOrSkillIds);
+                double matchedWeight = 0;
+                for (int topicOrSkillId : matchedTopicOrSkillIds) {
+                    matchedWeight += getWeight(topicOrSkillId, weights);
+                }
+
+                TopScores topScores = new TopScores(limit);
+                for (int ownerId = candidateOwnerIds.nextSetBit(0); ownerId >= 0; ownerId = candidateOwnerIds.nextSetBit(ownerId + 1)) {
+                    double intersectionWeight = 0;
+                    double ownerWeight = 0;
+
+                    int[] ownerTopicOrSkillIds = topicOrSkillIdsByOwner.get(ownerId);
+                    if (ownerTopicOrSkillIds != null) {
+                        for (int topicOrSkillId : ownerTopicOrSkillIds) {
+                            double weight = getWeight(topicOrSkillId, weights);
+                            ownerWeight += weight;
+                            if (matchedTopicOrSkillIds.contains(topicOrSkillId)) {
+                                intersectionWeight += weight;
+                            }
+                        }
+                    }
+
+                    double unionWeight = matchedWeight + ownerWeight - intersectionWeight;
+                    topScores.offer(ownerId, unionWeight > 0 ? intersectionWeight / unionWeight : 0);
+                }
+
+                return topScores.toRanking();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Gets the smoothed inverse document frequency of a topic or skill, which is always positive so that topics and
+         * skills that aren't in the index still count towards the union.
+         */
+        private double getWeight(int topicOrSkillId, Map<Integer, Double> weights) {
+            return weights.computeIfAbsent(topicOrSkillId, key -> {
+                BitSet interestedOwnerIds = ownerIdsByTopicOrSkill.get(key);
+                int documentFrequency = interestedOwnerIds != null ? interestedOwnerIds.cardinality() : 0;
+
+                return Math.log((1.0 + topicOrSkillIdsByOwner.size()) / (1.0 + documentFrequency)) + 1;
+            });
+        }
+
+        private void update(int ownerId, boolean visible, Collection<Integer> topicOrSkillIds) {
+            int[] newTopicOrSkillIds = topicOrSkillIds.stream().mapToInt(Integer::intValue).toArray();
+            Consumer<Postings> update = postings -> postings.apply(ownerId, visible, newTopicOrSkillIds);
+
+            lock.writeLock().lock();
+            try {
+                update.accept(this);
+                if (updatesDuringRebuild != null) {
+                    updatesDuringRebuild.add(update);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void apply(int ownerId, boolean visible, int[] newTopicOrSkillIds) {
+            int[] oldTopicOrSkillIds = topicOrSkillIdsByOwner.remove(ownerId);
+            if (oldTopicOrSkillIds != null) {
+                for (int topicOrSkillId : oldTopicOrSkillIds) {
+                    BitSet interestedOwnerIds = ownerIdsByTopicOrSkill.get(topicOrSkillId);
+                    interestedOwnerIds.clear(ownerId);
+                    if (interestedOwnerIds.isEmpty()) {
+                        ownerIdsByTopicOrSkill.remove(topicOrSkillId);
+                    }
+                }
+            }
+
+            if (newTopicOrSkillIds.length > 0) {
+                topicOrSkillIdsByOwner.put(ownerId, newTopicOrSkillIds);
+                for (int topicOrSkillId : newTopicOrSkillIds) {
+                    ownerIdsByTopicOrSkill.computeIfAbsent(topicOrSkillId, key -> new BitSet()).set(ownerId);
+                }
+            }
+
+            visibleOwnerIds.set(ownerId, visible);
+        }
+
+        private void rebuild(LinkSource linkSource, VisibleIdSource visibleIdSource) {
+            lock.writeLock().lock();
+            try {
+                updatesDuringRebuild = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            Postings rebuilt = new Postings();
+            try {
+                Map<Integer, List<Integer>> linksByOwner = new HashMap<>();
+                for (TopicOrSkillLink link : linkSource.findAllTopicOrSkillLinks()) {
+                    linksByOwner.computeIfAbsent(link.getOwnerId(), key -> new ArrayList<>()).add(link.getTopicOrSkillId());
+                }
+                linksByOwner.forEach((ownerId, topicOrSkillIds) -> rebuilt.apply(
+                        ownerId,
+                        false,
+                        topicOrSkillIds.stream().mapToInt(Integer::intValue).toArray()
+                ));
+                for (int visibleOwnerId : visibleIdSource.findAllVisibleIds()) {
+                    rebuilt.visibleOwnerIds.set(visibleOwnerId);
+                }
+            } catch (RuntimeException e) {
+                log.error("Unable to rebuild the team formation topic index, keeping the current index", e);
+
+                lock.writeLock().lock();
+                try {
+                    updatesDuringRebuild = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                return;
+            }
+
+            lock.writeLock().lock();
+            try {
+                updatesDuringRebuild.forEach(update -> update.accept(rebuilt));
+                updatesDuringRebuild = null;
+
+                ownerIdsByTopicOrSkill = rebuilt.ownerIdsByTopicOrSkill;
+                topicOrSkillIdsByOwner = rebuilt.topicOrSkillIdsByOwner;
+                visibleOwnerIds = rebuilt.visibleOwnerIds;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Keeps the highest scoring IDs in a bounded min-heap of primitive arrays, so that ranking takes O(n log k) time and
+     * O(k) memory without boxing every scored candidate.
+     */
+    private static class TopScores {
+
+        private final int[] ids;
+        private final double[] scores;
+        private int size = 0;
+
+        private TopScores(int capacity) {
+            this.ids = new int[capacity];
+            this.scores = new double[capacity];
+        }
+
+        private void offer(int id, double score) {
+            if (ids.length == 0) return;
+
+            if (size < ids.length) {
+                ids[size] = id;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (isBetter(id, score, ids[0], scores[0])) {
+                // Replace the lowest score kept so far
+                ids[0] = id;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        /**
+         * Empties the heap into a ranking, from the highest score to the lowest.
+         */
+        private Ranking toRanking() {
+            int[] sortedIds = new int[size];
+            double[] sortedScores = new double[size];
+            while (size > 0) {
+                sortedIds[size - 1] = ids[0];
+                sortedScores[size - 1] = scores[0];
+                size--;
+                ids[0] = ids[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+
+            return new Ranking(sortedIds, sortedScores);
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (!isBetter(ids[parent], scores[parent], ids[index], scores[index])) return;
+
+                swap(index, parent);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int index) {
+            while (true) {
+                int worst = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if (left < size && isBetter(ids[worst], scores[worst], ids[left], scores[left])) worst = left;
+                if (right < size && isBetter(ids[worst], scores[worst], ids[right], scores[right])) worst = right;
+                if (worst == index) return;
+
+                swap(index, worst);
+                index = worst;
+            }
+        }
+
+        private void swap(int i, int j) {
+            int id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+
+            double score = scores[i];
+            scores[i] = scores[j];
+            scores[j] = score;
+        }
+
+        // Ties go to the higher ID so that more recently created owners come first
+        private static boolean isBetter(int id, double score, int otherId, double otherScore) {
+            return score > otherScore || (score == otherScore && id > otherId);
+        }
+    }
+
+    /**
+     * Ranked IDs along with their relevance scores, both from the highest score to the lowest.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class Ranking {
+
+        private final int[] ids;
+        private final double[] scores;
+    }
+
+    @FunctionalInterface
+    private interface LinkSource {
+
+        List<TopicOrSkillLink> findAllTopicOrSkillLinks();
+    }
+
+    @FunctionalInterface
+    private interface VisibleIdSource {
+
+        List<Integer> findAllVisibleIds();
+    }
+}
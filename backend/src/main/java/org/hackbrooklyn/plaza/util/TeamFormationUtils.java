@@ -2,10 +2,39 @@ package org.hackbrooklyn.plaza.util;
 
 public class TeamFormationUtils {
 
-    // Replace everything that isn't a letter or a hyphen with a hyphen and convert to lowercase.
+    // Replace everything that isn't a letter, a number, or a hyphen with a hyphen and convert to lowercase.
     public static String cleanTopicOrSkillName(String originalName) {
-        return originalName
-                .replaceAll("[^a-zA-Z0-9-]", "-")
-                .toLowerCase();
+        // Most names are already clean, so return them as they are without allocating a new string
+        int length = originalName.length();
+        int i = 0;
+        while (i < length && isCleanChar(originalName.charAt(i))) {
+            i++;
+        }
+
+        if (i == length) {
+            return originalName;
+        }
+
+        StringBuilder cleanedName = new StringBuilder(length);
+        cleanedName.append(originalName, 0, i);
+        while (i < length) {
+            // Go by code point so that characters made of a surrogate pair are replaced with a single hyphen
+            int codePoint = originalName.codePointAt(i);
+            if (codePoint >= 'A' && codePoint <= 'Z') {
+                cleanedName.append((char) (codePoint - 'A' + 'a'));
+            } else if (isCleanChar(codePoint)) {
+                cleanedName.append((char) codePoint);
+            } else {
+                cleanedName.append('-');
+            }
+
+            i += Character.charCount(codePoint);
+        }
+
+        return cleanedName.toString();
+    }
+
+    private static boolean isCleanChar(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-';
     }
 }
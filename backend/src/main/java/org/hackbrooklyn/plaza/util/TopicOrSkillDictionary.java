@@ -0,0 +1,128 @@
+package org.hackbrooklyn.plaza.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hackbrooklyn.plaza.model.TopicOrSkill;
+import org.hackbrooklyn.plaza.repository.TopicOrSkillRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.hackbrooklyn.plaza.util.TeamFormationUtils.cleanTopicOrSkillName;
+
+/**
+ * Resolves topic and skill names to their entities, creating the ones that don't exist yet.
+ * <p>
+ * Topics and skills never change once created, so every one that has been seen is kept in memory by its cleaned name.
+ * Names that aren't in memory are looked up with a single query, and the ones that are still missing are inserted in a
+ * separate transaction so that a name inserted at the same time by another request only fails that insert.
+ */
+@Slf4j
+@Component
+public class TopicOrSkillDictionary {
+
+    private final TopicOrSkillRepository topicOrSkillRepository;
+    private final TransactionTemplate requiresNewTransactionTemplate;
+
+    private final Map<String, TopicOrSkill> topicsAndSkillsByName = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TopicOrSkillDictionary(TopicOrSkillRepository topicOrSkillRepository, PlatformTransactionManager transactionManager) {
+        this.topicOrSkillRepository = topicOrSkillRepository;
+        this.requiresNewTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.requiresNewTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    public void warm() {
+        topicOrSkillRepository.findAll().forEach(this::remember);
+        log.info("Loaded {} topics and skills", topicsAndSkillsByName.size());
+    }
+
+    /**
+     * Gets the topics and skills with the given names, creating the ones that don't exist yet.
+     *
+     * @param topicAndSkillNames The names as provided by the user, which are cleaned before being looked up.
+     * @return The topics and skills with the cleaned names.
+     */
+    public Set<TopicOrSkill> getOrCreateAll(Collection<String> topicAndSkillNames) {
+        Set<TopicOrSkill> topicsAndSkills = new HashSet<>(topicAndSkillNames.size());
+        Set<String> missingNames = new HashSet<>();
+        for (String providedTopicOrSkillName : topicAndSkillNames) {
+            String cleanedTopicOrSkillName = cleanTopicOrSkillName(providedTopicOrSkillName);
+            TopicOrSkill knownTopicOrSkill = topicsAndSkillsByName.get(cleanedTopicOrSkillName);
+
+            if (knownTopicOrSkill != null) {
+                topicsAndSkills.add(knownTopicOrSkill);
+            } else {
+                missingNames.add(cleanedTopicOrSkillName);
+            }
+        }
+
+        if (missingNames.isEmpty()) {
+            return topicsAndSkills;
+        }
+
+        // Look for topics and skills created by other instances of the app
+        for (TopicOrSkill existingTopicOrSkill : topicOrSkillRepository.findAllByNameIn(missingNames)) {
+            topicsAndSkills.add(remember(existingTopicOrSkill));
+            missingNames.remove(existingTopicOrSkill.getName());
+        }
+
+        if (!missingNames.isEmpty()) {
+            topicsAndSkills.addAll(createAll(missingNames));
+        }
+
+        return topicsAndSkills;
+    }
+
+    private List<TopicOrSkill> createAll(Set<String> newNames) {
+        try {
+            List<TopicOrSkill> newTopicsAndSkills = newNames.stream()
+                    .map(TopicOrSkillDictionary::buildTopicOrSkill)
+                    .collect(Collectors.toList());
+
+            List<TopicOrSkill> savedTopicsAndSkills = requiresNewTransactionTemplate.execute(status -> topicOrSkillRepository.saveAll(newTopicsAndSkills));
+
+            return savedTopicsAndSkills.stream()
+                    .map(this::remember)
+                    .collect(Collectors.toList());
+        } catch (DataIntegrityViolationException e) {
+            // Another request created at least one of the names first, so create them one at a time instead
+            return newNames.stream()
+                    .map(this::create)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private TopicOrSkill create(String newName) {
+        try {
+            return remember(requiresNewTransactionTemplate.execute(status -> topicOrSkillRepository.save(buildTopicOrSkill(newName))));
+        } catch (DataIntegrityViolationException e) {
+            TopicOrSkill existingTopicOrSkill = topicOrSkillRepository
+                    .findFirstByName(newName)
+                    .orElseThrow(() -> e);
+
+            return remember(existingTopicOrSkill);
+        }
+    }
+
+    private TopicOrSkill remember(TopicOrSkill topicOrSkill) {
+        // Keep the first instance seen so that every team and participant shares it
+        TopicOrSkill knownTopicOrSkill = topicsAndSkillsByName.putIfAbsent(topicOrSkill.getName(), topicOrSkill);
+        return knownTopicOrSkill != null ? knownTopicOrSkill : topicOrSkill;
+    }
+
+    private static TopicOrSkill buildTopicOrSkill(String name) {
+        TopicOrSkill topicOrSkill = new TopicOrSkill();
+        topicOrSkill.setName(name);
+        return topicOrSkill;
+    }
+}
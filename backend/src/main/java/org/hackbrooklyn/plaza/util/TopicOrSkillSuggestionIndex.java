@@ -0,0 +1,376 @@
+package org.hackbrooklyn.plaza.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hackbrooklyn.plaza.dto.TopicOrSkillSuggestionDTO;
+import org.hackbrooklyn.plaza.repository.TeamFormationParticipantRepository;
+import org.hackbrooklyn.plaza.repository.TeamFormationTeamRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import static org.hackbrooklyn.plaza.repository.TopicOrSkillRepository.TopicOrSkillNameLink;
+import static org.hackbrooklyn.plaza.util.TeamFormationUtils.cleanTopicOrSkillName;
+
+/**
+ * Suggests topics and skills as users type them, so that they pick a topic or skill that already exists instead of
+ * creating a near-duplicate of it.
+ * <p>
+ * Topic and skill names are kept in a prefix trie where every node holds the most used names that start with its
+ * prefix, counting each team and participant interested in a topic or skill as one use. Suggestions are read straight
+ * from the node for the typed prefix without going to the database. When a team or participant changes their topics
+ * and skills, only the nodes along the changed names' paths are recomputed from their children.
+ * <p>
+ * The trie is built in bulk from the database when the app starts and rebuilt on the same schedule as
+ * TeamFormationTopicIndex to pick up changes made by other instances of the app. Readers keep using the current trie
+ * until a rebuilt one is swapped in.
+ */
+@Slf4j
+@Component
+public class TopicOrSkillSuggestionIndex {
+
+    private final TeamFormationTeamRepository teamFormationTeamRepository;
+    private final TeamFormationParticipantRepository teamFormationParticipantRepository;
+    private final int suggestionsPerPrefix;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Trie trie;
+
+    // Updates made while a rebuild is reading from the database, replayed onto the rebuilt trie before it is used
+    private List<Consumer<Trie>> updatesDuringRebuild = null;
+
+    @Autowired
+    public TopicOrSkillSuggestionIndex(
+            TeamFormationTeamRepository teamFormationTeamRepository,
+            TeamFormationParticipantRepository teamFormationParticipantRepository,
+            @Value("${TOPIC_OR_SKILL_SUGGESTIONS_PER_PREFIX:10}") int suggestionsPerPrefix
+    ) {
+        this.teamFormationTeamRepository = teamFormationTeamRepository;
+        this.teamFormationParticipantRepository = teamFormationParticipantRepository;
+        this.suggestionsPerPrefix = Math.max(suggestionsPerPrefix, 1);
+        this.trie = new Trie(this.suggestionsPerPrefix);
+    }
+
+    @PostConstruct
+    @Scheduled(
+            initialDelayString = "${TEAM_FORMATION_INDEX_REBUILD_INTERVAL_MS:600000}",
+            fixedDelayString = "${TEAM_FORMATION_INDEX_REBUILD_INTERVAL_MS:600000}"
+    )
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            updatesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long startTime = System.nanoTime();
+        Trie rebuilt;
+        try {
+            rebuilt = Trie.build(
+                    suggestionsPerPrefix,
+                    groupNamesByOwner(teamFormationTeamRepository.findAllTopicOrSkillNameLinks()),
+                    groupNamesByOwner(teamFormationParticipantRepository.findAllTopicOrSkillNameLinks())
+            );
+        } catch (RuntimeException e) {
+            log.error("Unable to rebuild the topic and skill suggestion index, keeping the current index", e);
+
+            lock.writeLock().lock();
+            try {
+                updatesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            updatesDuringRebuild.forEach(update -> update.accept(rebuilt));
+            updatesDuringRebuild = null;
+            trie = rebuilt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.debug("Rebuilt the topic and skill suggestion index with {} names in {} ms",
+                rebuilt.nameCount, (System.nanoTime() - startTime) / 1_000_000);
+    }
+
+    /**
+     * Suggests the most used topics and skills starting with a prefix.
+     *
+     * @param prefix The prefix as typed by the user, which is cleaned the same way as topic and skill names.
+     * @param limit  The maximum number of suggestions, which is capped at TOPIC_OR_SKILL_SUGGESTIONS_PER_PREFIX.
+     * @return The suggestions from the most used to the least, with ties in alphabetical order.
+     */
+    public List<TopicOrSkillSuggestionDTO> suggest(String prefix, int limit) {
+        String cleanedPrefix = cleanTopicOrSkillName(prefix);
+
+        lock.readLock().lock();
+        try {
+            Node node = trie.find(cleanedPrefix);
+            if (node == null) return Collections.emptyList();
+
+            int suggestionCount = Math.min(limit, node.top.length);
+            List<TopicOrSkillSuggestionDTO> suggestions = new ArrayList<>(suggestionCount);
+            for (int i = 0; i < suggestionCount; i++) {
+                suggestions.add(new TopicOrSkillSuggestionDTO(node.top[i].name, node.top[i].usageCount));
+            }
+
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void updateTeam(int teamId, Collection<String> topicOrSkillNames) {
+        String[] names = topicOrSkillNames.toArray(new String[0]);
+        update(trie -> trie.setNames(trie.namesByTeam, teamId, names));
+    }
+
+    public void removeTeam(int teamId) {
+        update(trie -> trie.setNames(trie.namesByTeam, teamId, new String[0]));
+    }
+
+    public void updateParticipant(int participantId, Collection<String> topicOrSkillNames) {
+        String[] names = topicOrSkillNames.toArray(new String[0]);
+        update(trie -> trie.setNames(trie.namesByParticipant, participantId, names));
+    }
+
+    public void removeParticipant(int participantId) {
+        update(trie -> trie.setNames(trie.namesByParticipant, participantId, new String[0]));
+    }
+
+    private void update(Consumer<Trie> update) {
+        lock.writeLock().lock();
+        try {
+            update.accept(trie);
+            if (updatesDuringRebuild != null) {
+                updatesDuringRebuild.add(update);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static Map<Integer, String[]> groupNamesByOwner(List<TopicOrSkillNameLink> links) {
+        Map<Integer, List<String>> namesByOwner = new HashMap<>();
+        for (TopicOrSkillNameLink link : links) {
+            namesByOwner.computeIfAbsent(link.getOwnerId(), key -> new ArrayList<>()).add(link.getTopicOrSkillName());
+        }
+
+        Map<Integer, String[]> groupedNames = new HashMap<>(namesByOwner.size());
+        namesByOwner.forEach((ownerId, names) -> groupedNames.put(ownerId, names.toArray(new String[0])));
+
+        return groupedNames;
+    }
+
+    /**
+     * The prefix trie along with the names each team and participant is interested in, which are needed to work out
+     * which usage counts change when a team or participant is updated.
+     */
+    private static class Trie {
+
+        private static final Suggestion[] NO_SUGGESTIONS = new Suggestion[0];
+
+        private final int suggestionsPerPrefix;
+        private final Node root = new Node();
+        private final Map<Integer, String[]> namesByTeam;
+        private final Map<Integer, String[]> namesByParticipant;
+        private int nameCount = 0;
+
+        private Trie(int suggestionsPerPrefix) {
+            this(suggestionsPerPrefix, new HashMap<>(), new HashMap<>());
+        }
+
+        private Trie(int suggestionsPerPrefix, Map<Integer, String[]> namesByTeam, Map<Integer, String[]> namesByParticipant) {
+            this.suggestionsPerPrefix = suggestionsPerPrefix;
+            this.namesByTeam = namesByTeam;
+            this.namesByParticipant = namesByParticipant;
+        }
+
+        /**
+         * Builds a trie by counting every use first and then filling in each node's suggestions in a single pass from
+         * the deepest nodes up, instead of recomputing the path of every use.
+         */
+        private static Trie build(int suggestionsPerPrefix, Map<Integer, String[]> namesByTeam, Map<Integer, String[]> namesByParticipant) {
+            Map<String, Integer> usageCounts = new HashMap<>();
+            for (Map<Integer, String[]> namesByOwner : Arrays.asList(namesByTeam, namesByParticipant)) {
+                for (String[] names : namesByOwner.values()) {
+                    for (String name : names) {
+                        usageCounts.merge(name, 1, Integer::sum);
+                    }
+                }
+            }
+
+            Trie trie = new Trie(suggestionsPerPrefix, namesByTeam, namesByParticipant);
+            usageCounts.forEach((name, usageCount) -> {
+                trie.getOrCreatePath(name).getLast().setUsage(name, usageCount);
+                trie.nameCount++;
+            });
+
+            // Every node comes after its parent in breadth-first order, so going backwards visits children first
+            List<Node> nodes = new ArrayList<>();
+            nodes.add(trie.root);
+            for (int i = 0; i < nodes.size(); i++) {
+                Collections.addAll(nodes, nodes.get(i).children);
+            }
+            for (int i = nodes.size() - 1; i >= 0; i--) {
+                nodes.get(i).recomputeTop(suggestionsPerPrefix);
+            }
+
+            return trie;
+        }
+
+        private Node find(String prefix) {
+            Node node = root;
+            for (int i = 0; i < prefix.length() && node != null; i++) {
+                node = node.getChild(prefix.charAt(i));
+            }
+
+            return node;
+        }
+
+        private void setNames(Map<Integer, String[]> namesByOwner, int ownerId, String[] newNames) {
+            String[] oldNames = newNames.length > 0 ? namesByOwner.put(ownerId, newNames) : namesByOwner.remove(ownerId);
+            if (oldNames == null) oldNames = new String[0];
+
+            Set<String> oldNameSet = new HashSet<>(Arrays.asList(oldNames));
+            Set<String> newNameSet = new HashSet<>(Arrays.asList(newNames));
+            for (String oldName : oldNameSet) {
+                if (!newNameSet.contains(oldName)) addUsage(oldName, -1);
+            }
+            for (String newName : newNameSet) {
+                if (!oldNameSet.contains(newName)) addUsage(newName, 1);
+            }
+        }
+
+        private void addUsage(String name, int amount) {
+            Deque<Node> path = getOrCreatePath(name);
+            Node last = path.getLast();
+
+            int usageCount = (last.suggestion != null ? last.suggestion.usageCount : 0) + amount;
+            if (last.suggestion == null && usageCount > 0) nameCount++;
+            if (last.suggestion != null && usageCount <= 0) nameCount--;
+            last.setUsage(name, usageCount);
+
+            // Recompute from the end of the name back up to the root, dropping the nodes that no longer lead to a name
+            Node child = null;
+            while (!path.isEmpty()) {
+                Node node = path.removeLast();
+                if (child != null && child.suggestion == null && child.children.length == 0) {
+                    node.removeChild(child);
+                }
+                node.recomputeTop(suggestionsPerPrefix);
+                child = node;
+            }
+        }
+
+        private Deque<Node> getOrCreatePath(String name) {
+            Deque<Node> path = new ArrayDeque<>(name.length() + 1);
+            Node node = root;
+            path.add(node);
+            for (int i = 0; i < name.length(); i++) {
+                node = node.getOrCreateChild(name.charAt(i));
+                path.add(node);
+            }
+
+            return path;
+        }
+    }
+
+    private static class Node {
+
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        // Children are kept in small parallel arrays since names only use lowercase letters, digits, and hyphens
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_CHILDREN;
+
+        // The name ending at this node, if it's in use
+        private Suggestion suggestion;
+
+        // The most used names starting with this node's prefix, from the most used to the least
+        private Suggestion[] top = Trie.NO_SUGGESTIONS;
+
+        private Node getChild(char key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) return children[i];
+            }
+
+            return null;
+        }
+
+        private Node getOrCreateChild(char key) {
+            Node child = getChild(key);
+            if (child != null) return child;
+
+            child = new Node();
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            keys[keys.length - 1] = key;
+            children[children.length - 1] = child;
+
+            return child;
+        }
+
+        private void removeChild(Node child) {
+            for (int i = 0; i < children.length; i++) {
+                if (children[i] != child) continue;
+
+                char[] newKeys = new char[keys.length - 1];
+                Node[] newChildren = new Node[children.length - 1];
+                System.arraycopy(keys, 0, newKeys, 0, i);
+                System.arraycopy(keys, i + 1, newKeys, i, keys.length - i - 1);
+                System.arraycopy(children, 0, newChildren, 0, i);
+                System.arraycopy(children, i + 1, newChildren, i, children.length - i - 1);
+                keys = newKeys;
+                children = newChildren;
+                return;
+            }
+        }
+
+        private void setUsage(String name, int usageCount) {
+            suggestion = usageCount > 0 ? new Suggestion(name, usageCount) : null;
+        }
+
+        /**
+         * Recomputes the most used names under this node, which are always among this node's own name and the most
+         * used names under each of its children.
+         */
+        private void recomputeTop(int limit) {
+            List<Suggestion> candidates = new ArrayList<>();
+            if (suggestion != null) candidates.add(suggestion);
+            for (Node child : children) {
+                Collections.addAll(candidates, child.top);
+            }
+
+            candidates.sort(Suggestion.MOST_USED_FIRST);
+            top = candidates.subList(0, Math.min(limit, candidates.size())).toArray(Trie.NO_SUGGESTIONS);
+        }
+    }
+
+    private static class Suggestion {
+
+        private static final Comparator<Suggestion> MOST_USED_FIRST = Comparator
+                .comparingInt((Suggestion suggestion) -> suggestion.usageCount).reversed()
+                .thenComparing(suggestion -> suggestion.name);
+
+        private final String name;
+        private final int usageCount;
+
+        private Suggestion(String name, int usageCount) {
+            this.name = name;
+            this.usageCount = usageCount;
+        }
+    }
+}
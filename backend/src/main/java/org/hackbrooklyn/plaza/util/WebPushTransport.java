@@ -0,0 +1,311 @@
+package org.hackbrooklyn.plaza.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import nl.martijndwars.webpush.Encoding;
+import nl.martijndwars.webpush.Notification;
+import nl.martijndwars.webpush.PushService;
+import org.apache.http.Header;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.util.EntityUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends web push notifications to push services without blocking a thread for each request. Requests to each push
+ * service host share a pool of kept-alive connections, and at most PUSH_MAX_IN_FLIGHT_PER_HOST requests are sent to a
+ * host at once while the rest wait in that host's queue. Each host accepts up to PUSH_MAX_QUEUED_PER_HOST queued and
+ * in-flight deliveries, and rejects any more until some of them finish.
+ * <p>
+ * When a push service responds with 429 Too Many Requests or 503 Service Unavailable, no more requests are sent to it
+ * until its Retry-After time has passed, and the rejected request is retried up to PUSH_MAX_RETRIES times.
+ * <p>
+ * {@link PushService} is only used to encrypt and sign notifications, not to send them. Notifications are encrypted on
+ * the thread that sends them, which is a push delivery thread, rather than on the threads handling responses.
+ */
+@Slf4j
+@Component
+public class WebPushTransport {
+
+    private static final Encoding ENCODING = Encoding.AES128GCM;
+
+    private final PushService pushService;
+    private final ConnectionProvider connectionProvider;
+    private final WebClient webClient;
+    private final int maxInFlightPerHost;
+    private final int maxQueuedPerHost;
+    private final int maxRetries;
+    private final long defaultRetryAfterMs;
+    private final Timer hostWaitTimer;
+    private final Timer sendTimer;
+    private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+
+    @Autowired
+    public WebPushTransport(
+            PushService pushService,
+            WebClient.Builder webClientBuilder,
+            MeterRegistry meterRegistry,
+            @Value("${PUSH_MAX_IN_FLIGHT_PER_HOST:50}") int maxInFlightPerHost,
+            @Value("${PUSH_MAX_QUEUED_PER_HOST:500}") int maxQueuedPerHost,
+            @Value("${PUSH_REQUEST_TIMEOUT_MS:10000}") long requestTimeoutMs,
+            @Value("${PUSH_MAX_RETRIES:2}") int maxRetries,
+            @Value("${PUSH_DEFAULT_RETRY_AFTER_MS:1000}") long defaultRetryAfterMs
+    ) {
+        this.pushService = pushService;
+        this.maxInFlightPerHost = maxInFlightPerHost;
+        this.maxQueuedPerHost = maxQueuedPerHost;
+        this.maxRetries = maxRetries;
+        this.defaultRetryAfterMs = defaultRetryAfterMs;
+
+        // Connection pools are kept per host, so each push service gets up to this many connections
+        this.connectionProvider = ConnectionProvider.builder("web-push")
+                .maxConnections(maxInFlightPerHost)
+                .maxIdleTime(Duration.ofSeconds(60))
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .responseTimeout(Duration.ofMillis(requestTimeoutMs));
+        this.webClient = webClientBuilder
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+
+        this.hostWaitTimer = Timer.builder("push.delivery.duration")
+                .description("Time spent delivering push notifications")
+                .tag("stage", "host.wait")
+                .register(meterRegistry);
+        this.sendTimer = Timer.builder("push.delivery.duration")
+                .description("Time spent delivering push notifications")
+                .tag("stage", "send")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Sends a push notification to its subscription's push service.
+     *
+     * @param notification The notification to send.
+     * @return A future that completes with the HTTP status code of the push service's final response, or completes
+     * exceptionally if the notification couldn't be encrypted or sent, or if its host already has too many deliveries.
+     */
+    public CompletableFuture<Integer> send(Notification notification) {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+
+        Host host;
+        try {
+            host = hosts.computeIfAbsent(URI.create(notification.getEndpoint()).getHost(), hostName -> new Host(maxInFlightPerHost));
+        } catch (IllegalArgumentException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+
+        if (host.deliveries.incrementAndGet() > maxQueuedPerHost) {
+            host.deliveries.decrementAndGet();
+            result.completeExceptionally(new RejectedExecutionException("Too many push deliveries queued for " + notification.getEndpoint()));
+            return result;
+        }
+
+        Delivery delivery;
+        try {
+            HttpPost post = pushService.preparePost(notification, ENCODING);
+            byte[] body = post.getEntity() != null ? EntityUtils.toByteArray(post.getEntity()) : new byte[0];
+            delivery = new Delivery(post, body, result);
+        } catch (Exception e) {
+            host.deliveries.decrementAndGet();
+            result.completeExceptionally(e);
+            return result;
+        }
+
+        host.waiting.add(delivery);
+        drain(host);
+
+        return result;
+    }
+
+    /**
+     * The number of deliveries that can be sent to any host without being rejected. Since a push service host isn't
+     * known until a subscription is looked up, this is the room left at the busiest host.
+     */
+    public int getRemainingCapacity() {
+        int remainingCapacity = maxQueuedPerHost;
+        for (Host host : hosts.values()) {
+            remainingCapacity = Math.min(remainingCapacity, maxQueuedPerHost - host.deliveries.get());
+        }
+
+        return Math.max(0, remainingCapacity);
+    }
+
+    /**
+     * Starts as many waiting deliveries as the host allows, or schedules another drain for when the host is accepting
+     * requests again.
+     */
+    private void drain(Host host) {
+        while (!host.waiting.isEmpty()) {
+            long retryDelayMs = host.retryAfterMillis - System.currentTimeMillis();
+            if (retryDelayMs > 0) {
+                if (host.drainScheduled.compareAndSet(false, true)) {
+                    Schedulers.parallel().schedule(() -> {
+                        host.drainScheduled.set(false);
+                        drain(host);
+                    }, retryDelayMs, TimeUnit.MILLISECONDS);
+                }
+
+                return;
+            }
+
+            if (!host.permits.tryAcquire()) return;
+
+            Delivery delivery = host.waiting.poll();
+            if (delivery == null) {
+                host.permits.release();
+                return;
+            }
+
+            start(host, delivery);
+        }
+    }
+
+    private void start(Host host, Delivery delivery) {
+        hostWaitTimer.record(System.nanoTime() - delivery.queuedAtNanos, TimeUnit.NANOSECONDS);
+
+        HttpPost post = delivery.post;
+        long startNanos = System.nanoTime();
+        webClient.post()
+                .uri(post.getURI())
+                .headers(headers -> {
+                    for (Header header : post.getAllHeaders()) {
+                        headers.add(header.getName(), header.getValue());
+                    }
+                })
+                .bodyValue(delivery.body)
+                .exchangeToMono(response -> {
+                    int statusCode = response.rawStatusCode();
+                    String retryAfter = response.headers().asHttpHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+
+                    return response.releaseBody().thenReturn(new PushResponse(statusCode, retryAfter));
+                })
+                .subscribe(
+                        response -> {
+                            sendTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                            finish(host, delivery, response, null);
+                        },
+                        e -> {
+                            sendTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                            finish(host, delivery, null, e);
+                        }
+                );
+    }
+
+    private void finish(Host host, Delivery delivery, PushResponse response, Throwable error) {
+        host.permits.release();
+
+        if (response != null && isThrottled(response.statusCode)) {
+            long retryAfterMillis = System.currentTimeMillis() + getRetryAfterMs(response.retryAfter);
+            host.retryAfterMillis = Math.max(host.retryAfterMillis, retryAfterMillis);
+
+            if (delivery.attempts < maxRetries) {
+                // The retry is sent with the same encrypted body, so it still counts towards the host's deliveries
+                delivery.attempts++;
+                delivery.queuedAtNanos = System.nanoTime();
+                host.waiting.add(delivery);
+                drain(host);
+                return;
+            }
+        }
+
+        host.deliveries.decrementAndGet();
+        if (error != null) {
+            delivery.result.completeExceptionally(error);
+        } else {
+            delivery.result.complete(response.statusCode);
+        }
+
+        drain(host);
+    }
+
+    private static boolean isThrottled(int statusCode) {
+        return statusCode == HttpStatus.TOO_MANY_REQUESTS.value() || statusCode == HttpStatus.SERVICE_UNAVAILABLE.value();
+    }
+
+    /**
+     * Gets how long to wait from a Retry-After header, which is either a number of seconds or an HTTP date.
+     */
+    long getRetryAfterMs(String retryAfter) {
+        if (retryAfter == null) return defaultRetryAfterMs;
+
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim())));
+        } catch (NumberFormatException e) {
+            // Not a number of seconds, so it should be a date
+        }
+
+        try {
+            ZonedDateTime retryAt = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, retryAt.toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            return defaultRetryAfterMs;
+        }
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        connectionProvider.dispose();
+    }
+
+    private static class Host {
+
+        private final Semaphore permits;
+        private final Queue<Delivery> waiting = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean drainScheduled = new AtomicBoolean();
+        // Queued and in-flight deliveries, including ones waiting to be retried
+        private final AtomicInteger deliveries = new AtomicInteger();
+        private volatile long retryAfterMillis;
+
+        private Host(int maxInFlight) {
+            this.permits = new Semaphore(maxInFlight);
+        }
+    }
+
+    private static class Delivery {
+
+        private final HttpPost post;
+        private final byte[] body;
+        private final CompletableFuture<Integer> result;
+        private long queuedAtNanos = System.nanoTime();
+        private int attempts;
+
+        private Delivery(HttpPost post, byte[] body, CompletableFuture<Integer> result) {
+            this.post = post;
+            this.body = body;
+            this.result = result;
+        }
+    }
+
+    private static class PushResponse {
+
+        private final int statusCode;
+        private final String retryAfter;
+
+        private PushResponse(int statusCode, String retryAfter) {
+            this.statusCode = statusCode;
+            this.retryAfter = retryAfter;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.hackbrooklyn.plaza.benchmark;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Encoders;
+import io.jsonwebtoken.security.Keys;
+import org.hackbrooklyn.plaza.model.User;
+import org.hackbrooklyn.plaza.security.LocalAuthorizationVersionStore;
+import org.hackbrooklyn.plaza.util.JwtUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-request cost of authenticating a JWT before and after {@link JwtUtils#verify(String)} was added.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.hackbrooklyn.plaza.benchmark.JwtVerificationBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JwtVerificationBenchmark {
+
+    private String jwtSecret;
+    private JwtUtils jwtUtils;
+    private String accessToken;
+
+    @Setup
+    public void setUp() {
+        jwtSecret = Encoders.BASE64.encode(Keys.secretKeyFor(SignatureAlgorithm.HS256).getEncoded());
+
+        jwtUtils = new JwtUtils(new LocalAuthorizationVersionStore());
+        ReflectionTestUtils.setField(jwtUtils, "JWT_SECRET", jwtSecret);
+        ReflectionTestUtils.setField(jwtUtils, "JWT_ACCESS_TOKEN_EXPIRATION_TIME_MS", 900000L);
+        ReflectionTestUtils.setField(jwtUtils, "BACKEND_DOMAIN", "https://api.example.com");
+        ReflectionTestUtils.invokeMethod(jwtUtils, "initializeSigningKeyAndParser");
+
+        User user = new User();
+        user.setId(1);
+        user.setEmail("johndoe@example.com");
+        accessToken = jwtUtils.generateJwt(user, JwtUtils.JwtTypes.ACCESS);
+    }
+
+    /**
+     * The previous filter path: one parser was built to validate the token and another to read the user ID.
+     */
+    @Benchmark
+    public int validateThenParseAgain() {
+        Jwts.parserBuilder().setSigningKey(jwtSecret).build().parseClaimsJws(accessToken);
+
+        Claims claims = Jwts.parserBuilder()
+                .setSigningKey(jwtSecret).build()
+                .parseClaimsJws(accessToken)
+                .getBody();
+
+        return Integer.parseInt(claims.getSubject().split(",")[0]);
+    }
+
+    /**
+     * The current filter path: a single parse with the shared parser.
+     */
+    @Benchmark
+    public int verifyOnce() {
+        return jwtUtils.verify(accessToken)
+                .map(JwtUtils.VerifiedJwt::getUserId)
+                .orElse(-1);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtVerificationBenchmark.class.getSimpleName())
+                .build()
+        ).run();
+    }
+}
@@ -0,0 +1,111 @@
+package org.hackbrooklyn.plaza.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.martijndwars.webpush.Encoding;
+import nl.martijndwars.webpush.Notification;
+import nl.martijndwars.webpush.PushService;
+import org.apache.http.client.methods.HttpPost;
+import org.bouncycastle.jce.ECNamedCurveTable;
+import org.bouncycastle.jce.interfaces.ECPublicKey;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.hackbrooklyn.plaza.model.PushNotificationSubscription;
+import org.hackbrooklyn.plaza.util.PushSubscriptionKeyCache;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-notification cost of preparing a push notification for a subscription, with the subscription's
+ * keys decoded on every send as before {@link PushSubscriptionKeyCache} was added and with them cached.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.hackbrooklyn.plaza.benchmark.PushEncryptionBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PushEncryptionBenchmark {
+
+    private static final byte[] PAYLOAD = ("{\"title\":\"A new announcement has been posted!\",\"body\":\"Opening ceremony " +
+            "starts in 10 minutes on the main stage.\",\"tag\":\"announcement-posted-1\",\"renotify\":true,\"silent\":false}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private PushService pushService;
+    private PushSubscriptionKeyCache pushSubscriptionKeyCache;
+    private PushNotificationSubscription subscription;
+
+    @Setup
+    public void setUp() throws Exception {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("ECDH", BouncyCastleProvider.PROVIDER_NAME);
+        keyPairGenerator.initialize(ECNamedCurveTable.getParameterSpec("secp256r1"));
+
+        // Sign notifications with VAPID like the app does
+        KeyPair vapidKeyPair = keyPairGenerator.generateKeyPair();
+        pushService = new PushService(vapidKeyPair);
+
+        ECPublicKey userPublicKey = (ECPublicKey) keyPairGenerator.generateKeyPair().getPublic();
+        byte[] auth = new byte[16];
+        new SecureRandom().nextBytes(auth);
+
+        subscription = new PushNotificationSubscription();
+        subscription.setId(1);
+        subscription.setEndpoint("https://fcm.googleapis.com/fcm/send/benchmark");
+        subscription.setKey(Base64.getEncoder().encodeToString(userPublicKey.getQ().getEncoded(false)));
+        subscription.setAuth(Base64.getEncoder().encodeToString(auth));
+
+        pushSubscriptionKeyCache = new PushSubscriptionKeyCache(new SimpleMeterRegistry(), 100);
+    }
+
+    @Benchmark
+    public Object decodeKeys() throws Exception {
+        return new Notification(subscription.getEndpoint(), subscription.getUserPublicKey(), subscription.getAuthAsBytes(), PAYLOAD);
+    }
+
+    @Benchmark
+    public Object getCachedKeys() throws Exception {
+        PushSubscriptionKeyCache.DecodedKeys keys = pushSubscriptionKeyCache.get(subscription);
+        return new Notification(subscription.getEndpoint(), keys.getUserPublicKey(), keys.getAuth(), PAYLOAD);
+    }
+
+    /**
+     * The previous per-notification path: decode the subscription's keys, then encrypt and sign the notification.
+     */
+    @Benchmark
+    public HttpPost decodeKeysThenEncrypt() throws Exception {
+        Notification notification = new Notification(subscription.getEndpoint(), subscription.getUserPublicKey(), subscription.getAuthAsBytes(), PAYLOAD);
+        return pushService.preparePost(notification, Encoding.AES128GCM);
+    }
+
+    /**
+     * The current per-notification path: get the subscription's cached keys, then encrypt and sign the notification.
+     */
+    @Benchmark
+    public HttpPost getCachedKeysThenEncrypt() throws Exception {
+        PushSubscriptionKeyCache.DecodedKeys keys = pushSubscriptionKeyCache.get(subscription);
+        Notification notification = new Notification(subscription.getEndpoint(), keys.getUserPublicKey(), keys.getAuth(), PAYLOAD);
+        return pushService.preparePost(notification, Encoding.AES128GCM);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PushEncryptionBenchmark.class.getSimpleName())
+                .build()
+        ).run();
+    }
+}
@@ -0,0 +1,89 @@
+package org.hackbrooklyn.plaza.benchmark;
+
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A stand-in push service that accepts every push request after a delay, for load testing push delivery without
+ * sending anything to a real push service. It can also throttle its first requests with 429 Too Many Requests and a
+ * Retry-After header.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.hackbrooklyn.plaza.benchmark.StubPushServer -Dexec.args="8090 100"} to listen on port 8090 and
+ * respond after 100 milliseconds, then point push subscription endpoints at {@code http://localhost:8090/push/<id>}.
+ */
+public class StubPushServer implements AutoCloseable {
+
+    private final DisposableServer server;
+    private final AtomicInteger receivedRequests = new AtomicInteger();
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+    private final AtomicInteger maxInFlightRequests = new AtomicInteger();
+    private final AtomicInteger requestsLeftToThrottle;
+
+    /**
+     * @param port              The port to listen on, or 0 for any free port.
+     * @param responseDelayMs   How long to wait before responding to each request.
+     * @param throttledRequests How many of the first requests to respond to with 429 Too Many Requests.
+     * @param retryAfterSeconds The Retry-After sent with throttled responses.
+     */
+    public StubPushServer(int port, long responseDelayMs, int throttledRequests, long retryAfterSeconds) {
+        this.requestsLeftToThrottle = new AtomicInteger(throttledRequests);
+        this.server = HttpServer.create()
+                .host("localhost")
+                .port(port)
+                .handle((request, response) -> {
+                    receivedRequests.incrementAndGet();
+                    maxInFlightRequests.accumulateAndGet(inFlightRequests.incrementAndGet(), Math::max);
+
+                    return request.receive().aggregate()
+                            .then(Mono.delay(Duration.ofMillis(responseDelayMs)))
+                            .then(Mono.defer(() -> {
+                                inFlightRequests.decrementAndGet();
+
+                                if (requestsLeftToThrottle.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+                                    return response.status(429)
+                                            .header("Retry-After", String.valueOf(retryAfterSeconds))
+                                            .send()
+                                            .then();
+                                }
+
+                                return response.status(201).send().then();
+                            }));
+                })
+                .bindNow();
+    }
+
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8090;
+        long responseDelayMs = args.length > 1 ? Long.parseLong(args[1]) : 100;
+
+        StubPushServer stubPushServer = new StubPushServer(port, responseDelayMs, 0, 0);
+        System.out.printf("Stub push server listening on http://localhost:%s/push/%n", stubPushServer.getPort());
+        stubPushServer.server.onDispose().block();
+    }
+
+    public String getEndpoint(String subscriptionId) {
+        return String.format("http://localhost:%s/push/%s", getPort(), subscriptionId);
+    }
+
+    public int getPort() {
+        return server.port();
+    }
+
+    public int getReceivedRequests() {
+        return receivedRequests.get();
+    }
+
+    public int getMaxInFlightRequests() {
+        return maxInFlightRequests.get();
+    }
+
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+}
@@ -0,0 +1,69 @@
+package org.hackbrooklyn.plaza.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hackbrooklyn.plaza.util.TeamFormationRecommendationStore.Kind;
+import static org.hackbrooklyn.plaza.util.TeamFormationTopicIndex.Ranking;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalTeamFormationRecommendationStoreTests {
+
+    private LocalTeamFormationRecommendationStore store;
+
+    @BeforeEach
+    void createStore() {
+        store = new LocalTeamFormationRecommendationStore(60000);
+        store.put(Kind.TEAMS, 1, new Ranking(new int[]{10, 20, 30}, new double[]{0.9, 0.5, 0.1}));
+    }
+
+    @Test
+    void movesUpdatedRecommendationsIntoPlace() {
+        store.updateIfPresent(Kind.TEAMS, 30, singleScore(1, 0.7), 3);
+        assertArrayEquals(new int[]{10, 30, 20}, store.get(Kind.TEAMS, 1).getIds());
+
+        // Ties go to the higher ID like they do in the topic index
+        store.updateIfPresent(Kind.TEAMS, 40, singleScore(1, 0.9), 3);
+        assertArrayEquals(new int[]{40, 10, 30}, store.get(Kind.TEAMS, 1).getIds());
+    }
+
+    @Test
+    void removesRecommendationsWithoutAScore() {
+        store.updateIfPresent(Kind.TEAMS, 10, singleScore(1, 0), 3);
+
+        Ranking recommendations = store.get(Kind.TEAMS, 1);
+        assertArrayEquals(new int[]{20, 30}, recommendations.getIds());
+        assertArrayEquals(new double[]{0.5, 0.1}, recommendations.getScores());
+    }
+
+    @Test
+    void onlyUpdatesStoredRecommendations() {
+        store.updateIfPresent(Kind.TEAMS, 40, singleScore(2, 0.5), 3);
+        store.updateIfPresent(Kind.PARTICIPANTS, 40, singleScore(1, 0.5), 3);
+
+        assertNull(store.get(Kind.TEAMS, 2));
+        assertNull(store.get(Kind.PARTICIPANTS, 1));
+
+        store.remove(Kind.TEAMS, 1);
+        assertNull(store.get(Kind.TEAMS, 1));
+    }
+
+    @Test
+    void keepsRecommendationsAtTheMaxSize() {
+        Ranking ranking = new Ranking(new int[]{10, 20}, new double[]{0.9, 0.5});
+
+        assertArrayEquals(new int[]{10, 30}, LocalTeamFormationRecommendationStore.withScore(ranking, 30, 0.6, 2).getIds());
+        assertArrayEquals(new int[]{10, 20}, LocalTeamFormationRecommendationStore.withScore(ranking, 30, 0.1, 2).getIds());
+        assertArrayEquals(new int[]{10, 20, 30}, LocalTeamFormationRecommendationStore.withScore(ranking, 30, 0.1, 3).getIds());
+    }
+
+    private static Map<Integer, Double> singleScore(int ownerId, double score) {
+        Map<Integer, Double> scoresByOwnerId = new HashMap<>();
+        scoresByOwnerId.put(ownerId, score);
+
+        return scoresByOwnerId;
+    }
+}
@@ -0,0 +1,74 @@
+package org.hackbrooklyn.plaza.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LocalTeamFormationSearchEngineTests {
+
+    private LocalTeamFormationSearchEngine searchEngine;
+
+    @BeforeEach
+    void createSearchEngine() {
+        // The index is only rebuilt from the database on a schedule, so it isn't needed here
+        searchEngine = new LocalTeamFormationSearchEngine(null, null);
+
+        searchEngine.updateTeam(1, "Byte Me", "We want to build a Discord bot.", Arrays.asList("discord", "javascript"));
+        searchEngine.updateTeam(2, "Team Rocket", "Blasting off with machine learning.", Arrays.asList("machine-learning", "python"));
+        searchEngine.updateTeam(3, "100% Caffeine", null, Collections.emptyList());
+    }
+
+    @Test
+    void matchesSubstringsCaseInsensitively() {
+        assertEquals(ids(1), searchEngine.searchTeams("BYTE"));
+        assertEquals(ids(1), searchEngine.searchTeams("discord bot"));
+        assertEquals(ids(2), searchEngine.searchTeams("rocket"));
+        assertEquals(ids(), searchEngine.searchTeams("rockets"));
+    }
+
+    @Test
+    void matchesQueriesShorterThanATrigram() {
+        assertEquals(ids(1, 2), searchEngine.searchTeams("e "));
+        assertEquals(ids(3), searchEngine.searchTeams("0%"));
+        assertEquals(ids(1, 2, 3), searchEngine.searchTeams(""));
+    }
+
+    @Test
+    void matchesTopicsAndSkills() {
+        assertEquals(ids(1), searchEngine.searchTeams("JavaScript"));
+        assertEquals(ids(2), searchEngine.searchTeams("learning"));
+    }
+
+    @Test
+    void matchesTopicOrSkillOperatorExactly() {
+        assertEquals(ids(2), searchEngine.searchTeams("tos:python"));
+        assertEquals(ids(), searchEngine.searchTeams("tos:Python"));
+        assertEquals(ids(), searchEngine.searchTeams("tos:pyth"));
+    }
+
+    @Test
+    void reflectsUpdatesAndRemovals() {
+        searchEngine.updateTeam(2, "Team Magma", "Still doing machine learning.", Collections.singletonList("python"));
+        assertEquals(ids(), searchEngine.searchTeams("rocket"));
+        assertEquals(ids(2), searchEngine.searchTeams("magma"));
+        assertEquals(ids(), searchEngine.searchTeams("tos:machine-learning"));
+
+        searchEngine.removeTeam(2);
+        assertEquals(ids(), searchEngine.searchTeams("magma"));
+        assertEquals(ids(), searchEngine.searchTeams("tos:python"));
+    }
+
+    private static BitSet ids(int... ids) {
+        BitSet bitSet = new BitSet();
+        for (int id : ids) {
+            bitSet.set(id);
+        }
+
+        return bitSet;
+    }
+}
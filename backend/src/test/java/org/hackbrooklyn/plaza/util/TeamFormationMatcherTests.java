@@ -0,0 +1,139 @@
+package org.hackbrooklyn.plaza.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TeamFormationMatcherTests {
+
+    private TeamFormationMatcher matcher;
+
+    @BeforeEach
+    void createMatcher() {
+        matcher = new TeamFormationMatcher(2, 2, 0.25);
+    }
+
+    @AfterEach
+    void shutDownMatcher() {
+        matcher.shutDown();
+    }
+
+    @Test
+    void matchesParticipantsWithTheMostSimilarTeams() {
+        List<TeamFormationMatcher.Candidate> participants = Arrays.asList(
+                participant(1, "Backend", 10, 11),
+                participant(2, "Design", 20, 21)
+        );
+        List<TeamFormationMatcher.Candidate> teams = Arrays.asList(
+                team(100, 1, Collections.singletonList("Backend"), 20, 21),
+                team(200, 1, Collections.singletonList("Design"), 10, 11)
+        );
+
+        Map<Integer, Integer> matches = toMap(matcher.match(participants, teams, Collections.emptySet()));
+
+        assertEquals(200, matches.get(1));
+        assertEquals(100, matches.get(2));
+    }
+
+    @Test
+    void neverFillsTeamsPastTheirOpenSpots() {
+        List<TeamFormationMatcher.Candidate> participants = new ArrayList<>();
+        for (int id = 1; id <= 500; id++) {
+            participants.add(participant(id, "Backend", id % 7, 7 + id % 5));
+        }
+        List<TeamFormationMatcher.Candidate> teams = new ArrayList<>();
+        for (int id = 1; id <= 100; id++) {
+            teams.add(team(1000 + id, 1 + id % 3, Collections.singletonList("Frontend"), id % 7, 7 + id % 5));
+        }
+
+        TeamFormationMatcher.Result result = matcher.match(participants, teams, Collections.emptySet());
+
+        Map<Integer, Integer> joinedCounts = new HashMap<>();
+        Set<Integer> matchedParticipantIds = new HashSet<>();
+        for (TeamFormationMatcher.Match match : result.getMatches()) {
+            joinedCounts.merge(match.getTeamId(), 1, Integer::sum);
+            assertTrue(matchedParticipantIds.add(match.getParticipantId()));
+        }
+        for (TeamFormationMatcher.Candidate team : teams) {
+            assertTrue(joinedCounts.getOrDefault(team.getId(), 0) <= team.getOpenSpots());
+        }
+
+        // There are fewer open spots than participants, and every participant has something in common with every team
+        int openSpots = teams.stream().mapToInt(TeamFormationMatcher.Candidate::getOpenSpots).sum();
+        assertEquals(openSpots, result.getMatches().size());
+    }
+
+    @Test
+    void findsAnotherTeamOnceTheBestCandidatesFillUp() {
+        // Only keep each participant's best team so that the second participant needs another round
+        matcher.shutDown();
+        matcher = new TeamFormationMatcher(2, 1, 0.25);
+
+        List<TeamFormationMatcher.Candidate> participants = Arrays.asList(
+                participant(1, "Backend", 10, 11, 12),
+                participant(2, "Backend", 10, 11, 12)
+        );
+        List<TeamFormationMatcher.Candidate> teams = Arrays.asList(
+                team(100, 1, Collections.emptyList(), 10, 11, 12),
+                team(200, 0, Collections.emptyList(), 10, 11),
+                team(300, 1, Collections.emptyList(), 10)
+        );
+
+        TeamFormationMatcher.Result result = matcher.match(participants, teams, Collections.emptySet());
+        Map<Integer, Integer> matches = toMap(result);
+
+        assertEquals(100, matches.get(1));
+        assertEquals(300, matches.get(2));
+        assertEquals(2, result.getRounds());
+    }
+
+    @Test
+    void prefersTeamsWithoutTheParticipantsSpecialization() {
+        List<TeamFormationMatcher.Candidate> participants = Collections.singletonList(participant(1, "  design ", 10));
+        List<TeamFormationMatcher.Candidate> teams = Arrays.asList(
+                team(100, 1, Collections.singletonList("Design"), 10),
+                team(200, 1, Collections.singletonList("Backend"), 10)
+        );
+
+        TeamFormationMatcher.Match match = matcher.match(participants, teams, Collections.emptySet()).getMatches().get(0);
+
+        assertEquals(200, match.getTeamId());
+        assertTrue(match.isNewSpecialization());
+        assertEquals(1, match.getSharedTopicsAndSkills());
+    }
+
+    @Test
+    void skipsExcludedPairsAndTeamsWithNothingInCommon() {
+        List<TeamFormationMatcher.Candidate> participants = Arrays.asList(
+                participant(1, "Backend", 10),
+                participant(2, "Backend", 20)
+        );
+        List<TeamFormationMatcher.Candidate> teams = Collections.singletonList(
+                team(100, 2, Collections.singletonList("Backend"), 10)
+        );
+        Set<Long> excludedPairs = Collections.singleton(TeamFormationMatcher.getPairKey(100, 1));
+
+        assertTrue(matcher.match(participants, teams, excludedPairs).getMatches().isEmpty());
+    }
+
+    private static TeamFormationMatcher.Candidate participant(int id, String specialization, Integer... topicOrSkillIds) {
+        return new TeamFormationMatcher.Candidate(id, Arrays.asList(topicOrSkillIds), Collections.singletonList(specialization), 0);
+    }
+
+    private static TeamFormationMatcher.Candidate team(int id, int openSpots, List<String> specializations, Integer... topicOrSkillIds) {
+        return new TeamFormationMatcher.Candidate(id, Arrays.asList(topicOrSkillIds), specializations, openSpots);
+    }
+
+    private static Map<Integer, Integer> toMap(TeamFormationMatcher.Result result) {
+        Map<Integer, Integer> teamIdsByParticipantId = new HashMap<>();
+        for (TeamFormationMatcher.Match match : result.getMatches()) {
+            teamIdsByParticipantId.put(match.getParticipantId(), match.getTeamId());
+        }
+
+        return teamIdsByParticipantId;
+    }
+}
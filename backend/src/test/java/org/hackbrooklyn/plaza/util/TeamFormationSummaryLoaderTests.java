@@ -0,0 +1,179 @@
+package org.hackbrooklyn.plaza.util;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.hackbrooklyn.plaza.dto.TeamFormationParticipantSummaryDTO;
+import org.hackbrooklyn.plaza.dto.TeamFormationTeamSummaryDTO;
+import org.hackbrooklyn.plaza.model.TeamFormationParticipant;
+import org.hackbrooklyn.plaza.model.TeamFormationTeam;
+import org.hackbrooklyn.plaza.model.TopicOrSkill;
+import org.hackbrooklyn.plaza.model.User;
+import org.hackbrooklyn.plaza.repository.TeamFormationParticipantRepository;
+import org.hackbrooklyn.plaza.repository.TeamFormationTeamRepository;
+import org.hackbrooklyn.plaza.repository.TopicOrSkillRepository;
+import org.hackbrooklyn.plaza.repository.UserRepository;
+import org.hackbrooklyn.plaza.security.Roles;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.persistence.EntityManagerFactory;
+import java.security.Security;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@TestPropertySource(locations = "classpath:application-test.properties")
+class TeamFormationSummaryLoaderTests {
+
+    private static final int TEAMS_PER_PAGE = 5;
+    private static final int MEMBERS_PER_TEAM = 3;
+
+    @Autowired
+    private TeamFormationSummaryLoader teamFormationSummaryLoader;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TeamFormationParticipantRepository teamFormationParticipantRepository;
+
+    @Autowired
+    private TeamFormationTeamRepository teamFormationTeamRepository;
+
+    @Autowired
+    private TopicOrSkillRepository topicOrSkillRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private List<Integer> teamIds;
+    private List<Integer> participantIds;
+
+    @BeforeAll
+    static void initializeTestEnvironment() {
+        // Set app-wide timezone to UTC for consistency across environments
+        TimeZone.setDefault(TimeZone.getTimeZone("Etc/UTC"));
+
+        // Add BouncyCastle to Security
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+    }
+
+    @BeforeEach
+    void createTeams() {
+        // Tests share the same database, so make every unique value unique to this test
+        String runId = UUID.randomUUID().toString();
+
+        TopicOrSkill java = saveTopicOrSkill("java-" + runId);
+        TopicOrSkill design = saveTopicOrSkill("design-" + runId);
+
+        teamIds = new ArrayList<>();
+        participantIds = new ArrayList<>();
+        for (int i = 0; i < TEAMS_PER_PAGE; i++) {
+            List<TeamFormationParticipant> members = new ArrayList<>();
+            for (int j = 0; j < MEMBERS_PER_TEAM; j++) {
+                members.add(saveParticipant(String.format("%s-%d-%d", runId, i, j), java, design));
+            }
+
+            TeamFormationTeam team = new TeamFormationTeam();
+            team.setName(String.format("Team %d %s", i, runId));
+            team.setSize(4);
+            team.setLeader(members.get(0));
+            team.setMembers(new HashSet<>(members));
+            team.setObjectiveStatement("We want to build something cool.");
+            team.setVisibleInBrowser(true);
+            team.setInterestedTopicsAndSkills(new HashSet<>(Arrays.asList(java, design)));
+            TeamFormationTeam savedTeam = teamFormationTeamRepository.save(team);
+
+            for (TeamFormationParticipant member : members) {
+                member.setTeam(savedTeam);
+                teamFormationParticipantRepository.save(member);
+                participantIds.add(member.getId());
+            }
+            teamIds.add(savedTeam.getId());
+        }
+
+        // Participants without a team
+        participantIds.add(saveParticipant(runId + "-solo-1", java).getId());
+        participantIds.add(saveParticipant(runId + "-solo-2", design).getId());
+    }
+
+    @Test
+    void loadsPageOfTeamsInConstantNumberOfQueries() {
+        Statistics statistics = getStatistics();
+        statistics.clear();
+
+        List<TeamFormationTeamSummaryDTO> teams = teamFormationSummaryLoader.loadTeams(teamIds);
+
+        assertEquals(4, statistics.getPrepareStatementCount());
+        assertEquals(teamIds, teams.stream().map(TeamFormationTeamSummaryDTO::getId).collect(Collectors.toList()));
+        for (TeamFormationTeamSummaryDTO team : teams) {
+            assertEquals(MEMBERS_PER_TEAM, team.getMembers().size());
+            assertEquals(2, team.getInterestedTopicsAndSkills().size());
+            assertEquals(team.getMembers().get(0).getId(), team.getLeader());
+
+            for (TeamFormationParticipantSummaryDTO member : team.getMembers()) {
+                assertSame(team, member.getTeam());
+                assertEquals(2, member.getInterestedTopicsAndSkills().size());
+            }
+        }
+    }
+
+    @Test
+    void loadsPageOfParticipantsInConstantNumberOfQueries() {
+        Statistics statistics = getStatistics();
+        statistics.clear();
+
+        List<TeamFormationParticipantSummaryDTO> participants = teamFormationSummaryLoader.loadParticipants(participantIds);
+
+        assertEquals(5, statistics.getPrepareStatementCount());
+        assertEquals(participantIds, participants.stream().map(TeamFormationParticipantSummaryDTO::getId).collect(Collectors.toList()));
+        for (TeamFormationParticipantSummaryDTO participant : participants) {
+            if (participant.getTeam() != null) {
+                assertEquals(MEMBERS_PER_TEAM, participant.getTeam().getMembers().size());
+                assertEquals(1, participant.getTeam().getMembers().stream().filter(member -> member == participant).count());
+                assertEquals(2, participant.getInterestedTopicsAndSkills().size());
+            } else {
+                assertEquals(1, participant.getInterestedTopicsAndSkills().size());
+            }
+        }
+    }
+
+    private Statistics getStatistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private TopicOrSkill saveTopicOrSkill(String name) {
+        TopicOrSkill topicOrSkill = new TopicOrSkill();
+        topicOrSkill.setName(name);
+        return topicOrSkillRepository.save(topicOrSkill);
+    }
+
+    private TeamFormationParticipant saveParticipant(String uniqueName, TopicOrSkill... topicsAndSkills) {
+        User user = new User();
+        user.setFirstName("Participant");
+        user.setLastName(uniqueName);
+        user.setEmail(uniqueName + "@example.com");
+        user.setHashedPassword(uniqueName);
+        user.setRole(Roles.PARTICIPANT);
+        User savedUser = userRepository.save(user);
+
+        TeamFormationParticipant participant = new TeamFormationParticipant();
+        participant.setUser(savedUser);
+        participant.setSpecialization("Developer");
+        participant.setObjectiveStatement("I want to build something cool.");
+        participant.setContactInfo(uniqueName);
+        participant.setVisibleInBrowser(true);
+        participant.setInterestedTopicsAndSkills(new HashSet<>(Arrays.asList(topicsAndSkills)));
+        return teamFormationParticipantRepository.save(participant);
+    }
+}
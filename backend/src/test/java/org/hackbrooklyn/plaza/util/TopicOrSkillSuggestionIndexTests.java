@@ -0,0 +1,74 @@
+package org.hackbrooklyn.plaza.util;
+
+import org.hackbrooklyn.plaza.dto.TopicOrSkillSuggestionDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TopicOrSkillSuggestionIndexTests {
+
+    private TopicOrSkillSuggestionIndex suggestionIndex;
+
+    @BeforeEach
+    void createSuggestionIndex() {
+        // The index is only rebuilt from the database on a schedule, so it isn't needed here
+        suggestionIndex = new TopicOrSkillSuggestionIndex(null, null, 3);
+
+        suggestionIndex.updateTeam(1, Arrays.asList("machine-learning", "python"));
+        suggestionIndex.updateTeam(2, Arrays.asList("machine-learning", "machine-vision"));
+        suggestionIndex.updateParticipant(1, Arrays.asList("machine-learning", "python", "pytorch"));
+        suggestionIndex.updateParticipant(2, Arrays.asList("python", "machine-vision", "mobile"));
+    }
+
+    @Test
+    void suggestsTheMostUsedNamesFirst() {
+        assertEquals(Arrays.asList("machine-learning", "machine-vision", "mobile"), suggest("m", 10));
+        assertEquals(Arrays.asList("python", "pytorch"), suggest("py", 10));
+        assertEquals(Collections.singletonList("pytorch"), suggest("pyto", 10));
+        assertEquals(Collections.emptyList(), suggest("rust", 10));
+    }
+
+    @Test
+    void cleansThePrefixAndCountsEveryUse() {
+        List<TopicOrSkillSuggestionDTO> suggestions = suggestionIndex.suggest("Machine L", 10);
+
+        assertEquals(1, suggestions.size());
+        assertEquals("machine-learning", suggestions.get(0).getName());
+        assertEquals(3, suggestions.get(0).getUsageCount());
+    }
+
+    @Test
+    void capsSuggestionsAtTheLimit() {
+        assertEquals(Arrays.asList("machine-learning", "python"), suggest("", 2));
+
+        // Only three suggestions are kept for each prefix
+        assertEquals(3, suggest("", 10).size());
+    }
+
+    @Test
+    void reflectsUpdatesAndRemovals() {
+        suggestionIndex.updateParticipant(3, Arrays.asList("mobile", "swift"));
+        suggestionIndex.updateParticipant(4, Arrays.asList("mobile", "kotlin"));
+        suggestionIndex.updateParticipant(5, Collections.singletonList("mobile"));
+        assertEquals(Arrays.asList("mobile", "machine-learning", "machine-vision"), suggest("m", 10));
+
+        suggestionIndex.removeTeam(1);
+        suggestionIndex.removeTeam(2);
+        suggestionIndex.updateParticipant(1, Collections.singletonList("rust"));
+        assertEquals(Arrays.asList("mobile", "machine-vision"), suggest("m", 10));
+        assertEquals(Collections.singletonList("python"), suggest("py", 10));
+        assertEquals(Collections.emptyList(), suggest("machine-l", 10));
+    }
+
+    private List<String> suggest(String prefix, int limit) {
+        return suggestionIndex.suggest(prefix, limit).stream()
+                .map(TopicOrSkillSuggestionDTO::getName)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,131 @@
+package org.hackbrooklyn.plaza.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.martijndwars.webpush.Notification;
+import nl.martijndwars.webpush.PushService;
+import org.bouncycastle.jce.ECNamedCurveTable;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.hackbrooklyn.plaza.benchmark.StubPushServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebPushTransportTests {
+
+    private static final byte[] PAYLOAD = "{\"title\":\"Test\"}".getBytes(StandardCharsets.UTF_8);
+
+    private static PublicKey userPublicKey;
+    private static byte[] userAuth;
+
+    private StubPushServer stubPushServer;
+    private WebPushTransport webPushTransport;
+
+    @BeforeAll
+    static void createSubscriptionKeys() throws Exception {
+        // Add BouncyCastle to Security
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("ECDH", BouncyCastleProvider.PROVIDER_NAME);
+        keyPairGenerator.initialize(ECNamedCurveTable.getParameterSpec("secp256r1"));
+        userPublicKey = keyPairGenerator.generateKeyPair().getPublic();
+
+        userAuth = new byte[16];
+        new SecureRandom().nextBytes(userAuth);
+    }
+
+    @BeforeEach
+    void createTransport() {
+        webPushTransport = new WebPushTransport(new PushService(), WebClient.builder(), new SimpleMeterRegistry(), 2, 20, 5000, 2, 1000);
+    }
+
+    @AfterEach
+    void shutDown() {
+        webPushTransport.shutDown();
+        if (stubPushServer != null) {
+            stubPushServer.close();
+        }
+    }
+
+    @Test
+    void capsRequestsInFlightToEachHost() throws Exception {
+        stubPushServer = new StubPushServer(0, 50, 0, 0);
+
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            results.add(webPushTransport.send(notification(i)));
+        }
+
+        for (CompletableFuture<Integer> result : results) {
+            assertEquals(201, result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(20, stubPushServer.getReceivedRequests());
+        assertTrue(stubPushServer.getMaxInFlightRequests() <= 2);
+    }
+
+    @Test
+    void rejectsDeliveriesOnceAHostIsFull() throws Exception {
+        stubPushServer = new StubPushServer(0, 200, 0, 0);
+
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            results.add(webPushTransport.send(notification(i)));
+        }
+        assertEquals(0, webPushTransport.getRemainingCapacity());
+
+        CompletableFuture<Integer> rejected = webPushTransport.send(notification(20));
+        assertTrue(rejected.isCompletedExceptionally());
+
+        for (CompletableFuture<Integer> result : results) {
+            assertEquals(201, result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(20, webPushTransport.getRemainingCapacity());
+    }
+
+    @Test
+    void waitsForRetryAfterBeforeRetrying() throws Exception {
+        stubPushServer = new StubPushServer(0, 0, 1, 1);
+
+        long startMillis = System.currentTimeMillis();
+        int statusCode = webPushTransport.send(notification(1)).get(10, TimeUnit.SECONDS);
+
+        assertEquals(201, statusCode);
+        assertEquals(2, stubPushServer.getReceivedRequests());
+        assertTrue(System.currentTimeMillis() - startMillis >= 1000);
+    }
+
+    @Test
+    void givesUpAfterTheMaxRetries() throws Exception {
+        stubPushServer = new StubPushServer(0, 0, 10, 0);
+
+        assertEquals(429, webPushTransport.send(notification(1)).get(10, TimeUnit.SECONDS));
+        assertEquals(3, stubPushServer.getReceivedRequests());
+    }
+
+    @Test
+    void readsRetryAfterInSecondsOrAsADate() {
+        assertEquals(2000, webPushTransport.getRetryAfterMs("2"));
+        assertEquals(0, webPushTransport.getRetryAfterMs("Wed, 21 Oct 2015 07:28:00 GMT"));
+        assertEquals(1000, webPushTransport.getRetryAfterMs(null));
+        assertEquals(1000, webPushTransport.getRetryAfterMs("soon"));
+    }
+
+    private Notification notification(int subscriptionId) {
+        return new Notification(stubPushServer.getEndpoint(String.valueOf(subscriptionId)), userPublicKey, userAuth, PAYLOAD);
+    }
+}